@@ -0,0 +1,80 @@
+package com.example.fpt_midterm_pos.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.example.fpt_midterm_pos.config.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Replaces the single spring.datasource by a primary and one or more read replicas when the replicas are enabled.
+ * Read-only transactions of the requests allowed by the read-your-writes filter read the replicas, everything else
+ * the primary. The spring.datasource properties keep describing the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pos.datasource.replicas.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    /**
+     * Builds the pools of the primary and of every replica, and the data source routing between them.
+     *
+     * @param properties The spring.datasource properties of the primary.
+     * @param urls The JDBC URLs of the replicas, separated by commas.
+     * @param username The user of the replicas, the one of the primary by default.
+     * @param password The password of the replicas, the one of the primary by default.
+     * @param connectionTimeoutMillis How long a replica may take to hand out a connection before the read falls back.
+     * @param retryAfterMillis How long a failed replica is skipped before it is tried again.
+     * @return The routing data source, closing every pool on shutdown.
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties,
+                                                             @Value("${pos.datasource.replicas.urls:}") String[] urls,
+                                                             @Value("${pos.datasource.replicas.username:${spring.datasource.username:}}") String username,
+                                                             @Value("${pos.datasource.replicas.password:${spring.datasource.password:}}") String password,
+                                                             @Value("${pos.datasource.replicas.connection-timeout-ms:1000}") long connectionTimeoutMillis,
+                                                             @Value("${pos.datasource.replicas.retry-after-ms:30000}") long retryAfterMillis) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(connectionTimeoutMillis);
+            // Start without the replica, an unreachable one is skipped at the first read instead of failing the startup
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, retryAfterMillis);
+    }
+
+    /**
+     * Defers taking a connection until the first statement, by then the transaction has said whether it is read-only.
+     *
+     * @param replicaRoutingDataSource The routing data source.
+     * @return The data source used by JPA and the rest of the application.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -1,9 +1,38 @@
 package com.example.fpt_midterm_pos.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 @Configuration
 @EnableSpringDataWebSupport(pageSerializationMode = EnableSpringDataWebSupport.PageSerializationMode.VIA_DTO)
 public class WebConfig {
+
+    /**
+     * Reads and writes application/cbor bodies, for the tills that send it as Content-Type or ask for it in Accept.
+     *
+     * @param builder The builder of the JSON ObjectMapper, so CBOR bodies get the same modules and settings as JSON ones.
+     * @return The CBOR message converter, added to the converters of Spring MVC.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Reads and writes application/x-jackson-smile bodies, for the tills that send it as Content-Type or ask for it in Accept.
+     *
+     * @param builder The builder of the JSON ObjectMapper, so Smile bodies get the same modules and settings as JSON ones.
+     * @return The Smile message converter, added to the converters of Spring MVC.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
 }
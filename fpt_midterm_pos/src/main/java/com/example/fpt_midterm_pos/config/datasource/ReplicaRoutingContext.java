@@ -0,0 +1,60 @@
+package com.example.fpt_midterm_pos.config.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Tells the {@link ReplicaRoutingDataSource} whether the read-only transactions of the current thread may be sent to a
+ * replica. Replicas are only allowed inside the requests marked by the read-your-writes filter, so the scheduled jobs,
+ * the ingestion writers and the startup loads always read the primary.
+ */
+public final class ReplicaRoutingContext {
+
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+    private ReplicaRoutingContext() {
+    }
+
+    /**
+     * Allows or forbids the replicas for the current thread until {@link #clear()}.
+     *
+     * @param allowed Whether the read-only transactions of the thread may read a replica.
+     */
+    public static void setReplicaAllowed(boolean allowed) {
+        REPLICA_ALLOWED.set(allowed);
+    }
+
+    /**
+     * @return Whether the read-only transactions of the current thread may read a replica.
+     */
+    public static boolean isReplicaAllowed() {
+        return Boolean.TRUE.equals(REPLICA_ALLOWED.get());
+    }
+
+    /**
+     * Forgets the routing of the current thread, once its request is done.
+     */
+    public static void clear() {
+        REPLICA_ALLOWED.remove();
+    }
+
+    /**
+     * Runs a read on the primary whatever the current thread allows, for the reads that are kept in memory afterwards
+     * and would otherwise keep a lagging replica row long after the replica caught up.
+     *
+     * @param read The read to run.
+     * @return The result of the read.
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        Boolean previous = REPLICA_ALLOWED.get();
+        REPLICA_ALLOWED.set(false);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                REPLICA_ALLOWED.remove();
+            } else {
+                REPLICA_ALLOWED.set(previous);
+            }
+        }
+    }
+}
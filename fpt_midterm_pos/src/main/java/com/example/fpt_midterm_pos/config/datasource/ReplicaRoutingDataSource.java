@@ -0,0 +1,110 @@
+package com.example.fpt_midterm_pos.config.datasource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends the read-only transactions allowed by the {@link ReplicaRoutingContext} to the replicas in turn, and every
+ * other connection to the primary. It must be wrapped in a lazy connection proxy, so the connection is only taken at
+ * the first statement, once the transaction is known to be read-only.
+ * <p>
+ * A replica that fails to hand out a connection is skipped until its retry delay has passed, and the read falls back
+ * to the next replica, then to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long retryAfterMillis;
+    // Time until which each replica is skipped, 0 when healthy
+    private final AtomicLongArray unhealthyUntil;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long retryAfterMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.retryAfterMillis = retryAfterMillis;
+        this.unhealthyUntil = new AtomicLongArray(replicas.size());
+    }
+
+    /**
+     * Takes a connection of a healthy replica for an allowed read-only transaction, of the primary otherwise.
+     *
+     * @return A connection of the chosen database.
+     * @throws SQLException If the primary cannot hand out a connection.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicas.isEmpty() || !ReplicaRoutingContext.isReplicaAllowed() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            if (unhealthyUntil.get(replica) > now) {
+                continue;
+            }
+            try {
+                Connection connection = replicas.get(replica).getConnection();
+                unhealthyUntil.set(replica, 0);
+                return connection;
+            } catch (SQLException e) {
+                unhealthyUntil.set(replica, now + retryAfterMillis);
+                logger.warn("[ReplicaRouting] Replica {} unavailable, skipped for {} ms: {}", replica, retryAfterMillis, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Takes a connection with explicit credentials, always of the primary.
+     *
+     * @param username The database user.
+     * @param password The password of the user.
+     * @return A connection of the primary.
+     * @throws SQLException If the primary cannot hand out a connection.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * @param replica The index of the replica, in the configured order.
+     * @return Whether the replica is currently skipped after a failure.
+     */
+    public boolean isUnhealthy(int replica) {
+        return unhealthyUntil.get(replica) > System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the connection pools of the primary and the replicas.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : replicas) {
+            if (dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.fpt_midterm_pos.config.filter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.fpt_midterm_pos.config.datasource.ReplicaRoutingContext;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Decides which requests may read the replicas. Only GET, HEAD and OPTIONS requests may, and only when their client
+ * has not written for the read-your-writes period, so a till that just created an invoice reads it back from the
+ * primary while the replicas catch up. Every other request is a write and reads the primary throughout.
+ */
+@Component
+@ConditionalOnProperty(name = "pos.datasource.replicas.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    // Time of the last write of every client that wrote within the period
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final long readYourWritesMillis;
+
+    public ReadYourWritesFilter(@Value("${pos.datasource.read-your-writes-ms:5000}") long readYourWritesMillis) {
+        this.readYourWritesMillis = readYourWritesMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String client = client(request);
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        Long lastWrite = lastWrites.get(client);
+        boolean wroteRecently = lastWrite != null && System.currentTimeMillis() - lastWrite < readYourWritesMillis;
+
+        ReplicaRoutingContext.setReplicaAllowed(!write && !wroteRecently);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingContext.clear();
+            // The period starts once the write is committed, when the response is ready
+            if (write) {
+                lastWrites.put(client, System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Forgets the clients whose last write is older than the read-your-writes period.
+     */
+    @Scheduled(fixedDelayString = "${pos.datasource.read-your-writes-ms:5000}")
+    public void purgeExpired() {
+        long oldest = System.currentTimeMillis() - readYourWritesMillis;
+        lastWrites.values().removeIf(lastWrite -> lastWrite < oldest);
+    }
+
+    // A client is its bearer token, or its address when it has none
+    private static String client(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        return authorization != null ? authorization : request.getRemoteAddr();
+    }
+}
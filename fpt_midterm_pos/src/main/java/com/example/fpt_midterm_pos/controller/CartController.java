@@ -0,0 +1,141 @@
+package com.example.fpt_midterm_pos.controller;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.fpt_midterm_pos.dto.CartDTO;
+import com.example.fpt_midterm_pos.dto.CartSaveDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailSaveDTO;
+import com.example.fpt_midterm_pos.service.CartService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("/api/v1/carts")
+public class CartController {
+
+    @Autowired
+    private CartService cartService;
+
+    /**
+     * Opens a new Cart for a customer.
+     *
+     * @param cartSaveDTO The CartSaveDTO object containing the customer of the new Cart.
+     * @return A ResponseEntity containing the newly created CartDTO object and an HTTP status code of 201 (Created) upon successful creation.
+     */
+    @Operation(summary = "Open a new Cart.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Cart created successfully"),
+        @ApiResponse(responseCode = "404", description = "Customer not found")
+    })
+    @PostMapping
+    public ResponseEntity<CartDTO> createCart(@RequestBody CartSaveDTO cartSaveDTO) {
+        CartDTO cart = cartService.createCart(cartSaveDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).body(cart);
+    }
+
+    /**
+     * Retrieves an open Cart.
+     *
+     * @param id The unique identifier of the Cart.
+     * @return A ResponseEntity containing the CartDTO object and an HTTP status code of 200 (OK).
+     */
+    @Operation(summary = "Retrieve an open Cart.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cart retrieved successfully"),
+        @ApiResponse(responseCode = "404", description = "Cart not found or expired")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<CartDTO> getCart(@PathVariable UUID id) {
+        CartDTO cart = cartService.findById(id);
+        return ResponseEntity.status(HttpStatus.OK).body(cart);
+    }
+
+    /**
+     * Adds a scanned product to a Cart, holding its stock until the Cart is checked out or expires.
+     *
+     * @param id The unique identifier of the Cart.
+     * @param invoiceDetailSaveDTO The InvoiceDetailSaveDTO object containing the scanned product and its quantity.
+     * @return A ResponseEntity containing the updated CartDTO object and an HTTP status code of 200 (OK).
+     * @apiNote If the stock of the product is insufficient, a ResponseEntity with status code 400 (Bad Request) is returned right away instead of at checkout.
+     */
+    @Operation(summary = "Add a product to a Cart.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Product added successfully"),
+        @ApiResponse(responseCode = "400", description = "Insufficient product stock"),
+        @ApiResponse(responseCode = "404", description = "Cart or product not found")
+    })
+    @PostMapping("/{id}/lines")
+    public ResponseEntity<CartDTO> addLine(@PathVariable UUID id, @RequestBody InvoiceDetailSaveDTO invoiceDetailSaveDTO) {
+        CartDTO cart = cartService.addLine(id, invoiceDetailSaveDTO);
+        return ResponseEntity.status(HttpStatus.OK).body(cart);
+    }
+
+    /**
+     * Removes a product from a Cart, releasing its stock hold.
+     *
+     * @param id The unique identifier of the Cart.
+     * @param productId The unique identifier of the product to be removed.
+     * @return A ResponseEntity containing the updated CartDTO object and an HTTP status code of 200 (OK).
+     */
+    @Operation(summary = "Remove a product from a Cart.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Product removed successfully"),
+        @ApiResponse(responseCode = "404", description = "Cart or product not found")
+    })
+    @DeleteMapping("/{id}/lines/{productId}")
+    public ResponseEntity<CartDTO> removeLine(@PathVariable UUID id, @PathVariable UUID productId) {
+        CartDTO cart = cartService.removeLine(id, productId);
+        return ResponseEntity.status(HttpStatus.OK).body(cart);
+    }
+
+    /**
+     * Turns a Cart into an Invoice.
+     *
+     * @param id The unique identifier of the Cart.
+     * @return A ResponseEntity containing the newly created InvoiceDTO object and an HTTP status code of 201 (Created) upon successful creation.
+     */
+    @Operation(summary = "Check out a Cart into an Invoice.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Invoice created successfully"),
+        @ApiResponse(responseCode = "400", description = "Cart is empty or product stock is insufficient"),
+        @ApiResponse(responseCode = "404", description = "Cart not found or expired")
+    })
+    @PostMapping("/{id}/checkout")
+    public ResponseEntity<InvoiceDTO> checkout(@PathVariable UUID id) {
+        InvoiceDTO invoice = cartService.checkout(id);
+        return ResponseEntity.status(HttpStatus.CREATED).body(invoice);
+    }
+
+    /**
+     * Abandons a Cart, releasing all its stock holds.
+     *
+     * @param id The unique identifier of the Cart.
+     * @return A ResponseEntity with an HTTP status code of 204 (No Content).
+     */
+    @Operation(summary = "Abandon a Cart.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Cart abandoned successfully"),
+        @ApiResponse(responseCode = "404", description = "Cart not found or expired")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteCart(@PathVariable UUID id) {
+        cartService.deleteCart(id);
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+}
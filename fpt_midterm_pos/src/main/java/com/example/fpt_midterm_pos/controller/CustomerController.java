@@ -1,11 +1,16 @@
 package com.example.fpt_midterm_pos.controller;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -19,12 +24,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.fpt_midterm_pos.data.model.Customer;
 import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.dto.CursorPageDTO;
 import com.example.fpt_midterm_pos.dto.CustomerDTO;
 import com.example.fpt_midterm_pos.dto.CustomerSaveDTO;
 import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
 import com.example.fpt_midterm_pos.service.CustomerService;
+import com.example.fpt_midterm_pos.service.InvoiceService;
+import com.example.fpt_midterm_pos.utils.FieldsUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -35,32 +43,71 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 @RequestMapping("/api/v1/customers")
 public class CustomerController {
 
+    // Fields of the customer listing that can be asked for with the fields parameter
+    private static final Map<String, Function<CustomerShowDTO, Object>> CUSTOMER_FIELDS = new LinkedHashMap<>();
+
+    static {
+        CUSTOMER_FIELDS.put("id", CustomerShowDTO::getId);
+        CUSTOMER_FIELDS.put("name", CustomerShowDTO::getName);
+        CUSTOMER_FIELDS.put("phoneNumber", CustomerShowDTO::getPhoneNumber);
+    }
+
     @Autowired
     private CustomerService customerService;
 
+    @Autowired
+    private InvoiceService invoiceService;
+
     /**
      * Retrieves all customers from the database.
      *
      * @param page The index of the page to retrieve. Defaults to 0.
      * @param size The number of customers to retrieve per page. Defaults to 20.
-     * @return A {@link ResponseEntity} containing a {@link Page} of {@link CustomerShowDTO} objects representing the customers on the specified page.
-     * @apiNote If no customers are found, a {@link ResponseEntity} with status status code 204 (No Content) is returned.
+     * @param withTotal Whether the total number of customers and pages is counted. Defaults to true, when false only whether there is a next page is returned.
+     * @param fields The comma-separated fields of the customers to return, among id, name and phoneNumber. Every field when omitted.
+     * @return A {@link ResponseEntity} containing a {@link Page}, or a {@link Slice} without the totals, of {@link CustomerShowDTO} objects representing the customers on the specified page, reduced to the requested fields.
+     * @apiNote If no customers are found, a {@link ResponseEntity} with status status code 204 (No Content) is returned. An unknown field is rejected with status code 400 (Bad Request).
      */
     @Operation(summary = "Retrieve all Customers.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Customers retrieved successfully"),
-        @ApiResponse(responseCode = "204", description = "Customers not found")
+        @ApiResponse(responseCode = "204", description = "Customers not found"),
+        @ApiResponse(responseCode = "400", description = "Unknown field")
     })
     @GetMapping
-    public ResponseEntity<Page<Customer>> getAllCustomer(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<Slice<?>> getAllCustomer(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size,
+                                                   @RequestParam(defaultValue = "true") boolean withTotal, @RequestParam(required = false) String fields) {
+        Set<String> selected = FieldsUtils.parseFields(fields, CUSTOMER_FIELDS);
         Pageable pageable = PageRequest.of(page, size);
-        Page<Customer> customerPage = customerService.findAllCustomer(pageable);
+        Slice<CustomerShowDTO> customerPage = withTotal ? customerService.findAllCustomer(pageable) : customerService.findAllCustomerSlice(pageable);
 
         if (customerPage.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
         
-        return ResponseEntity.status(HttpStatus.OK).body(customerPage);
+        return ResponseEntity.status(HttpStatus.OK).body(selected == null ? customerPage : FieldsUtils.select(customerPage, selected, CUSTOMER_FIELDS));
+    }
+
+    /**
+     * Retrieves the invoices of a Customer, newest first, one page at a time, continuing after the cursor of the previous page.
+     *
+     * @param id The unique identifier of the customer.
+     * @param after The cursor returned as "next" with the previous page, omitted for the first page.
+     * @param size The number of invoices to retrieve per page. Defaults to 20.
+     * @return A {@link ResponseEntity} containing a {@link CursorPageDTO} of {@link InvoiceDTO} objects and the cursor of the next page.
+     * @apiNote If the Customer with the given ID is not found, a ResponseEntity with status code 404 (Not Found) is returned.
+     */
+    @Operation(summary = "Retrieve the invoice history of a Customer using a cursor.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Invoices retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor"),
+        @ApiResponse(responseCode = "404", description = "Customer not found")
+    })
+    @GetMapping(value = "/{id}/invoices")
+    public ResponseEntity<CursorPageDTO<InvoiceDTO>> getCustomerInvoices(@PathVariable("id") UUID id, @RequestParam(required = false) String after,
+                                                                         @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<InvoiceDTO> invoices = invoiceService.findByCustomerAfter(id, after, size);
+        return ResponseEntity.status(HttpStatus.OK).body(invoices);
     }
 
     /**
@@ -2,15 +2,22 @@ package com.example.fpt_midterm_pos.controller;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 import javax.validation.Valid;
 
 import org.apache.poi.ss.usermodel.Workbook;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -19,26 +26,39 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.dto.CatalogCacheStatsDTO;
+import com.example.fpt_midterm_pos.dto.CursorPageDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceBatchResultDTO;
 import com.example.fpt_midterm_pos.dto.InvoiceDTO;
 import com.example.fpt_midterm_pos.dto.InvoiceDetailsSearchCriteriaDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceIngestionStatsDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceLineOperationDTO;
 import com.example.fpt_midterm_pos.dto.InvoiceSaveDTO;
 import com.example.fpt_midterm_pos.dto.InvoiceSearchCriteriaDTO;
 import com.example.fpt_midterm_pos.dto.RevenueShowDTO;
+import com.example.fpt_midterm_pos.service.CatalogCacheService;
 import com.example.fpt_midterm_pos.service.CustomerService;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.service.IdempotencyService;
+import com.example.fpt_midterm_pos.service.InvoiceIngestionService;
 import com.example.fpt_midterm_pos.service.InvoiceService;
+import com.example.fpt_midterm_pos.utils.FieldsUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
@@ -47,13 +67,32 @@ import jakarta.servlet.http.HttpServletResponse;
 @Validated
 public class InvoiceController {
 
+    // Fields of the invoice listings that can be asked for with the fields parameter
+    private static final Map<String, Function<InvoiceDTO, Object>> INVOICE_FIELDS = new LinkedHashMap<>();
+
+    static {
+        INVOICE_FIELDS.put("id", InvoiceDTO::getId);
+        INVOICE_FIELDS.put("invoiceNumber", InvoiceDTO::getInvoiceNumber);
+        INVOICE_FIELDS.put("amount", InvoiceDTO::getAmount);
+        INVOICE_FIELDS.put("date", InvoiceDTO::getDate);
+        INVOICE_FIELDS.put("customer", InvoiceDTO::getCustomer);
+        INVOICE_FIELDS.put("invoiceDetails", InvoiceDTO::getInvoiceDetails);
+    }
+
     private final InvoiceService invoiceService;
     private final CustomerService customerService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectProvider<InvoiceIngestionService> invoiceIngestionService;
+    private final CatalogCacheService catalogCacheService;
 
     @Autowired
-    public InvoiceController(InvoiceService invoiceService, CustomerService customerService) {
+    public InvoiceController(InvoiceService invoiceService, CustomerService customerService, IdempotencyService idempotencyService,
+                             ObjectProvider<InvoiceIngestionService> invoiceIngestionService, CatalogCacheService catalogCacheService) {
         this.invoiceService = invoiceService;
         this.customerService = customerService;
+        this.idempotencyService = idempotencyService;
+        this.invoiceIngestionService = invoiceIngestionService;
+        this.catalogCacheService = catalogCacheService;
     }
 
     /**
@@ -62,24 +101,57 @@ public class InvoiceController {
      * @param criteria The search criteria to filter the invoices.
      * @param page The page number to retrieve. Defaults to 0.
      * @param size The number of invoices to retrieve per page. Defaults to 20.
-     * @return A {@link ResponseEntity} containing a {@link Page} of {@link InvoiceDTO} objects representing the retrieved invoices.
-     * @apiNote If no invoices are found based on the provided criteria, a {@link ResponseEntity} with status code 204 (No Content) is returned.
+     * @param withTotal Whether the total number of invoices and pages is counted. Defaults to true, when false only whether there is a next page is returned, which is much cheaper on large results.
+     * @param fields The comma-separated fields of the invoices to return, among id, invoiceNumber, amount, date, customer and invoiceDetails. Every field when omitted, and the lines are only read when invoiceDetails is asked for.
+     * @return A {@link ResponseEntity} containing a {@link Page}, or a {@link Slice} without the totals, of {@link InvoiceDTO} objects representing the retrieved invoices, reduced to the requested fields.
+     * @apiNote If no invoices are found based on the provided criteria, a {@link ResponseEntity} with status code 204 (No Content) is returned. An unknown field is rejected with status code 400 (Bad Request).
      */
     @Operation(summary = "Retrieve all Invoices with criteria.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Invoices retrieved successfully"),
-        @ApiResponse(responseCode = "204", description = "Invoices not found")
+        @ApiResponse(responseCode = "204", description = "Invoices not found"),
+        @ApiResponse(responseCode = "400", description = "Unknown field")
     })
     @GetMapping
-    public ResponseEntity<Page<InvoiceDTO>> getInvoices(InvoiceSearchCriteriaDTO criteria, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<Slice<?>> getInvoices(InvoiceSearchCriteriaDTO criteria, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size,
+                                                @RequestParam(defaultValue = "true") boolean withTotal, @RequestParam(required = false) String fields) {
+        Set<String> selected = FieldsUtils.parseFields(fields, INVOICE_FIELDS);
+        boolean withDetails = selected == null || selected.contains("invoiceDetails");
         Pageable pageable = PageRequest.of(page, size);
-        Page<InvoiceDTO> invoices = invoiceService.findByCriteria(criteria, pageable);
+        Slice<InvoiceDTO> invoices = withTotal ? invoiceService.findByCriteria(criteria, pageable, withDetails) : invoiceService.findSliceByCriteria(criteria, pageable, withDetails);
 
         if (invoices.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
 
-        return ResponseEntity.status(HttpStatus.OK).body(invoices);
+        return ResponseEntity.status(HttpStatus.OK).body(selected == null ? invoices : FieldsUtils.select(invoices, selected, INVOICE_FIELDS));
+    }
+
+    /**
+     * Retrieves Invoices based on the provided search criteria one page at a time, continuing after the cursor of the previous page. Unlike the offset pages, reading a page deep into the results costs the same as reading the first one.
+     *
+     * @param criteria The search criteria to filter the invoices.
+     * @param after The cursor returned as "next" with the previous page, omitted for the first page.
+     * @param size The number of invoices to retrieve per page. Defaults to 20.
+     * @param fields The comma-separated fields of the invoices to return, as for the paged listing. Every field when omitted.
+     * @return A {@link ResponseEntity} containing a {@link CursorPageDTO} of {@link InvoiceDTO} objects, reduced to the requested fields, and the cursor of the next page.
+     * @apiNote The sort cannot change between pages: a cursor returned for another sort is rejected with status code 400 (Bad Request), as is an unknown field.
+     */
+    @Operation(summary = "Retrieve Invoices with criteria using a cursor.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Invoices retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor or unknown field")
+    })
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageDTO<?>> getInvoicesAfter(InvoiceSearchCriteriaDTO criteria, @RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int size,
+                                                             @RequestParam(required = false) String fields) {
+        Set<String> selected = FieldsUtils.parseFields(fields, INVOICE_FIELDS);
+        CursorPageDTO<InvoiceDTO> invoices = invoiceService.findByCriteriaAfter(criteria, after, size, selected == null || selected.contains("invoiceDetails"));
+        if (selected == null) {
+            return ResponseEntity.status(HttpStatus.OK).body(invoices);
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(new CursorPageDTO<>(FieldsUtils.select(invoices.getContent(), selected, INVOICE_FIELDS),
+                invoices.getSize(), invoices.isHasNext(), invoices.getNext()));
     }
 
     /**
@@ -101,21 +173,87 @@ public class InvoiceController {
     }
 
     /**
-     * Creates a new Invoice.
+     * Creates a new Invoice. When an Idempotency-Key header is sent, retries with the same key return the Invoice created by the first request instead of creating a new one.
+     * When the ingestion mode is enabled, invoices without an Idempotency-Key are queued and committed together with other invoices.
      *
+     * @param idempotencyKey The optional key identifying the request across retries.
      * @param invoiceDTO The InvoiceSaveDTO object containing the details of the new Invoice to be created.
      * @return A ResponseEntity containing the newly created InvoiceDTO object and an HTTP status code of 201 (Created) upon successful creation.
+     * @apiNote If the ingestion queue is full, a ResponseEntity with status code 503 (Service Unavailable) and a Retry-After header is returned.
      */
     @Operation(summary = "Create a new Invoice.")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "201", description = "Invoice created successfully")
+        @ApiResponse(responseCode = "201", description = "Invoice created successfully"),
+        @ApiResponse(responseCode = "503", description = "Invoice ingestion queue is full")
     })
     @PostMapping
-    public ResponseEntity<InvoiceDTO> createInvoice(@Valid @RequestBody InvoiceSaveDTO invoiceDTO) {
-        InvoiceDTO createdInvoice = invoiceService.createInvoice(invoiceDTO);
+    public ResponseEntity<InvoiceDTO> createInvoice(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey, @Valid @RequestBody InvoiceSaveDTO invoiceDTO) {
+        InvoiceIngestionService ingestion = invoiceIngestionService.getIfAvailable();
+        InvoiceDTO createdInvoice;
+        if (idempotencyKey == null && ingestion != null) {
+            createdInvoice = ingestion.submit(invoiceDTO);
+        } else if (idempotencyKey == null) {
+            createdInvoice = invoiceService.createInvoice(invoiceDTO);
+        } else {
+            // Keyed requests keep the direct path, so the key is still stored in the same transaction as its invoice
+            createdInvoice = idempotencyService.execute(idempotencyKey, () -> invoiceService.createInvoice(invoiceDTO));
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(createdInvoice);
     }
 
+    /**
+     * Creates a batch of Invoices queued by a terminal while it was offline. The request body is a JSON array of InvoiceSaveDTO objects, which is read as a stream instead of being bound as a whole.
+     *
+     * @param request The HttpServletRequest whose body contains the JSON array of invoices.
+     * @return A ResponseEntity containing one InvoiceBatchResultDTO per invoice, telling whether it was created or rejected and why, and an HTTP status code of 200 (OK).
+     * @throws IOException If an error occurs while reading the request body.
+     * @apiNote A rejected invoice does not prevent the other invoices of the batch from being created.
+     */
+    @Operation(summary = "Create a batch of Invoices.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Invoice batch processed"),
+        @ApiResponse(responseCode = "400", description = "Request body is not an array of invoices")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<InvoiceBatchResultDTO>> createInvoices(HttpServletRequest request) throws IOException {
+        List<InvoiceBatchResultDTO> results = invoiceService.createInvoices(request.getInputStream());
+        return ResponseEntity.status(HttpStatus.OK).body(results);
+    }
+
+    /**
+     * Retrieves the statistics of the invoice ingestion mode, to help tuning its queue capacity, batch size and writers.
+     *
+     * @return A ResponseEntity containing the InvoiceIngestionStatsDTO object and an HTTP status code of 200 (OK).
+     * @throws ResourceNotFoundException If the ingestion mode is not enabled.
+     */
+    @Operation(summary = "Retrieve the Invoice ingestion statistics.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Invoice ingestion statistics retrieved successfully"),
+        @ApiResponse(responseCode = "404", description = "Invoice ingestion is not enabled")
+    })
+    @GetMapping("/ingestion")
+    public ResponseEntity<InvoiceIngestionStatsDTO> getIngestionStats() {
+        InvoiceIngestionService ingestion = invoiceIngestionService.getIfAvailable();
+        if (ingestion == null) {
+            throw new ResourceNotFoundException("Invoice ingestion is not enabled");
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(ingestion.getStats());
+    }
+
+    /**
+     * Retrieves the statistics of the cache of the products and customers read when writing invoices, to help sizing it.
+     *
+     * @return A ResponseEntity containing the CatalogCacheStatsDTO object and an HTTP status code of 200 (OK).
+     */
+    @Operation(summary = "Retrieve the catalog cache statistics.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Catalog cache statistics retrieved successfully")
+    })
+    @GetMapping("/catalog-cache")
+    public ResponseEntity<CatalogCacheStatsDTO> getCatalogCacheStats() {
+        return ResponseEntity.status(HttpStatus.OK).body(catalogCacheService.getStats());
+    }
+
     /**
      * Updates an existing Invoice with the provided InvoiceDTO object.
      *
@@ -135,6 +273,26 @@ public class InvoiceController {
         return ResponseEntity.status(HttpStatus.OK).body(updatedInvoice);
     }
 
+    /**
+     * Edits the lines of an existing Invoice with add, remove and set-quantity operations, without sending the whole list of lines again.
+     *
+     * @param id The unique identifier of the Invoice to be edited.
+     * @param operations The list of InvoiceLineOperationDTO objects to be applied in order.
+     * @return A ResponseEntity containing the edited InvoiceDTO object and an HTTP status code of 200 (OK) upon successful edit.
+     * @apiNote The Invoice can only be edited within 10 minutes of its creation, like a full update.
+     */
+    @Operation(summary = "Edit the lines of an existing Invoice.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Invoice lines edited successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid operation or edit window expired"),
+        @ApiResponse(responseCode = "404", description = "Invoice or product not found")
+    })
+    @PatchMapping("/{id}/lines")
+    public ResponseEntity<InvoiceDTO> patchInvoiceLines(@PathVariable UUID id, @RequestBody List<InvoiceLineOperationDTO> operations) {
+        InvoiceDTO updatedInvoice = invoiceService.patchInvoiceLines(id, operations);
+        return ResponseEntity.status(HttpStatus.OK).body(updatedInvoice);
+    }
+
     /**
      * Exports the Invoice details data into a PDF file.
      *
@@ -1,12 +1,18 @@
 package com.example.fpt_midterm_pos.controller;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,14 +23,21 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.fpt_midterm_pos.config.datasource.ReplicaRoutingContext;
 import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.dto.CatalogVersionStatsDTO;
 import com.example.fpt_midterm_pos.dto.ProductDTO;
 import com.example.fpt_midterm_pos.dto.ProductSaveDTO;
 import com.example.fpt_midterm_pos.dto.ProductSearchCriteriaDTO;
 import com.example.fpt_midterm_pos.dto.ProductShowDTO;
+import com.example.fpt_midterm_pos.dto.ProductSuggestionDTO;
+import com.example.fpt_midterm_pos.service.CatalogVersionService;
 import com.example.fpt_midterm_pos.service.ProductService;
+import com.example.fpt_midterm_pos.service.ProductSuggestService;
+import com.example.fpt_midterm_pos.utils.FieldsUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -34,33 +47,124 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 @RequestMapping("/api/v1/products")
 public class ProductController {
 
+    // Fields of the product listing that can be asked for with the fields parameter
+    private static final Map<String, Function<ProductShowDTO, Object>> PRODUCT_FIELDS = new LinkedHashMap<>();
+
+    static {
+        PRODUCT_FIELDS.put("id", ProductShowDTO::getId);
+        PRODUCT_FIELDS.put("name", ProductShowDTO::getName);
+        PRODUCT_FIELDS.put("price", ProductShowDTO::getPrice);
+        PRODUCT_FIELDS.put("quantity", ProductShowDTO::getQuantity);
+    }
+
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductSuggestService productSuggestService;
+
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
     /**
      * Retrieves all Products based on the provided search criteria.
      *
      * @param criteria The search criteria to filter the products.
      * @param page The page number to retrieve. Defaults to 0.
      * @param size The number of products to retrieve per page. Defaults to 20.
-     * @return A {@link ResponseEntity} containing a {@link Page} of {@link ProductShowDTO} objects representing the retrieved products.
-     * @apiNote If no products are found that match the search criteria, a {@link ResponseEntity} with status code 204 (No Content) is returned.
+     * @param withTotal Whether the total number of products and pages is counted. Defaults to true, when false only whether there is a next page is returned.
+     * @param fields The comma-separated fields of the products to return, among id, name, price and quantity. Every field when omitted, and the stock engine is only asked when quantity is requested.
+     * @param webRequest The current request, whose If-None-Match header is checked against the ETag of the catalog version.
+     * @return A {@link ResponseEntity} containing a {@link Page}, or a {@link Slice} without the totals, of {@link ProductShowDTO} objects representing the retrieved products, reduced to the requested fields.
+     * @apiNote If no products are found that match the search criteria, a {@link ResponseEntity} with status code 204 (No Content) is returned. If the catalog has not changed since the ETag sent in If-None-Match, status code 304 (Not Modified) is returned without reading the products. The products are always read from the primary database, never from a read replica, since the ETag promises the current catalog. An unknown field is rejected with status code 400 (Bad Request).
      */
     @Operation(summary = "Retrieve all Products with criteria.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Products retrieved successfully"),
-        @ApiResponse(responseCode = "204", description = "Products not found")
+        @ApiResponse(responseCode = "204", description = "Products not found"),
+        @ApiResponse(responseCode = "304", description = "Products not modified"),
+        @ApiResponse(responseCode = "400", description = "Unknown field")
     })
     @GetMapping
-    public ResponseEntity<Page<ProductShowDTO>> getProductsByCriteria(ProductSearchCriteriaDTO criteria, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+    public ResponseEntity<Slice<?>> getProductsByCriteria(ProductSearchCriteriaDTO criteria, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size,
+                                                          @RequestParam(defaultValue = "true") boolean withTotal, @RequestParam(required = false) String fields,
+                                                          WebRequest webRequest) {
+        Set<String> selected = FieldsUtils.parseFields(fields, PRODUCT_FIELDS);
+        String request = String.join("|", "products", criteria.getName() == null ? "" : criteria.getName(),
+                direction(criteria.getSortByName()), direction(criteria.getSortByPrice()),
+                String.valueOf(criteria.getMinPrice()), String.valueOf(criteria.getMaxPrice()),
+                String.valueOf(page), String.valueOf(size), String.valueOf(withTotal), selected == null ? "" : String.join(",", selected));
+        if (notModified(webRequest, request)) {
+            return null;
+        }
+
+        boolean withQuantity = selected == null || selected.contains("quantity");
         Pageable pageable = PageRequest.of(page, size);
-        Page<ProductShowDTO> products = productService.findByCriteria(criteria, pageable);
+        // Read on the primary, a lagging replica would put the products from before the version under its ETag and the till would keep them with 304
+        Slice<ProductShowDTO> products = ReplicaRoutingContext.onPrimary(() -> withTotal
+                ? productService.findByCriteria(criteria, pageable, withQuantity)
+                : productService.findSliceByCriteria(criteria, pageable, withQuantity));
 
         if (products.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).cacheControl(CacheControl.noCache()).build();
         }
 
-        return ResponseEntity.status(HttpStatus.OK).body(products);
+        return ResponseEntity.status(HttpStatus.OK).cacheControl(CacheControl.noCache())
+                .body(selected == null ? products : FieldsUtils.select(products, selected, PRODUCT_FIELDS));
+    }
+
+    /**
+     * Suggests active Products while their name is being typed.
+     *
+     * @param q The text typed so far, matched against the start of every word of the product names, ignoring the case.
+     * @param limit The maximum number of suggestions. Defaults to 10, at most 50.
+     * @param webRequest The current request, whose If-None-Match header is checked against the ETag of the catalog version.
+     * @return A ResponseEntity containing a List of ProductSuggestionDTO objects with the ID, name and price of the suggested products.
+     * @apiNote When no product matches, an empty list is returned so the typeahead can simply clear its choices. If the catalog has not changed since the ETag sent in If-None-Match, status code 304 (Not Modified) is returned.
+     */
+    @Operation(summary = "Suggest Products by the start of their name.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Products suggested successfully"),
+        @ApiResponse(responseCode = "304", description = "Suggestions not modified"),
+        @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestionDTO>> getSuggestions(@RequestParam String q, @RequestParam(defaultValue = "10") int limit, WebRequest webRequest) {
+        if (notModified(webRequest, String.join("|", "suggest", q, String.valueOf(limit)))) {
+            return null;
+        }
+        // Read on the primary like the listing, the suggestions are tagged with the same version
+        List<ProductSuggestionDTO> suggestions = ReplicaRoutingContext.onPrimary(() -> productSuggestService.suggest(q, limit));
+        return ResponseEntity.status(HttpStatus.OK).cacheControl(CacheControl.noCache()).body(suggestions);
+    }
+
+    /**
+     * Retrieves the current catalog version and how many product listings and suggestions were answered with 304 (Not Modified).
+     *
+     * @return A ResponseEntity containing the CatalogVersionStatsDTO object and an HTTP status code of 200 (OK).
+     */
+    @Operation(summary = "Retrieve the catalog version statistics.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Catalog version statistics retrieved successfully")
+    })
+    @GetMapping("/catalog-version")
+    public ResponseEntity<CatalogVersionStatsDTO> getCatalogVersionStats() {
+        return ResponseEntity.status(HttpStatus.OK).body(catalogVersionService.getStats());
+    }
+
+    // Tags the response with the ETag of the catalog version and tells whether the till already holds it, in which case the 304 is already set
+    private boolean notModified(WebRequest webRequest, String request) {
+        boolean notModified = webRequest.checkNotModified(catalogVersionService.etag(request));
+        catalogVersionService.recordRequest(notModified);
+        return notModified;
+    }
+
+    // Same rules as the sort of the listing: no sort when empty, descending only when asked
+    private static String direction(String sort) {
+        if (sort == null || sort.isEmpty()) {
+            return "";
+        }
+        return sort.equalsIgnoreCase("desc") ? "desc" : "asc";
     }
 
     /**
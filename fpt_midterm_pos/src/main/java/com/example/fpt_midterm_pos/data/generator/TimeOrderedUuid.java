@@ -0,0 +1,18 @@
+package com.example.fpt_midterm_pos.data.generator;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Generates the annotated UUID identifier with {@link TimeOrderedUuidGenerator}, so new rows are appended at the end
+ * of the primary key index instead of being inserted at random positions. Replaces {@code @GeneratedValue}.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUuid {
+}
@@ -0,0 +1,28 @@
+package com.example.fpt_midterm_pos.data.generator;
+
+import java.lang.reflect.Member;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import com.example.fpt_midterm_pos.utils.UuidUtils;
+
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+    public TimeOrderedUuidGenerator(TimeOrderedUuid config, Member member, CustomIdGeneratorCreationContext context) {
+        // Nothing to configure, the generator is stateless
+    }
+
+    /**
+     * Generates a new time-ordered UUID for the entity being persisted.
+     *
+     * @param session The session the entity is persisted with.
+     * @param object The entity being persisted.
+     * @return A new time-ordered UUID.
+     */
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return UuidUtils.timeOrderedUuid();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.fpt_midterm_pos.data.listener;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.service.CatalogCacheService;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Drops the cached snapshot of a product or customer whenever its row is written through JPA, which covers the product
+ * and customer updates, the status changes and the CSV imports alike.
+ */
+@Component
+public class CatalogCacheInvalidationListener {
+
+    private final ObjectProvider<CatalogCacheService> catalogCacheService;
+
+    public CatalogCacheInvalidationListener(ObjectProvider<CatalogCacheService> catalogCacheService) {
+        this.catalogCacheService = catalogCacheService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        // Not available when only the persistence layer is started, as in the repository tests
+        catalogCacheService.ifAvailable(cache -> {
+            if (entity instanceof Product product) {
+                cache.evictProduct(product.getId());
+            } else if (entity instanceof Customer customer) {
+                cache.evictCustomer(customer.getId());
+            }
+        });
+    }
+}
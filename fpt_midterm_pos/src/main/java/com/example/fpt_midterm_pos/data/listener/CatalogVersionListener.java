@@ -0,0 +1,33 @@
+package com.example.fpt_midterm_pos.data.listener;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.example.fpt_midterm_pos.service.CatalogVersionService;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Moves the product catalog to a new version whenever a product row is written through JPA, which covers the product
+ * creation, the updates, the status changes and the CSV imports, and whenever an invoice row is written, since every
+ * invoice write moves the stock shown in the listing.
+ */
+@Component
+public class CatalogVersionListener {
+
+    private final ObjectProvider<CatalogVersionService> catalogVersionService;
+
+    public CatalogVersionListener(ObjectProvider<CatalogVersionService> catalogVersionService) {
+        this.catalogVersionService = catalogVersionService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        // Not available when only the persistence layer is started, as in the repository tests
+        catalogVersionService.ifAvailable(CatalogVersionService::bump);
+    }
+}
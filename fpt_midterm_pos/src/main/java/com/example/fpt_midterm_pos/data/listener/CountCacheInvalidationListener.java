@@ -0,0 +1,45 @@
+package com.example.fpt_midterm_pos.data.listener;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Invoice;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.service.CountCacheService;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Invalidates the cached listing totals whenever an invoice, product or customer row is written through JPA, so every
+ * write path is covered without each service having to remember it.
+ */
+@Component
+public class CountCacheInvalidationListener {
+
+    private final ObjectProvider<CountCacheService> countCacheService;
+
+    public CountCacheInvalidationListener(ObjectProvider<CountCacheService> countCacheService) {
+        this.countCacheService = countCacheService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        // Not available when only the persistence layer is started, as in the repository tests
+        countCacheService.ifAvailable(cache -> {
+            if (entity instanceof Invoice) {
+                cache.invalidate("invoice");
+            } else if (entity instanceof Product) {
+                cache.invalidate("product");
+            } else if (entity instanceof Customer) {
+                // Invoices are filtered by customer name
+                cache.invalidate("customer");
+                cache.invalidate("invoice");
+            }
+        });
+    }
+}
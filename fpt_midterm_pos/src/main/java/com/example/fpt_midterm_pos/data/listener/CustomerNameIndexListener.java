@@ -0,0 +1,51 @@
+package com.example.fpt_midterm_pos.data.listener;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.service.CustomerNameIndexService;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Keeps the customer name index in sync with the customers written through JPA. The index is only changed once the
+ * write is committed, so a rolled back rename never shows up in the searches.
+ */
+@Component
+public class CustomerNameIndexListener {
+
+    private final ObjectProvider<CustomerNameIndexService> customerNameIndexService;
+
+    public CustomerNameIndexListener(ObjectProvider<CustomerNameIndexService> customerNameIndexService) {
+        this.customerNameIndexService = customerNameIndexService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Customer customer) {
+        afterCommit(() -> customerNameIndexService.ifAvailable(index -> index.put(customer.getId(), customer.getName())));
+    }
+
+    @PostRemove
+    public void onRemove(Customer customer) {
+        afterCommit(() -> customerNameIndexService.ifAvailable(index -> index.remove(customer.getId())));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -4,14 +4,19 @@ import java.util.Date;
 import java.util.Set;
 import java.util.UUID;
 
+import com.example.fpt_midterm_pos.data.generator.TimeOrderedUuid;
+import com.example.fpt_midterm_pos.data.listener.CatalogCacheInvalidationListener;
+import com.example.fpt_midterm_pos.data.listener.CountCacheInvalidationListener;
+import com.example.fpt_midterm_pos.data.listener.CustomerNameIndexListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
@@ -25,12 +30,13 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners({CountCacheInvalidationListener.class, CustomerNameIndexListener.class, CatalogCacheInvalidationListener.class})
 @Table(name = "Customer")
 public class Customer {
     
     @Id
     @Column(name = "ID", columnDefinition = "BINARY(16)", updatable = false, nullable = false)
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @NotBlank(message = "Name is mandatory")
@@ -54,5 +60,6 @@ public class Customer {
     private Date updatedAt;
 
     @OneToMany(mappedBy = "customer", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
     private Set<Invoice> invoice;
 }
@@ -0,0 +1,39 @@
+package com.example.fpt_midterm_pos.data.model;
+
+import java.util.Date;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "IdempotencyKey", indexes = {
+    @Index(name = "idx_idempotency_key_expires_at", columnList = "expiresAt")
+})
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "idempotencyKey", length = 255, updatable = false, nullable = false)
+    private String key;
+
+    @Column(name = "invoiceId", columnDefinition = "BINARY(16)", nullable = false)
+    private UUID invoiceId;
+
+    @Column(name = "response", columnDefinition = "TEXT", nullable = false)
+    private String response;
+
+    @Column(name = "createdAt", nullable = false)
+    private Date createdAt;
+
+    @Column(name = "expiresAt", nullable = false)
+    private Date expiresAt;
+}
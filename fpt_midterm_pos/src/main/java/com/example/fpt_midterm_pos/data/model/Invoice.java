@@ -4,16 +4,25 @@ import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+import com.example.fpt_midterm_pos.data.generator.TimeOrderedUuid;
+import com.example.fpt_midterm_pos.data.listener.CatalogVersionListener;
+import com.example.fpt_midterm_pos.data.listener.CountCacheInvalidationListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import org.hibernate.annotations.BatchSize;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedEntityGraphs;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -24,14 +33,37 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "Invoice")
+@EntityListeners({CountCacheInvalidationListener.class, CatalogVersionListener.class})
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = Invoice.WITH_CUSTOMER, attributeNodes = @NamedAttributeNode("customer")),
+    @NamedEntityGraph(name = Invoice.WITH_CUSTOMER_AND_DETAILS, attributeNodes = {
+        @NamedAttributeNode("customer"),
+        @NamedAttributeNode("invoiceDetails")
+    })
+})
+@Table(name = "Invoice", indexes = {
+    // Seek indexes of the cursor pagination, one per leading sort column
+    @Index(name = "idx_invoice_date_amount_id", columnList = "date, amount, ID"),
+    @Index(name = "idx_invoice_amount_date_id", columnList = "amount, date, ID"),
+    // Invoices of one customer in date order, without a filesort
+    @Index(name = "idx_invoice_customer_date_amount_id", columnList = "customer_id, date, amount, ID")
+})
 public class Invoice {
+
+    // Fetch plans of the invoice reads. The customer is joined, the details of a single invoice are joined too, while the
+    // details of a list of invoices are read in batches to keep one row per invoice
+    public static final String WITH_CUSTOMER = "Invoice.withCustomer";
+    public static final String WITH_CUSTOMER_AND_DETAILS = "Invoice.withCustomerAndDetails";
     
     @Id
     @Column(name = "ID", columnDefinition = "BINARY(16)", updatable = false, nullable = false)
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TimeOrderedUuid
     private UUID id;
 
+    // Printed receipt number, null for the invoices created before the numbers were introduced
+    @Column(name = "invoiceNumber", length = 80, unique = true, updatable = false)
+    private String invoiceNumber;
+
     @Column(name = "amount", nullable = false)
     private Double amount;
 
@@ -48,7 +80,9 @@ public class Invoice {
     @JoinColumn(name = "customer_id", nullable = false)
     private Customer customer;
 
+    // Loaded for up to 100 invoices of the persistence context at once
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     @JsonIgnore
     private List<InvoiceDetail> invoiceDetails;
 }
@@ -15,6 +15,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class InvoiceDetailKey implements Serializable {
+    // Kept first so the key follows the time order of the invoice IDs
     private UUID invoiceId;
     private UUID productId;
 }
@@ -0,0 +1,27 @@
+package com.example.fpt_midterm_pos.data.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+// Written with plain JDBC by InvoiceNumberServiceImpl on a connection of its own, the mapping only creates the table
+@Table(name = "InvoiceNumberSequence")
+public class InvoiceNumberSequence {
+
+    // Store or terminal code owning the sequence
+    @Id
+    @Column(name = "sequenceName", length = 64, updatable = false, nullable = false)
+    private String name;
+
+    // First number of the next block to be handed out
+    @Column(name = "nextValue", nullable = false)
+    private Long nextValue;
+}
@@ -3,12 +3,19 @@ package com.example.fpt_midterm_pos.data.model;
 import java.util.Date;
 import java.util.UUID;
 
+import com.example.fpt_midterm_pos.data.generator.TimeOrderedUuid;
+import com.example.fpt_midterm_pos.data.listener.CatalogCacheInvalidationListener;
+import com.example.fpt_midterm_pos.data.listener.CatalogVersionListener;
+import com.example.fpt_midterm_pos.data.listener.CountCacheInvalidationListener;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
@@ -22,12 +29,17 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners({CountCacheInvalidationListener.class, CatalogCacheInvalidationListener.class, CatalogVersionListener.class})
 @Table(name = "Product")
+// The products behind the lines of the loaded invoices are initialized up to 100 at once
+@BatchSize(size = 100)
+// Only the changed columns are written, so saving a status or a name never puts back a quantity taken by a concurrent checkout
+@DynamicUpdate
 public class Product {
     
     @Id
     @Column(name = "ID", columnDefinition = "BINARY(16)", updatable = false, nullable = false)
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @NotBlank(message = "Name is mandatory")
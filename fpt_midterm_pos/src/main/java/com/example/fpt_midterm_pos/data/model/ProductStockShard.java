@@ -0,0 +1,23 @@
+package com.example.fpt_midterm_pos.data.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "ProductStockShard")
+public class ProductStockShard {
+
+    @EmbeddedId
+    private ProductStockShardKey id;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,20 @@
+package com.example.fpt_midterm_pos.data.model;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@Embeddable
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStockShardKey implements Serializable {
+    private UUID productId;
+    private Integer shard;
+}
@@ -1,14 +1,32 @@
 package com.example.fpt_midterm_pos.data.repository;
 
+import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.example.fpt_midterm_pos.data.model.Customer;
 import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, UUID> {
 
+    // Find a page of the listed columns of the customers, without loading the customers or their invoices
+    @Query(value = "SELECT new com.example.fpt_midterm_pos.dto.CustomerShowDTO(c.id, c.name, c.phoneNumber) FROM Customer c",
+           countQuery = "SELECT COUNT(c) FROM Customer c")
+    Page<CustomerShowDTO> findAllShowBy(Pageable pageable);
+
+    // Find a page of the listed columns of the customers, reading one more row to know if there is a next page instead of counting them all
+    @Query("SELECT new com.example.fpt_midterm_pos.dto.CustomerShowDTO(c.id, c.name, c.phoneNumber) FROM Customer c")
+    Slice<CustomerShowDTO> findShowSliceBy(Pageable pageable);
+
+    // Find the ID and name of every customer, without loading the customers themselves
+    @Query("SELECT c.id, c.name FROM Customer c")
+    List<Object[]> findAllIdAndName();
 }
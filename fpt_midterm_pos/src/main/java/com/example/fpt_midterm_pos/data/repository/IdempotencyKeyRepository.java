@@ -0,0 +1,20 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.Date;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.fpt_midterm_pos.data.model.IdempotencyKey;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+       // Remove all the keys that expired before the given date in a single statement
+       @Modifying
+       @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+       int deleteAllExpired(@Param("now") Date now);
+}
@@ -0,0 +1,8 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.Date;
+import java.util.UUID;
+
+// Position of the last invoice of a page, the next page starts right after it
+public record InvoiceCursor(Date date, Double amount, UUID id) {
+}
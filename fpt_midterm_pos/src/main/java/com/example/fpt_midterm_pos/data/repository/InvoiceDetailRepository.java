@@ -1,6 +1,12 @@
 package com.example.fpt_midterm_pos.data.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.fpt_midterm_pos.data.model.InvoiceDetail;
@@ -8,4 +14,9 @@ import com.example.fpt_midterm_pos.data.model.InvoiceDetailKey;
 
 @Repository
 public interface InvoiceDetailRepository extends JpaRepository<InvoiceDetail, InvoiceDetailKey> {
+
+       // Find the lines of all the given invoices at once, read from the primary key whose first column is the invoice ID
+       @Query("SELECT new com.example.fpt_midterm_pos.data.repository.InvoiceLineSummary(d.id.invoiceId, d.id.productId, d.productName, d.quantity, d.price, d.amount) " +
+              "FROM InvoiceDetail d WHERE d.id.invoiceId IN :invoiceIds")
+       List<InvoiceLineSummary> findLineSummariesByInvoiceIds(@Param("invoiceIds") Collection<UUID> invoiceIds);
 }
@@ -0,0 +1,7 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.UUID;
+
+// Columns of an invoice line shown by the invoice listings, with the invoice it belongs to
+public record InvoiceLineSummary(UUID invoiceId, UUID productId, String productName, Integer quantity, Double price, Double amount) {
+}
@@ -0,0 +1,39 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.example.fpt_midterm_pos.data.model.Invoice;
+
+public interface InvoiceRepositoryCustom {
+
+       // Find all invoice data from the given filter criteria, the period going from the inclusive start until the exclusive end.
+       // The customer IDs replace the customer name filter when the customers matching the name are already known
+       Page<Invoice> findByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                   String sortByDate, String sortByAmount, Pageable pageable);
+
+       // Find a page of invoice data from the given filter criteria, reading one more row to know if there is a next page instead of counting them all
+       Slice<Invoice> findSliceByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                         String sortByDate, String sortByAmount, Pageable pageable);
+
+       // Find a page of the listed columns of the invoices matching the given filter criteria, without loading the invoices or their customers
+       Slice<InvoiceSummary> findSummarySliceByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                                       String sortByDate, String sortByAmount, Pageable pageable);
+
+       // Count the invoices matching the given filter criteria
+       long countByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until);
+
+       // Find the invoices matching the given filters that come right after the given cursor, seeking instead of skipping rows
+       List<Invoice> findByFiltersAfter(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                        boolean sortByAmount, boolean descending, InvoiceCursor after, int limit);
+
+       // Find the listed columns of the invoices matching the given filters that come right after the given cursor
+       List<InvoiceSummary> findSummariesByFiltersAfter(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                                        boolean sortByAmount, boolean descending, InvoiceCursor after, int limit);
+}
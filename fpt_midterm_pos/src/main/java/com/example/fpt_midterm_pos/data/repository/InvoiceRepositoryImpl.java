@@ -0,0 +1,341 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import com.example.fpt_midterm_pos.data.model.Invoice;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * Queries of {@link InvoiceRepository} whose shape depends on the requested filters, so they cannot be declared with a
+ * single {@code @Query}. Only the requested filters and sort columns are part of the JPQL, instead of an
+ * {@code (:x IS NULL OR ...)} guard per filter and a {@code CASE} per sort direction that hide every column from the
+ * optimizer. The JPQL of each combination is built once and reused, so Hibernate also parses it once and then finds it
+ * in its query plan cache.
+ * <p>
+ * The summary queries of the listings read the invoice and customer columns they show with a constructor expression and
+ * a single join, instead of loading the invoices and then their customers one by one. The result is not managed, so it
+ * costs no dirty check at flush either.
+ * <p>
+ * Plans MySQL is expected to pick for the common shapes, to be confirmed with {@code EXPLAIN} on the logged SQL:
+ * <ul>
+ *     <li>by customer, sorted by date: {@code ref} on {@code idx_invoice_customer_date_amount_id}, no filesort</li>
+ *     <li>by date range, sorted by date: {@code range} on {@code idx_invoice_date_amount_id}, no filesort</li>
+ *     <li>no filter, sorted by date or by amount only: full index scan of the matching seek index, stopping at the limit</li>
+ *     <li>by month or any other period: {@code range} on {@code idx_invoice_date_amount_id}</li>
+ *     <li>by customer IDs found from the name index: {@code range} on {@code idx_invoice_customer_date_amount_id}</li>
+ *     <li>by customer name: the customer join cannot use an index for {@code LIKE '%name%'}</li>
+ * </ul>
+ */
+public class InvoiceRepositoryImpl implements InvoiceRepositoryCustom {
+
+    private final Map<Shape, String> queries = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Finds a page of invoices matching the given filters, counting the total only when the page alone does not tell it.
+     *
+     * @param customerName Part of the customer name, or null.
+     * @param customerId The customer ID, or null.
+     * @param customerIds The IDs of the customers whose name matches, or null.
+     * @param startDate The start of the date range, or null.
+     * @param endDate The end of the date range, or null.
+     * @param from The start of the period, inclusive, or null.
+     * @param until The end of the period, exclusive, or null.
+     * @param sortByDate "asc" or "desc", null sorts by ascending date.
+     * @param sortByAmount "asc" or "desc", null sorts by ascending amount after the date.
+     * @param pageable The page to be read.
+     * @return The invoices of the page, with the total number of matching invoices.
+     */
+    @Override
+    public Page<Invoice> findByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                       String sortByDate, String sortByAmount, Pageable pageable) {
+        Slice<Invoice> invoices = findSliceByFilters(customerName, customerId, customerIds, startDate, endDate, from, until, sortByDate, sortByAmount, pageable);
+        return PageableExecutionUtils.getPage(invoices.getContent(), pageable,
+                () -> countByFilters(customerName, customerId, customerIds, startDate, endDate, from, until));
+    }
+
+    /**
+     * Finds a page of invoices matching the given filters, reading one more invoice than the page size to know whether
+     * there is a next page. The invoices are ordered by date, then amount, then ID, so the order is stable across pages
+     * and matches the column order of the invoice indexes.
+     *
+     * @param customerName Part of the customer name, or null.
+     * @param customerId The customer ID, or null.
+     * @param customerIds The IDs of the customers whose name matches, or null.
+     * @param startDate The start of the date range, or null.
+     * @param endDate The end of the date range, or null.
+     * @param from The start of the period, inclusive, or null.
+     * @param until The end of the period, exclusive, or null.
+     * @param sortByDate "asc" or "desc", null sorts by ascending date.
+     * @param sortByAmount "asc" or "desc", null sorts by ascending amount after the date.
+     * @param pageable The page to be read.
+     * @return The invoices of the page, in order.
+     */
+    @Override
+    public Slice<Invoice> findSliceByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                             String sortByDate, String sortByAmount, Pageable pageable) {
+        Filters filters = new Filters(customerName, customerId, customerIds, startDate, endDate, from, until);
+        return slice(filters, Invoice.class, false, orderBy(sortByDate, sortByAmount), pageable);
+    }
+
+    /**
+     * Finds a page of the listed columns of the invoices matching the given filters, in the same order as
+     * {@link #findSliceByFilters}, with one query joining the customer.
+     *
+     * @param customerName Part of the customer name, or null.
+     * @param customerId The customer ID, or null.
+     * @param customerIds The IDs of the customers whose name matches, or null.
+     * @param startDate The start of the date range, or null.
+     * @param endDate The end of the date range, or null.
+     * @param from The start of the period, inclusive, or null.
+     * @param until The end of the period, exclusive, or null.
+     * @param sortByDate "asc" or "desc", null sorts by ascending date.
+     * @param sortByAmount "asc" or "desc", null sorts by ascending amount after the date.
+     * @param pageable The page to be read.
+     * @return The {@link InvoiceSummary} of every invoice of the page, in order.
+     */
+    @Override
+    public Slice<InvoiceSummary> findSummarySliceByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                                           String sortByDate, String sortByAmount, Pageable pageable) {
+        Filters filters = new Filters(customerName, customerId, customerIds, startDate, endDate, from, until);
+        return slice(filters, InvoiceSummary.class, true, orderBy(sortByDate, sortByAmount), pageable);
+    }
+
+    /**
+     * Counts the invoices matching the given filters.
+     *
+     * @param customerName Part of the customer name, or null.
+     * @param customerId The customer ID, or null.
+     * @param customerIds The IDs of the customers whose name matches, or null.
+     * @param startDate The start of the date range, or null.
+     * @param endDate The end of the date range, or null.
+     * @param from The start of the period, inclusive, or null.
+     * @param until The end of the period, exclusive, or null.
+     * @return The number of matching invoices.
+     */
+    @Override
+    public long countByFilters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until) {
+        Filters filters = new Filters(customerName, customerId, customerIds, startDate, endDate, from, until);
+        TypedQuery<Long> query = entityManager.createQuery(jpql(filters.shape(Kind.COUNT, false, null)), Long.class);
+        filters.bind(query);
+        return query.getSingleResult();
+    }
+
+    /**
+     * Finds a page of invoices ordered by (date, amount, id), or by (amount, date, id) when sorting by amount, starting
+     * right after the given cursor. Only the requested filters are part of the query, and the cursor becomes a seek
+     * predicate on the leading sort column, so the page is read from the matching index instead of skipping all the
+     * previous rows like an offset does.
+     *
+     * @param customerName Part of the customer name, or null.
+     * @param customerId The customer ID, or null.
+     * @param customerIds The IDs of the customers whose name matches, or null.
+     * @param startDate The start of the date range, or null.
+     * @param endDate The end of the date range, or null.
+     * @param from The start of the period, inclusive, or null.
+     * @param until The end of the period, exclusive, or null.
+     * @param sortByAmount Whether the amount is the leading sort column instead of the date.
+     * @param descending Whether the invoices are read in descending order.
+     * @param after The last invoice of the previous page, or null for the first page.
+     * @param limit The maximum number of invoices to be returned.
+     * @return The invoices of the page, in order.
+     */
+    @Override
+    public List<Invoice> findByFiltersAfter(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                            boolean sortByAmount, boolean descending, InvoiceCursor after, int limit) {
+        Filters filters = new Filters(customerName, customerId, customerIds, startDate, endDate, from, until);
+        return seek(filters, Invoice.class, false, sortByAmount, descending, after, limit);
+    }
+
+    /**
+     * Finds the listed columns of the invoices matching the given filters right after the given cursor, in the same
+     * order as {@link #findByFiltersAfter}, with one query joining the customer.
+     *
+     * @param customerName Part of the customer name, or null.
+     * @param customerId The customer ID, or null.
+     * @param customerIds The IDs of the customers whose name matches, or null.
+     * @param startDate The start of the date range, or null.
+     * @param endDate The end of the date range, or null.
+     * @param from The start of the period, inclusive, or null.
+     * @param until The end of the period, exclusive, or null.
+     * @param sortByAmount Whether the amount is the leading sort column instead of the date.
+     * @param descending Whether the invoices are read in descending order.
+     * @param after The last invoice of the previous page, or null for the first page.
+     * @param limit The maximum number of invoices to be returned.
+     * @return The {@link InvoiceSummary} of every invoice of the page, in order.
+     */
+    @Override
+    public List<InvoiceSummary> findSummariesByFiltersAfter(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until,
+                                                            boolean sortByAmount, boolean descending, InvoiceCursor after, int limit) {
+        Filters filters = new Filters(customerName, customerId, customerIds, startDate, endDate, from, until);
+        return seek(filters, InvoiceSummary.class, true, sortByAmount, descending, after, limit);
+    }
+
+    // Reads an offset page of invoices or of their summaries, one more than the page size to know if there is a next page
+    private <T> Slice<T> slice(Filters filters, Class<T> type, boolean summary, String orderBy, Pageable pageable) {
+        TypedQuery<T> query = entityManager.createQuery(jpql(filters.shape(Kind.LIST, summary, orderBy)), type);
+        filters.bind(query);
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList(), pageable, false);
+        }
+
+        List<T> results = query.setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = results.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? results.subList(0, pageable.getPageSize()) : results, pageable, hasNext);
+    }
+
+    // Reads the invoices or their summaries coming right after the cursor
+    private <T> List<T> seek(Filters filters, Class<T> type, boolean summary, boolean sortByAmount, boolean descending, InvoiceCursor after, int limit) {
+        String first = sortByAmount ? "amount" : "date";
+        String second = sortByAmount ? "date" : "amount";
+        String direction = descending ? "DESC" : "ASC";
+        String orderBy = "i." + first + " " + direction + ", i." + second + " " + direction + ", i.id " + direction;
+
+        TypedQuery<T> query = entityManager.createQuery(jpql(filters.shape(after == null ? Kind.LIST : Kind.SEEK, summary, orderBy)), type);
+        filters.bind(query);
+        if (after != null) {
+            query.setParameter("afterFirst", sortByAmount ? after.amount() : after.date());
+            query.setParameter("afterSecond", sortByAmount ? after.date() : after.amount());
+            query.setParameter("afterId", after.id());
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    // Builds the JPQL of a shape the first time it is requested
+    private String jpql(Shape shape) {
+        return queries.computeIfAbsent(shape, Shape::toJpql);
+    }
+
+    // Order of the offset pages, a sort criterion other than "asc" or "desc" leaves its column out like it always did
+    private static String orderBy(String sortByDate, String sortByAmount) {
+        List<String> columns = new ArrayList<>();
+        String dateDirection = direction(sortByDate);
+        String amountDirection = direction(sortByAmount);
+        if (dateDirection != null) {
+            columns.add("i.date " + dateDirection);
+        }
+        if (amountDirection != null) {
+            columns.add("i.amount " + amountDirection);
+        }
+        // The ID keeps pages stable when dates and amounts are equal, in the direction of the last column to keep the index usable
+        String idDirection = amountDirection != null ? amountDirection : dateDirection != null ? dateDirection : "ASC";
+        columns.add("i.id " + idDirection);
+        return String.join(", ", columns);
+    }
+
+    private static String direction(String sort) {
+        if (sort == null || sort.equalsIgnoreCase("asc")) {
+            return "ASC";
+        }
+        return sort.equalsIgnoreCase("desc") ? "DESC" : null;
+    }
+
+    private enum Kind {
+        LIST, SEEK, COUNT
+    }
+
+    // Which filters a query uses and how it is ordered, the values of the filters are bound as parameters
+    private record Shape(boolean byCustomerName, boolean byCustomerId, boolean byCustomerIds, boolean noCustomer, boolean byDateRange, boolean byPeriod,
+                         Kind kind, boolean summary, String orderBy) {
+
+        private String toJpql() {
+            List<String> predicates = new ArrayList<>();
+            if (byCustomerName) {
+                // The summary already joins the customer for its name
+                predicates.add(summary ? "c.name LIKE :customerName" : "i.customer.name LIKE :customerName");
+            }
+            if (byCustomerId) {
+                predicates.add("i.customer.id = :customerId");
+            }
+            if (byCustomerIds) {
+                predicates.add("i.customer.id IN :customerIds");
+            }
+            if (noCustomer) {
+                // No customer matches, an empty IN list is not valid SQL
+                predicates.add("1 = 0");
+            }
+            if (byDateRange) {
+                predicates.add("i.date BETWEEN :startDate AND :endDate");
+            }
+            if (byPeriod) {
+                predicates.add("i.date >= :from AND i.date < :until");
+            }
+            if (kind == Kind.SEEK) {
+                predicates.add(seekPredicate());
+            }
+
+            StringBuilder jpql = new StringBuilder(kind == Kind.COUNT ? "SELECT COUNT(i) FROM Invoice i"
+                    : summary ? "SELECT new " + InvoiceSummary.class.getName() + "(i.id, i.invoiceNumber, i.amount, i.date, c.id, c.name) FROM Invoice i JOIN i.customer c"
+                    : "SELECT i FROM Invoice i");
+            if (!predicates.isEmpty()) {
+                jpql.append(" WHERE ").append(String.join(" AND ", predicates));
+            }
+            if (orderBy != null) {
+                jpql.append(" ORDER BY ").append(orderBy);
+            }
+            return jpql.toString();
+        }
+
+        // Expanded form of (first, second, id) > (:first, :second, :id), led by a plain range on the first column
+        private String seekPredicate() {
+            String[] columns = orderBy.split(", ");
+            String first = columns[0].substring(0, columns[0].indexOf(' '));
+            String second = columns[1].substring(0, columns[1].indexOf(' '));
+            boolean descending = columns[0].endsWith("DESC");
+            String op = descending ? "<" : ">";
+            String bound = descending ? "<=" : ">=";
+            return first + " " + bound + " :afterFirst AND (" + first + " " + op + " :afterFirst OR " +
+                    "(" + first + " = :afterFirst AND (" + second + " " + op + " :afterSecond OR " +
+                    "(" + second + " = :afterSecond AND i.id " + op + " :afterId))))";
+        }
+    }
+
+    // The requested filters, a filter is only part of the query when its value is given
+    private record Filters(String customerName, UUID customerId, Collection<UUID> customerIds, Date startDate, Date endDate, Date from, Date until) {
+
+        private Shape shape(Kind kind, boolean summary, String orderBy) {
+            return new Shape(customerName != null, customerId != null, customerIds != null && !customerIds.isEmpty(),
+                    customerIds != null && customerIds.isEmpty(), startDate != null && endDate != null, from != null && until != null, kind, summary, orderBy);
+        }
+
+        private void bind(Query query) {
+            if (customerName != null) {
+                query.setParameter("customerName", "%" + customerName + "%");
+            }
+            if (customerId != null) {
+                query.setParameter("customerId", customerId);
+            }
+            if (customerIds != null && !customerIds.isEmpty()) {
+                query.setParameter("customerIds", customerIds);
+            }
+            if (startDate != null && endDate != null) {
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+            }
+            if (from != null && until != null) {
+                query.setParameter("from", from);
+                query.setParameter("until", until);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.Date;
+import java.util.UUID;
+
+// Columns of an invoice shown by the invoice listings, read with a constructor expression instead of loading the invoice
+public record InvoiceSummary(UUID id, String invoiceNumber, Double amount, Date date, UUID customerId, String customerName) {
+}
@@ -0,0 +1,7 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.Date;
+
+// Number of products and time of the last product write, both change whenever any node adds or writes a product
+public record ProductCatalogVersion(Long count, Date lastUpdatedAt) {
+}
@@ -1,17 +1,23 @@
 package com.example.fpt_midterm_pos.data.repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.example.fpt_midterm_pos.data.model.Product;
 import com.example.fpt_midterm_pos.data.model.Status;
 
+import jakarta.persistence.LockModeType;
+
 public interface ProductRepository extends JpaRepository<Product, UUID> {
         
         // Find all the product that containing name with active status
@@ -23,15 +29,63 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
         // Find all the product with given status and containing name
         Page<Product> findByStatusAndNameContaining(Status status, String name, Pageable pageable);
 
-        // Find all product data from the given filter criteria
-        @Query("SELECT p FROM Product p WHERE " +
+        // Filters shared by the paged listing and its count
+        String FILTER_CONDITION =
                 "p.status = :status AND " +
                 "(:name IS NULL OR p.name LIKE %:name%) AND " +
                 "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
-                "(:maxPrice IS NULL OR p.price <= :maxPrice)")
+                "(:maxPrice IS NULL OR p.price <= :maxPrice)";
+
+        // Find all product data from the given filter criteria
+        @Query(value = "SELECT p FROM Product p WHERE " + FILTER_CONDITION,
+                countQuery = "SELECT COUNT(p) FROM Product p WHERE " + FILTER_CONDITION)
         Page<Product> findByFilters(@Param("status") Status status,
                                         @Param("name") String name,
                                         @Param("minPrice") Double minPrice,
                                         @Param("maxPrice") Double maxPrice,
                                         Pageable pageable);
-}
+
+        // Find a page of product data from the given filter criteria, reading one more row to know if there is a next page instead of counting them all
+        @Query("SELECT p FROM Product p WHERE " + FILTER_CONDITION)
+        Slice<Product> findSliceByFilters(@Param("status") Status status,
+                                        @Param("name") String name,
+                                        @Param("minPrice") Double minPrice,
+                                        @Param("maxPrice") Double maxPrice,
+                                        Pageable pageable);
+
+        // Count the products matching the given filter criteria
+        @Query("SELECT COUNT(p) FROM Product p WHERE " + FILTER_CONDITION)
+        long countByFilters(@Param("status") Status status,
+                                        @Param("name") String name,
+                                        @Param("minPrice") Double minPrice,
+                                        @Param("maxPrice") Double maxPrice);
+
+        // Decrement the stock only when enough quantity is left, returns the number of affected rows
+        @Modifying
+        @Query("UPDATE Product p SET p.quantity = p.quantity - :quantity " +
+                "WHERE p.id = :id AND p.quantity >= :quantity")
+        int decrementQuantity(@Param("id") UUID id, @Param("quantity") int quantity);
+
+        // Give back the stock of a product, returns the number of affected rows
+        @Modifying
+        @Query("UPDATE Product p SET p.quantity = p.quantity + :quantity WHERE p.id = :id")
+        int incrementQuantity(@Param("id") UUID id, @Param("quantity") int quantity);
+
+        // Override the stock of a product with an absolute quantity
+        @Modifying
+        @Query("UPDATE Product p SET p.quantity = :quantity WHERE p.id = :id")
+        int setQuantity(@Param("id") UUID id, @Param("quantity") int quantity);
+
+        // Find the ID, name and price of every product with given status, without loading the products themselves
+        @Query("SELECT p.id, p.name, p.price FROM Product p WHERE p.status = :status")
+        List<Object[]> findIdNameAndPriceByStatus(@Param("status") Status status);
+
+        // Count the products and find the time of the last product write, telling the in-memory catalogs whether to load again
+        @Query("SELECT new com.example.fpt_midterm_pos.data.repository.ProductCatalogVersion(COUNT(p), MAX(p.updatedAt)) FROM Product p")
+        ProductCatalogVersion findCatalogVersion();
+
+        // Find a product and lock its row until the end of the transaction
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT p FROM Product p WHERE p.id = :id")
+        Optional<Product> findByIdForUpdate(@Param("id") UUID id);
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.fpt_midterm_pos.data.model.ProductStockShard;
+import com.example.fpt_midterm_pos.data.model.ProductStockShardKey;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, ProductStockShardKey> {
+
+       // Decrement a single shard only when enough quantity is left, returns the number of affected rows
+       @Modifying
+       @Query("UPDATE ProductStockShard s SET s.quantity = s.quantity - :quantity " +
+              "WHERE s.id.productId = :productId AND s.id.shard = :shard AND s.quantity >= :quantity")
+       int decrementQuantity(@Param("productId") UUID productId,
+                             @Param("shard") int shard,
+                             @Param("quantity") int quantity);
+
+       // Give back the stock to a single shard, returns the number of affected rows
+       @Modifying
+       @Query("UPDATE ProductStockShard s SET s.quantity = s.quantity + :quantity " +
+              "WHERE s.id.productId = :productId AND s.id.shard = :shard")
+       int incrementQuantity(@Param("productId") UUID productId,
+                             @Param("shard") int shard,
+                             @Param("quantity") int quantity);
+
+       // Find and lock all the shards of a product
+       @Lock(LockModeType.PESSIMISTIC_WRITE)
+       @Query("SELECT s FROM ProductStockShard s WHERE s.id.productId = :productId ORDER BY s.id.shard")
+       List<ProductStockShard> findAllForUpdate(@Param("productId") UUID productId);
+
+       // Remove all the shards of a product
+       @Modifying
+       @Query("DELETE FROM ProductStockShard s WHERE s.id.productId = :productId")
+       int deleteAllByProductId(@Param("productId") UUID productId);
+
+       // Sum the shards of every given product, each row holds the product ID and its total quantity
+       @Query("SELECT s.id.productId, SUM(s.quantity) FROM ProductStockShard s " +
+              "WHERE s.id.productId IN :productIds GROUP BY s.id.productId")
+       List<Object[]> sumQuantityByProductIds(@Param("productIds") Collection<UUID> productIds);
+}
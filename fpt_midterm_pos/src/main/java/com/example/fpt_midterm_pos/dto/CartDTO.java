@@ -0,0 +1,20 @@
+package com.example.fpt_midterm_pos.dto;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartDTO {
+    private UUID id;
+    private Double amount;
+    private Date expiresAt;
+    private CustomerInvoiceDTO customer;
+    private List<InvoiceDetailDTO> lines;
+}
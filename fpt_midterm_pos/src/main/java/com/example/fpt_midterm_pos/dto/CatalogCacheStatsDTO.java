@@ -0,0 +1,22 @@
+package com.example.fpt_midterm_pos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogCacheStatsDTO {
+    private boolean enabled;
+    private int maxEntries;
+    private long ttlSeconds;
+    private int productEntries;
+    private long productHits;
+    private long productMisses;
+    private double productHitRatio;
+    private int customerEntries;
+    private long customerHits;
+    private long customerMisses;
+    private double customerHitRatio;
+}
@@ -0,0 +1,15 @@
+package com.example.fpt_midterm_pos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogVersionStatsDTO {
+    private long version;
+    private long requests;
+    private long notModified;
+    private double notModifiedRatio;
+}
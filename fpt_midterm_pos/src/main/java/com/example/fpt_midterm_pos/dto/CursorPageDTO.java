@@ -0,0 +1,18 @@
+package com.example.fpt_midterm_pos.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    // Token to be sent as "after" to read the next page, null on the last page
+    private String next;
+}
@@ -0,0 +1,22 @@
+package com.example.fpt_midterm_pos.dto;
+
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceBatchResultDTO {
+    private int index;
+    private UUID invoiceId;
+    private String status;
+    private String reason;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private InvoiceDTO invoice;
+}
@@ -13,6 +13,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class InvoiceDTO {
     private UUID id;
+    private String invoiceNumber;
     private Double amount;
     private Date date;
     private CustomerInvoiceDTO customer;
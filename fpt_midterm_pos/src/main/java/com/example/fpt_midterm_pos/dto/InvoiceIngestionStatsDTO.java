@@ -0,0 +1,22 @@
+package com.example.fpt_midterm_pos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceIngestionStatsDTO {
+    private int queueDepth;
+    private int queueCapacity;
+    private int writers;
+    private int maxBatchSize;
+    private long batches;
+    private long invoices;
+    private long rejectedSubmissions;
+    private int lastBatchSize;
+    private double averageBatchSize;
+    private double averageCommitMillis;
+    private double maxCommitMillis;
+}
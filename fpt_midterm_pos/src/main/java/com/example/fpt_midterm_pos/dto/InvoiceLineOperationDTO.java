@@ -0,0 +1,17 @@
+package com.example.fpt_midterm_pos.dto;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceLineOperationDTO {
+    // One of "add", "remove" or "set"
+    private String op;
+    private UUID productId;
+    private Integer quantity;
+}
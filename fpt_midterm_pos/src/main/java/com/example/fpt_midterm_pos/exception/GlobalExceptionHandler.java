@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -84,5 +86,37 @@ public class GlobalExceptionHandler {
         errorResponse.put("error", e.getMessage());
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
-}
 
+    /**
+     * Handles {@link ServiceUnavailableException} by creating a response entity containing an error message and a Retry-After header.
+     *
+     * @param e the {@link ServiceUnavailableException} to handle
+     * @return a {@link ResponseEntity} containing a map with an error message
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<Map<String, String>> handleServiceUnavailableException(ServiceUnavailableException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    /**
+     * Handles {@link PessimisticLockingFailureException}, thrown when the database rolled the transaction back to break a
+     * deadlock or a lock wait timed out, by asking the client to retry shortly.
+     *
+     * @param e the {@link PessimisticLockingFailureException} to handle
+     * @return a {@link ResponseEntity} containing a map with an error message
+     */
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<Map<String, String>> handlePessimisticLockingFailureException(PessimisticLockingFailureException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "The request conflicted with a concurrent one, please retry");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+}
@@ -33,6 +33,7 @@ public interface InvoiceMapper {
 
     @Mapping(source = "customerId", target = "customer.id")
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "invoiceNumber", ignore = true)
     @Mapping(target = "amount", ignore = true)
     @Mapping(target = "date", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
@@ -0,0 +1,32 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.UUID;
+
+import com.example.fpt_midterm_pos.dto.CartDTO;
+import com.example.fpt_midterm_pos.dto.CartSaveDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailSaveDTO;
+
+public interface CartService {
+
+    // Opens a new cart for a customer.
+    CartDTO createCart(CartSaveDTO cartSaveDTO);
+
+    // Retrieves an open cart.
+    CartDTO findById(UUID id);
+
+    // Adds a scanned product to a cart, holding its stock until the cart expires.
+    CartDTO addLine(UUID id, InvoiceDetailSaveDTO invoiceDetailSaveDTO);
+
+    // Removes a product from a cart, releasing its stock hold.
+    CartDTO removeLine(UUID id, UUID productId);
+
+    // Turns a cart into an invoice.
+    InvoiceDTO checkout(UUID id);
+
+    // Abandons a cart, releasing all its stock holds.
+    void deleteCart(UUID id);
+
+    // Abandons the carts that were not touched within the hold time.
+    void expireCarts();
+}
@@ -0,0 +1,27 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import com.example.fpt_midterm_pos.dto.CatalogCacheStatsDTO;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.ProductSnapshotDTO;
+
+public interface CatalogCacheService {
+
+    // Returns the name, price and status of the given products, keyed by ID. Products that do not exist are left out.
+    Map<UUID, ProductSnapshotDTO> findProducts(Collection<UUID> productIds);
+
+    // Returns the ID and name of the given customer.
+    CustomerInvoiceDTO findCustomer(UUID customerId);
+
+    // Forgets the cached snapshot of a product after it was written.
+    void evictProduct(UUID productId);
+
+    // Forgets the cached snapshot of a customer after it was written.
+    void evictCustomer(UUID customerId);
+
+    // Returns the size and the hit and miss counts of the cache.
+    CatalogCacheStatsDTO getStats();
+}
@@ -0,0 +1,21 @@
+package com.example.fpt_midterm_pos.service;
+
+import com.example.fpt_midterm_pos.dto.CatalogVersionStatsDTO;
+
+public interface CatalogVersionService {
+
+    // Returns the current version of the product catalog.
+    long getVersion();
+
+    // Moves the product catalog to a new version after a product or its stock was written.
+    void bump();
+
+    // Returns the strong ETag of a catalog response, from the current version and the normalized request.
+    String etag(String request);
+
+    // Counts a catalog request, and whether it was answered with 304 (Not Modified).
+    void recordRequest(boolean notModified);
+
+    // Returns the current version and the share of the requests answered with 304.
+    CatalogVersionStatsDTO getStats();
+}
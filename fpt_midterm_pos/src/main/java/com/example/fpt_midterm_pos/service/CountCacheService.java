@@ -0,0 +1,12 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.function.LongSupplier;
+
+public interface CountCacheService {
+
+    // Returns the total of a filtered listing, counting it only when no fresh total is cached for the same criteria.
+    long getCount(String entity, String criteria, LongSupplier counter);
+
+    // Forgets every cached total of the given entity after one of its rows was written.
+    void invalidate(String entity);
+}
@@ -0,0 +1,19 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.Set;
+import java.util.UUID;
+
+public interface CustomerNameIndexService {
+
+    // Finds the customers whose name contains the fragment, or null when the index cannot answer and the name must be matched by the database.
+    Set<UUID> findIdsByNameContaining(String fragment);
+
+    // Adds a customer to the index, or moves it to its new name.
+    void put(UUID id, String name);
+
+    // Removes a customer from the index.
+    void remove(UUID id);
+
+    // Loads the names of all the customers into the index.
+    void load();
+}
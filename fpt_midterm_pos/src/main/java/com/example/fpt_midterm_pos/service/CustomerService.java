@@ -4,16 +4,21 @@ import java.util.UUID;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import com.example.fpt_midterm_pos.data.model.Customer;
 import com.example.fpt_midterm_pos.data.model.Status;
 import com.example.fpt_midterm_pos.dto.CustomerDTO;
 import com.example.fpt_midterm_pos.dto.CustomerSaveDTO;
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
 
 public interface CustomerService {
 
     // Retrieves a paginated list of all customers.
-    Page<Customer> findAllCustomer(Pageable pageable);
+    Page<CustomerShowDTO> findAllCustomer(Pageable pageable);
+
+    // Retrieves a page of customers without counting them all.
+    Slice<CustomerShowDTO> findAllCustomerSlice(Pageable pageable);
 
     // Creating a new customer.
     CustomerDTO createCustomer(CustomerSaveDTO customerSaveDTO);
@@ -0,0 +1,14 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.function.Supplier;
+
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+
+public interface IdempotencyService {
+
+    // Runs the invoice creation at most once per idempotency key, replaying the original result on retries.
+    InvoiceDTO execute(String key, Supplier<InvoiceDTO> action);
+
+    // Removes the expired idempotency keys.
+    void purgeExpired();
+}
@@ -0,0 +1,14 @@
+package com.example.fpt_midterm_pos.service;
+
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceIngestionStatsDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceSaveDTO;
+
+public interface InvoiceIngestionService {
+
+    // Queues an invoice to be created together with other invoices, waiting until its group has been committed.
+    InvoiceDTO submit(InvoiceSaveDTO invoiceSaveDTO);
+
+    // Returns the batch size, queue depth and commit latency of the ingestion.
+    InvoiceIngestionStatsDTO getStats();
+}
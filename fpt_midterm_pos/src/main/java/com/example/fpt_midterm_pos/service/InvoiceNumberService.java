@@ -0,0 +1,10 @@
+package com.example.fpt_midterm_pos.service;
+
+public interface InvoiceNumberService {
+
+    // Returns the next receipt number of the sequence configured for this node.
+    String nextInvoiceNumber();
+
+    // Returns the next number of the given sequence.
+    long next(String sequence);
+}
@@ -1,6 +1,8 @@
 package com.example.fpt_midterm_pos.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.UUID;
 import java.util.Date;
 
@@ -8,20 +10,42 @@ import com.example.fpt_midterm_pos.dto.*;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import com.example.fpt_midterm_pos.exception.BadRequestException;
 
 public interface InvoiceService {
 
-    // Find invoices based on the provided criteria.
-    Page<InvoiceDTO> findByCriteria(InvoiceSearchCriteriaDTO criteria, Pageable pageable);
+    // Find invoices based on the provided criteria, with or without their lines.
+    Page<InvoiceDTO> findByCriteria(InvoiceSearchCriteriaDTO criteria, Pageable pageable, boolean withDetails);
+
+    // Find invoices based on the provided criteria, without counting the total, with or without their lines.
+    Slice<InvoiceDTO> findSliceByCriteria(InvoiceSearchCriteriaDTO criteria, Pageable pageable, boolean withDetails);
+
+    // Find invoices based on the provided criteria, one page after the given cursor, with or without their lines.
+    CursorPageDTO<InvoiceDTO> findByCriteriaAfter(InvoiceSearchCriteriaDTO criteria, String after, int size, boolean withDetails);
+
+    // Find the invoices of a customer, newest first, one page after the given cursor.
+    CursorPageDTO<InvoiceDTO> findByCustomerAfter(UUID customerId, String after, int size);
 
     // Creating a new invoice.
     InvoiceDTO createInvoice(InvoiceSaveDTO invoiceSaveDTO);
 
+    // Creates every invoice of a streamed JSON array, reporting the result of each one.
+    List<InvoiceBatchResultDTO> createInvoices(InputStream inputStream) throws IOException;
+
+    // Creates a group of invoices in a single transaction, reporting the result of each one.
+    List<InvoiceBatchResultDTO> createInvoiceGroup(List<InvoiceSaveDTO> invoiceSaveDTOs);
+
+    // Creates an invoice from lines whose products were already looked up, at the current catalog price.
+    InvoiceDTO createInvoiceFromLines(CustomerInvoiceDTO customer, List<InvoiceDetailDTO> lines);
+
     // Updates an existing invoice with the provided invoice details.
     InvoiceDTO updateInvoice(UUID id, InvoiceSaveDTO invoiceSaveDTO) throws BadRequestException;
 
+    // Applies add, remove and set-quantity operations to the lines of an existing invoice.
+    InvoiceDTO patchInvoiceLines(UUID id, List<InvoiceLineOperationDTO> operations);
+
     // Generates a PDF representation of the specified invoice.
     byte[] exportInvoiceToPDF(UUID id) throws IOException;
 
@@ -0,0 +1,29 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.dto.ProductSearchCriteriaDTO;
+
+public interface ProductCatalogService {
+
+    // Returns a page of the IDs of the active products matching the criteria, or null when the catalog is not loaded yet.
+    Page<UUID> findIds(ProductSearchCriteriaDTO criteria, Pageable pageable);
+
+    // Returns a slice of the IDs of the active products matching the criteria without counting them, or null when the catalog is not loaded yet.
+    Slice<UUID> findSliceIds(ProductSearchCriteriaDTO criteria, Pageable pageable);
+
+    // Applies the saved products to the catalog, the products that are not active are removed from it.
+    void update(Collection<Product> products);
+
+    // Loads all the active products into the catalog.
+    void load();
+
+    // Loads the catalog again when the products were changed since the last load, by this node or another one.
+    void refresh();
+}
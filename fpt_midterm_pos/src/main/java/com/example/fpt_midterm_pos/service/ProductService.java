@@ -6,14 +6,18 @@ import java.util.UUID;
 import com.example.fpt_midterm_pos.dto.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.fpt_midterm_pos.data.model.Status;
 
 public interface ProductService {
 
-    // Find products based on the provided criteria.
-    Page<ProductShowDTO> findByCriteria(ProductSearchCriteriaDTO criteria, Pageable pageable);
+    // Find products based on the provided criteria, with or without their available quantity.
+    Page<ProductShowDTO> findByCriteria(ProductSearchCriteriaDTO criteria, Pageable pageable, boolean withQuantity);
+
+    // Find products based on the provided criteria, without counting the total, with or without their available quantity.
+    Slice<ProductShowDTO> findSliceByCriteria(ProductSearchCriteriaDTO criteria, Pageable pageable, boolean withQuantity);
 
     // Creating a new product.
     ProductDTO createProduct(ProductSaveDTO productSaveDTO);
@@ -0,0 +1,22 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.dto.ProductSuggestionDTO;
+
+public interface ProductSuggestService {
+
+    // Suggests the active products having a word of their name starting with the typed text.
+    List<ProductSuggestionDTO> suggest(String query, int limit);
+
+    // Applies the saved products to the suggestions, the products that are not active are removed from them.
+    void update(Collection<Product> products);
+
+    // Loads all the active products into the suggestions.
+    void load();
+
+    // Loads the suggestions again when the products were changed since the last load, by this node or another one.
+    void refresh();
+}
@@ -0,0 +1,22 @@
+package com.example.fpt_midterm_pos.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+
+public interface StockService {
+
+    // Takes the given quantity from the stock of a product, failing if not enough is left.
+    void reserve(UUID productId, int quantity);
+
+    // Gives the given quantity back to the stock of a product.
+    void release(UUID productId, int quantity);
+
+    // Overrides the stock of a product after it has been edited directly.
+    void reset(UUID productId, int quantity);
+
+    // Retrieves the current available quantity of the given products, keyed by product ID.
+    Map<UUID, Integer> findAvailable(List<Product> products);
+}
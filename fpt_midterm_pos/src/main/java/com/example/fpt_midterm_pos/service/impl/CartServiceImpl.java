@@ -0,0 +1,300 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.CartDTO;
+import com.example.fpt_midterm_pos.dto.CartSaveDTO;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailSaveDTO;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.service.CartService;
+import com.example.fpt_midterm_pos.service.CustomerService;
+import com.example.fpt_midterm_pos.service.InvoiceService;
+import com.example.fpt_midterm_pos.service.StockService;
+
+/**
+ * Server-side carts filled one scanned product at a time. Every line holds its quantity against the available stock, so
+ * a basket that was accepted while scanning does not fail at payment because of another till. Holds are only tracked in
+ * memory and subtracted from the available stock when the next line is added, nothing is written until checkout, so a
+ * restart simply drops the open carts without leaking stock. Only meant for shops running a single node, like the
+ * in-memory stock engine.
+ * <p>
+ * Every cart is guarded by its own monitor, so the expiry sweep only ever waits for the cart it is closing and never
+ * for the checkout of another cart.
+ */
+@Service
+public class CartServiceImpl implements CartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartServiceImpl.class);
+
+    private final Map<UUID, Cart> carts = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> heldQuantities = new ConcurrentHashMap<>();
+    private final CustomerService customerService;
+    private final ProductRepository productRepository;
+    private final StockService stockService;
+    private final InvoiceService invoiceService;
+    private final Duration holdTtl;
+
+    @Autowired
+    public CartServiceImpl(CustomerService customerService, ProductRepository productRepository, StockService stockService,
+                           InvoiceService invoiceService, @Value("${pos.cart.hold-ttl-seconds:300}") long holdTtlSeconds) {
+        this.customerService = customerService;
+        this.productRepository = productRepository;
+        this.stockService = stockService;
+        this.invoiceService = invoiceService;
+        this.holdTtl = Duration.ofSeconds(holdTtlSeconds);
+    }
+
+    /**
+     * Opens a new, empty cart for the given customer.
+     *
+     * @param cartSaveDTO The cart details containing the customer ID.
+     * @return The new cart as a {@link CartDTO}.
+     * @throws ResourceNotFoundException If the customer is not found.
+     */
+    @Override
+    public CartDTO createCart(CartSaveDTO cartSaveDTO) {
+        Customer customer = customerService.findById(cartSaveDTO.getCustomerId());
+        Cart cart = new Cart(UUID.randomUUID(), new CustomerInvoiceDTO(customer.getId(), customer.getName()));
+        cart.touch(holdTtl);
+        carts.put(cart.id, cart);
+        return cart.toDTO();
+    }
+
+    /**
+     * Retrieves an open cart.
+     *
+     * @param id The unique identifier of the cart.
+     * @return The cart as a {@link CartDTO}.
+     * @throws ResourceNotFoundException If the cart is not found or has expired.
+     */
+    @Override
+    public CartDTO findById(UUID id) {
+        Cart cart = findOpenCart(id);
+        synchronized (cart) {
+            checkOpen(cart);
+            return cart.toDTO();
+        }
+    }
+
+    /**
+     * Adds a scanned product to a cart and holds its quantity against the available stock. Scanning a product that is
+     * already in the cart increases its line. Every change extends the hold time of the whole cart.
+     *
+     * @param id The unique identifier of the cart.
+     * @param invoiceDetailSaveDTO The scanned product and its quantity.
+     * @return The updated cart as a {@link CartDTO}.
+     * @throws ResourceNotFoundException If the cart or the product is not found.
+     * @throws IllegalArgumentException If the quantity is invalid, the product is not active or its stock, minus the holds of the open carts, is insufficient.
+     */
+    @Override
+    public CartDTO addLine(UUID id, InvoiceDetailSaveDTO invoiceDetailSaveDTO) {
+        UUID productId = invoiceDetailSaveDTO.getProductId();
+        Integer quantity = invoiceDetailSaveDTO.getQuantity();
+        if (productId == null || quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Invalid invoice detail");
+        }
+
+        Cart cart = findOpenCart(id);
+        synchronized (cart) {
+            checkOpen(cart);
+            Product product = hold(productId, quantity);
+            cart.lines.merge(productId, new InvoiceDetailDTO(productId, product.getName(), quantity, product.getPrice(), product.getPrice() * quantity),
+                    (line, added) -> {
+                        line.setQuantity(line.getQuantity() + added.getQuantity());
+                        line.setAmount(line.getPrice() * line.getQuantity());
+                        return line;
+                    });
+            cart.touch(holdTtl);
+            return cart.toDTO();
+        }
+    }
+
+    /**
+     * Removes a product from a cart and releases its hold.
+     *
+     * @param id The unique identifier of the cart.
+     * @param productId The unique identifier of the product to be removed.
+     * @return The updated cart as a {@link CartDTO}.
+     * @throws ResourceNotFoundException If the cart is not found or the product is not in the cart.
+     */
+    @Override
+    public CartDTO removeLine(UUID id, UUID productId) {
+        Cart cart = findOpenCart(id);
+        synchronized (cart) {
+            checkOpen(cart);
+            InvoiceDetailDTO line = cart.lines.remove(productId);
+            if (line == null) {
+                throw new ResourceNotFoundException("Product not found in cart");
+            }
+            unhold(productId, line.getQuantity());
+            cart.touch(holdTtl);
+            return cart.toDTO();
+        }
+    }
+
+    /**
+     * Turns a cart into an invoice in a single write, reusing the customer looked up when the cart was opened. The
+     * products are checked against the current catalog, so a product deactivated or repriced since it was scanned is
+     * not sold at its old price. The stock is then taken for real and the holds of the cart are released. If the stock
+     * can no longer be taken, the cart stays open so it can be corrected and checked out again.
+     *
+     * @param id The unique identifier of the cart.
+     * @return The created invoice as an {@link InvoiceDTO}.
+     * @throws ResourceNotFoundException If the cart is not found or has expired.
+     * @throws IllegalArgumentException If the cart is empty, a product is no longer active or the stock of a product is insufficient.
+     */
+    @Override
+    public InvoiceDTO checkout(UUID id) {
+        Cart cart = findOpenCart(id);
+        synchronized (cart) {
+            checkOpen(cart);
+            if (cart.lines.isEmpty()) {
+                throw new IllegalArgumentException("Cart is empty");
+            }
+
+            InvoiceDTO invoiceDTO = invoiceService.createInvoiceFromLines(cart.customer, new ArrayList<>(cart.lines.values()));
+            close(cart);
+            return invoiceDTO;
+        }
+    }
+
+    /**
+     * Abandons a cart and releases all its holds.
+     *
+     * @param id The unique identifier of the cart.
+     * @throws ResourceNotFoundException If the cart is not found or has expired.
+     */
+    @Override
+    public void deleteCart(UUID id) {
+        Cart cart = findOpenCart(id);
+        synchronized (cart) {
+            checkOpen(cart);
+            close(cart);
+        }
+    }
+
+    /**
+     * Abandons the carts whose hold time has passed and releases their holds. Carts are closed one at a time, so the
+     * sweep never holds more than one cart at once.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${pos.cart.sweep-interval-ms:10000}")
+    public void expireCarts() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Cart cart : carts.values()) {
+            if (cart.expiresAt > now) {
+                continue;
+            }
+            synchronized (cart) {
+                // The cart may have been touched or closed since it was read
+                if (!cart.closed && cart.expiresAt <= now) {
+                    close(cart);
+                    expired++;
+                }
+            }
+        }
+        if (expired > 0) {
+            logger.info("[Cart] Expired {} carts", expired);
+        }
+    }
+
+    private Cart findOpenCart(UUID id) {
+        Cart cart = carts.get(id);
+        if (cart == null) {
+            throw new ResourceNotFoundException("Cart not found");
+        }
+        return cart;
+    }
+
+    // Must be called while holding the cart
+    private void checkOpen(Cart cart) {
+        if (cart.closed || cart.expiresAt <= System.currentTimeMillis()) {
+            throw new ResourceNotFoundException("Cart not found");
+        }
+    }
+
+    // Must be called while holding the cart
+    private void close(Cart cart) {
+        cart.closed = true;
+        cart.lines.forEach((productId, line) -> unhold(productId, line.getQuantity()));
+        cart.lines.clear();
+        carts.remove(cart.id, cart);
+    }
+
+    // Reads the product and its available stock and adds to its held quantity in one step, so no other cart can hold
+    // the same stock between the check and the hold. A checkout takes the stock before it releases its holds, so it is
+    // at most counted twice for a moment, never missed
+    private Product hold(UUID productId, int quantity) {
+        Product[] held = new Product[1];
+        heldQuantities.compute(productId, (key, current) -> {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+            if (product.getStatus() != Status.Active) {
+                throw new IllegalArgumentException("Product is not active");
+            }
+            int available = stockService.findAvailable(List.of(product)).get(productId);
+            int alreadyHeld = current == null ? 0 : current;
+            if (available - alreadyHeld < quantity) {
+                throw new IllegalArgumentException("Insufficient product stock");
+            }
+            held[0] = product;
+            return alreadyHeld + quantity;
+        });
+        return held[0];
+    }
+
+    private void unhold(UUID productId, int quantity) {
+        heldQuantities.computeIfPresent(productId, (key, held) -> held - quantity > 0 ? held - quantity : null);
+    }
+
+    // An open cart, only accessed while holding its monitor
+    private static class Cart {
+        private final UUID id;
+        private final CustomerInvoiceDTO customer;
+        // Ordered by product ID, so the stock of a checkout is always taken in the same order
+        private final Map<UUID, InvoiceDetailDTO> lines = new TreeMap<>();
+        private volatile long expiresAt;
+        private boolean closed;
+
+        private Cart(UUID id, CustomerInvoiceDTO customer) {
+            this.id = id;
+            this.customer = customer;
+        }
+
+        private void touch(Duration holdTtl) {
+            expiresAt = System.currentTimeMillis() + holdTtl.toMillis();
+        }
+
+        private CartDTO toDTO() {
+            List<InvoiceDetailDTO> lineDTOs = new ArrayList<>();
+            double amount = 0.00;
+            for (InvoiceDetailDTO line : lines.values()) {
+                lineDTOs.add(new InvoiceDetailDTO(line.getProductId(), line.getProductName(), line.getQuantity(), line.getPrice(), line.getAmount()));
+                amount += line.getAmount();
+            }
+            return new CartDTO(id, amount, new Date(expiresAt), customer, lineDTOs);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.fpt_midterm_pos.config.datasource.ReplicaRoutingContext;
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.CatalogCacheStatsDTO;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.ProductSnapshotDTO;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.service.CatalogCacheService;
+
+/**
+ * Read-through cache of the product and customer fields needed to write an invoice, so the checkout path does not read
+ * the catalog rows again for every invoice. Only the name, price and status of a product are cached, never its stock,
+ * which is always checked by the {@link com.example.fpt_midterm_pos.service.StockService}.
+ * <p>
+ * A snapshot is dropped as soon as its row is written through JPA, and once more after the write commits. A snapshot
+ * read from the database is only kept when nothing was dropped from the same cache while it was being read, so a read
+ * racing with a write never brings the old row back. Snapshots also expire after a while, which bounds how long the
+ * writes of other nodes stay unseen, and the cache never holds more than the configured number of entries.
+ */
+@Service
+public class CatalogCacheServiceImpl implements CatalogCacheService {
+
+    private final ProductRepository productRepository;
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Snapshots<ProductSnapshotDTO> products = new Snapshots<>();
+    private final Snapshots<CustomerInvoiceDTO> customers = new Snapshots<>();
+
+    @Autowired
+    public CatalogCacheServiceImpl(ProductRepository productRepository, CustomerRepository customerRepository,
+                                   @Value("${pos.catalog-cache.enabled:true}") boolean enabled,
+                                   @Value("${pos.catalog-cache.ttl-seconds:300}") long ttlSeconds,
+                                   @Value("${pos.catalog-cache.max-entries:100000}") int maxEntries) {
+        this.productRepository = productRepository;
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the snapshots of the given products, reading the ones that are not cached with a single query.
+     *
+     * @param productIds The unique identifiers of the products.
+     * @return A map of product ID to {@link ProductSnapshotDTO}, without the products that do not exist. The snapshots are shared and must not be modified.
+     */
+    @Override
+    public Map<UUID, ProductSnapshotDTO> findProducts(Collection<UUID> productIds) {
+        long now = System.currentTimeMillis();
+        Map<UUID, ProductSnapshotDTO> found = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID productId : productIds) {
+            ProductSnapshotDTO snapshot = products.get(productId, now);
+            if (snapshot != null) {
+                found.put(productId, snapshot);
+            } else {
+                missing.add(productId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long generation = products.generation.get();
+            // Read on the primary, a lagging replica row would otherwise stay cached until the TTL
+            for (Product product : ReplicaRoutingContext.onPrimary(() -> productRepository.findAllById(missing))) {
+                ProductSnapshotDTO snapshot = new ProductSnapshotDTO(product.getId(), product.getName(), product.getPrice(), product.getStatus());
+                found.put(product.getId(), snapshot);
+                products.put(product.getId(), snapshot, generation, now);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the snapshot of the given customer, reading it when it is not cached.
+     *
+     * @param customerId The unique identifier of the customer.
+     * @return The {@link CustomerInvoiceDTO} of the customer. It is shared and must not be modified.
+     * @throws ResourceNotFoundException If the customer does not exist.
+     */
+    @Override
+    public CustomerInvoiceDTO findCustomer(UUID customerId) {
+        long now = System.currentTimeMillis();
+        CustomerInvoiceDTO snapshot = customers.get(customerId, now);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        long generation = customers.generation.get();
+        Customer customer = ReplicaRoutingContext.onPrimary(() -> customerRepository.findById(customerId)).orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
+        snapshot = new CustomerInvoiceDTO(customer.getId(), customer.getName());
+        customers.put(customerId, snapshot, generation, now);
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshot of a product right away and again once the surrounding transaction commits.
+     *
+     * @param productId The unique identifier of the written product.
+     */
+    @Override
+    public void evictProduct(UUID productId) {
+        products.evict(productId);
+    }
+
+    /**
+     * Drops the snapshot of a customer right away and again once the surrounding transaction commits.
+     *
+     * @param customerId The unique identifier of the written customer.
+     */
+    @Override
+    public void evictCustomer(UUID customerId) {
+        customers.evict(customerId);
+    }
+
+    /**
+     * Returns the number of cached snapshots and how often they were found in the cache, to help sizing it.
+     *
+     * @return The {@link CatalogCacheStatsDTO} of the product and customer snapshots.
+     */
+    @Override
+    public CatalogCacheStatsDTO getStats() {
+        long productHits = products.hits.sum();
+        long productMisses = products.misses.sum();
+        long customerHits = customers.hits.sum();
+        long customerMisses = customers.misses.sum();
+        return new CatalogCacheStatsDTO(enabled, maxEntries, ttlMillis / 1000,
+                products.entries.size(), productHits, productMisses, ratio(productHits, productMisses),
+                customers.entries.size(), customerHits, customerMisses, ratio(customerHits, customerMisses));
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    // Snapshots of one entity, with the generation bumped by every eviction
+    private final class Snapshots<V> {
+        private final Map<UUID, Entry<V>> entries = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private V get(UUID id, long now) {
+            if (!enabled) {
+                return null;
+            }
+            Entry<V> entry = entries.get(id);
+            if (entry != null && entry.expiresAt() > now) {
+                hits.increment();
+                return entry.value();
+            }
+            misses.increment();
+            return null;
+        }
+
+        // Keeps a snapshot read at the given generation, unless a snapshot was evicted since
+        private void put(UUID id, V value, long readGeneration, long now) {
+            if (!enabled || generation.get() != readGeneration) {
+                return;
+            }
+            if (entries.size() >= maxEntries) {
+                makeRoom(now);
+            }
+            entries.put(id, new Entry<>(value, now + ttlMillis));
+        }
+
+        private void evict(UUID id) {
+            entries.remove(id);
+            generation.incrementAndGet();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        entries.remove(id);
+                        generation.incrementAndGet();
+                    }
+                });
+            }
+        }
+
+        // Drops the expired snapshots first, then arbitrary ones until a tenth of the cache is free again
+        private void makeRoom(long now) {
+            entries.values().removeIf(entry -> entry.expiresAt() <= now);
+            Iterator<UUID> ids = entries.keySet().iterator();
+            while (entries.size() >= maxEntries - maxEntries / 10 && ids.hasNext()) {
+                ids.next();
+                ids.remove();
+            }
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.fpt_midterm_pos.dto.CatalogVersionStatsDTO;
+import com.example.fpt_midterm_pos.service.CatalogVersionService;
+
+/**
+ * Keeps a version number of the product catalog, so the tills polling the product listing can be answered with 304 (Not
+ * Modified) while nothing they display has changed, without reading the products or serializing them. The version is
+ * moved by every product write and by every invoice write, since invoices move the stock shown in the listing.
+ * <p>
+ * The ETag is made of a random number drawn on startup, the version and a hash of the normalized request. The random
+ * number keeps an ETag of a previous run, or of another node, from matching a version that only has the same number.
+ */
+@Service
+public class CatalogVersionServiceImpl implements CatalogVersionService {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /**
+     * Returns the current version of the product catalog.
+     *
+     * @return The version, starting from 0 on every startup.
+     */
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Moves the product catalog to a new version, once right away and once more after the surrounding transaction
+     * commits. A listing read between the two, which may still see the data from before the write, is then tagged with
+     * a version that is already outdated instead of the one that stays current.
+     */
+    @Override
+    public void bump() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds the strong ETag of a catalog response. The version has to be read before the response is, so a write that
+     * happens meanwhile leaves the response with an outdated ETag rather than a current one.
+     *
+     * @param request The normalized request, the same for every request answered with the same response.
+     * @return The quoted ETag.
+     */
+    @Override
+    public String etag(String request) {
+        return "\"" + epoch + "-" + version.get() + "-" + hash(request) + "\"";
+    }
+
+    /**
+     * Counts a catalog request.
+     *
+     * @param notModified Whether the request was answered with 304 (Not Modified).
+     */
+    @Override
+    public void recordRequest(boolean notModified) {
+        requests.increment();
+        if (notModified) {
+            this.notModified.increment();
+        }
+    }
+
+    /**
+     * Returns the current version and the number of catalog requests, of which the ones answered with 304.
+     *
+     * @return A {@link CatalogVersionStatsDTO} with the counts since startup.
+     */
+    @Override
+    public CatalogVersionStatsDTO getStats() {
+        long total = requests.sum();
+        long unchanged = notModified.sum();
+        return new CatalogVersionStatsDTO(version.get(), total, unchanged, total == 0 ? 0 : (double) unchanged / total);
+    }
+
+    // First 8 bytes of the SHA-256 of the request, enough to tell the requests of one till apart
+    private static String hash(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return HEX.formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.fpt_midterm_pos.service.CountCacheService;
+
+/**
+ * Caches the totals of the paged listings, so paging through the same filtered listing only counts its rows once. Every
+ * entity has a generation that is bumped when one of its rows is written, and a cached total is only used while the
+ * generation it was counted at is still the current one, so a write invalidates every total of its entity at once
+ * without scanning the cache. Totals also expire after a short time as a safety net for writes made outside of JPA.
+ */
+@Service
+public class CountCacheServiceImpl implements CountCacheService {
+
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    @Autowired
+    public CountCacheServiceImpl(@Value("${pos.count-cache.enabled:false}") boolean enabled,
+                                 @Value("${pos.count-cache.ttl-seconds:30}") long ttlSeconds,
+                                 @Value("${pos.count-cache.max-entries:10000}") int maxEntries) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cached total of the given criteria when it was counted since the last write of the entity and has not
+     * expired yet, otherwise counts it again. The criteria must be normalized by the caller, so equal filters always
+     * give the same key.
+     *
+     * @param entity The name of the counted entity.
+     * @param criteria The normalized filter criteria of the listing.
+     * @param counter Counts the rows matching the criteria.
+     * @return The number of rows matching the criteria.
+     */
+    @Override
+    public long getCount(String entity, String criteria, LongSupplier counter) {
+        if (!enabled) {
+            return counter.getAsLong();
+        }
+
+        String key = entity + "|" + criteria;
+        long generation = generation(entity).get();
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.generation() == generation && entry.expiresAt() > now) {
+            return entry.total();
+        }
+
+        long total = counter.getAsLong();
+        // A write committed while counting may or may not be part of the total, so it is only kept when there was none
+        if (generation(entity).get() == generation) {
+            if (entries.size() >= maxEntries) {
+                evict(now);
+            }
+            entries.put(key, new Entry(generation, total, now + ttlMillis));
+        }
+        return total;
+    }
+
+    /**
+     * Invalidates every cached total of the given entity. The generation is bumped right away and once more after the
+     * surrounding transaction commits, so a total counted by another request before the write became visible is not
+     * kept either.
+     *
+     * @param entity The name of the written entity.
+     */
+    @Override
+    public void invalidate(String entity) {
+        AtomicLong generation = generation(entity);
+        generation.incrementAndGet();
+        // Registered once per transaction and entity, however many of its rows the transaction writes
+        String resource = CountCacheServiceImpl.class.getName() + "." + entity;
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(resource)) {
+            TransactionSynchronizationManager.bindResource(resource, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(resource);
+                }
+            });
+        }
+    }
+
+    private AtomicLong generation(String entity) {
+        return generations.computeIfAbsent(entity, name -> new AtomicLong());
+    }
+
+    // Drops the expired and invalidated totals first, and everything when the cache is still full
+    private void evict(long now) {
+        entries.entrySet().removeIf(e -> e.getValue().expiresAt() <= now
+                || e.getValue().generation() != generation(e.getKey().substring(0, e.getKey().indexOf('|'))).get());
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+
+    private record Entry(long generation, long total, long expiresAt) {
+    }
+}
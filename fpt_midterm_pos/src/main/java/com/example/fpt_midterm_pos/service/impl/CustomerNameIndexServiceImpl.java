@@ -0,0 +1,227 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
+import com.example.fpt_midterm_pos.service.CustomerNameIndexService;
+
+/**
+ * In-memory trigram index of the customer names, so searching invoices by a part of the customer name does not scan
+ * every customer with {@code LIKE '%name%'}. Each customer gets an ordinal, and every three-letter fragment of a name
+ * maps to the sorted ordinals of the customers whose name contains it. A search only reads the shortest of these lists
+ * among the fragments of the searched text, then checks each candidate against its full name, since sharing every
+ * fragment does not mean the fragments are in the same order.
+ * <p>
+ * The index costs one int per fragment of each name plus the names themselves, and is kept in sync by the customer
+ * writes of this node only. Searches shorter than three letters, or matching too many customers to be sent as a list of
+ * IDs, are left to the database.
+ */
+@Service
+public class CustomerNameIndexServiceImpl implements CustomerNameIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerNameIndexServiceImpl.class);
+    private static final int GRAM = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final List<UUID> ids = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+    private final int maxMatches;
+    private volatile boolean loaded;
+
+    @Autowired
+    public CustomerNameIndexServiceImpl(CustomerRepository customerRepository,
+                                        @Value("${pos.customer-name-index.enabled:true}") boolean enabled,
+                                        @Value("${pos.customer-name-index.max-matches:1000}") int maxMatches) {
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+        this.maxMatches = maxMatches;
+    }
+
+    /**
+     * Finds the customers whose name contains the given fragment, ignoring the case like the database collation does.
+     *
+     * @param fragment The searched part of the customer name.
+     * @return The IDs of the matching customers, or null when the index is not loaded, the fragment is shorter than three
+     *         letters, or more customers than the configured maximum match it.
+     */
+    @Override
+    public Set<UUID> findIdsByNameContaining(String fragment) {
+        if (!enabled || !loaded || fragment == null) {
+            return null;
+        }
+        String text = normalize(fragment);
+        if (text.length() < GRAM) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings shortest = null;
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                Postings candidates = postings.get(text.substring(i, i + GRAM));
+                if (candidates == null) {
+                    return Set.of();
+                }
+                if (shortest == null || candidates.size < shortest.size) {
+                    shortest = candidates;
+                }
+            }
+
+            Set<UUID> matches = new HashSet<>();
+            for (int i = 0; i < shortest.size; i++) {
+                int ordinal = shortest.values[i];
+                if (names.get(ordinal).contains(text)) {
+                    if (matches.size() == maxMatches) {
+                        return null;
+                    }
+                    matches.add(ids.get(ordinal));
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a customer to the index, or moves an indexed customer from its previous name to the given one.
+     *
+     * @param id The ID of the customer.
+     * @param name The current name of the customer.
+     */
+    @Override
+    public void put(UUID id, String name) {
+        put(id, name, true);
+    }
+
+    /**
+     * Removes a customer from the index. Its ordinal is not reused.
+     *
+     * @param id The ID of the customer.
+     */
+    @Override
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal != null) {
+                index(ordinal, names.get(ordinal), false);
+                names.set(ordinal, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the names of all the customers once the application is started. Customers written while the names are read
+     * keep the name they were written with, which is newer than the one read.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<Object[]> customers = customerRepository.findAllIdAndName();
+        for (Object[] customer : customers) {
+            put((UUID) customer[0], (String) customer[1], false);
+        }
+        loaded = true;
+        logger.info("[CustomerNameIndex] Indexed {} customer names in {} ms", customers.size(), System.currentTimeMillis() - start);
+    }
+
+    private void put(UUID id, String name, boolean replace) {
+        String text = normalize(name);
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = ids.size();
+                ids.add(id);
+                names.add(text);
+                ordinals.put(id, ordinal);
+                index(ordinal, text, true);
+            } else if (replace && !text.equals(names.get(ordinal))) {
+                index(ordinal, names.get(ordinal), false);
+                names.set(ordinal, text);
+                index(ordinal, text, true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds or removes the ordinal to or from the list of every fragment of the name
+    private void index(int ordinal, String name, boolean add) {
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            String gram = name.substring(i, i + GRAM);
+            if (add) {
+                postings.computeIfAbsent(gram, key -> new Postings()).add(ordinal);
+            } else {
+                Postings candidates = postings.get(gram);
+                if (candidates != null && candidates.remove(ordinal) && candidates.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // Sorted ordinals of the customers whose name contains one fragment. Ordinals are handed out in increasing order,
+    // so adding a new customer appends to the end
+    private static class Postings {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int ordinal) {
+            int index = Arrays.binarySearch(values, 0, size, ordinal);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = ordinal;
+            size++;
+        }
+
+        private boolean remove(int ordinal) {
+            int index = Arrays.binarySearch(values, 0, size, ordinal);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.util.UUID;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import com.example.fpt_midterm_pos.data.model.Customer;
@@ -29,14 +30,25 @@ public class CustomerServiceImpl implements CustomerService {
     private CustomerRepository customerRepository;
 
     /**
-     * Retrieves a paginated list of all customers from the repository.
+     * Retrieves a paginated list of all customers from the repository. Only the listed columns are read, so neither the customers nor their invoices are loaded.
      *
      * @param pageable The pagination parameters, including the page number and size.
      * @return A Page object containing a list of {@link CustomerShowDTO} objects representing the customers on the specified page.
      */
     @Override
-    public Page<Customer> findAllCustomer(Pageable pageable) {
-        return customerRepository.findAll(pageable);
+    public Page<CustomerShowDTO> findAllCustomer(Pageable pageable) {
+        return customerRepository.findAllShowBy(pageable);
+    }
+
+    /**
+     * Retrieves a page of customers without counting all of them, reading one more customer than requested to know whether there is a next page.
+     *
+     * @param pageable The pagination parameters, including the page number and size.
+     * @return A Slice object containing the {@link CustomerShowDTO} objects of the customers on the specified page.
+     */
+    @Override
+    public Slice<CustomerShowDTO> findAllCustomerSlice(Pageable pageable) {
+        return customerRepository.findShowSliceBy(pageable);
     }
 
     /**
@@ -0,0 +1,73 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.service.StockService;
+
+@Service
+@ConditionalOnProperty(name = "pos.stock.engine", havingValue = "database", matchIfMissing = true)
+public class DatabaseStockServiceImpl implements StockService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    /**
+     * Takes the given quantity from the product row with a single guarded update, so the row is the only source of truth.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The quantity to be taken from the stock.
+     * @throws IllegalArgumentException If the remaining stock is not sufficient.
+     */
+    @Override
+    public void reserve(UUID productId, int quantity) {
+        if (productRepository.decrementQuantity(productId, quantity) == 0) {
+            throw new IllegalArgumentException("Insufficient product stock");
+        }
+    }
+
+    /**
+     * Gives the given quantity back to the product row.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The quantity to be given back to the stock.
+     */
+    @Override
+    public void release(UUID productId, int quantity) {
+        productRepository.incrementQuantity(productId, quantity);
+    }
+
+    /**
+     * Nothing to do, the product row already holds the new quantity once it has been saved.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The new quantity of the product.
+     */
+    @Override
+    public void reset(UUID productId, int quantity) {
+        // The product row is the stock, there is no other copy to refresh
+    }
+
+    /**
+     * Reads the quantities straight from the given products, since the product row is the stock.
+     *
+     * @param products The products whose quantities are requested.
+     * @return A map of product ID to its available quantity.
+     */
+    @Override
+    public Map<UUID, Integer> findAvailable(List<Product> products) {
+        Map<UUID, Integer> available = new HashMap<>();
+        for (Product product : products) {
+            available.put(product.getId(), product.getQuantity());
+        }
+        return available;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.fpt_midterm_pos.data.model.IdempotencyKey;
+import com.example.fpt_midterm_pos.data.repository.IdempotencyKeyRepository;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+import com.example.fpt_midterm_pos.service.IdempotencyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Makes invoice creation idempotent per client supplied key. Completed and in-flight keys are tracked in memory, so a
+ * retry on the same node is answered without touching the database, and a retry that arrives while the first request is
+ * still running waits for its result. Every key is also stored in the same transaction as its invoice, so retries that
+ * reach another node or arrive after a restart still get the original invoice.
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+
+    @Autowired
+    public IdempotencyServiceImpl(IdempotencyKeyRepository idempotencyKeyRepository, ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${pos.idempotency.ttl-minutes:1440}") long ttlMinutes) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    /**
+     * Runs the given invoice creation at most once for the given key. The first request with a key runs the action and
+     * stores its result together with the key, a retry returns that result, and a retry arriving while the first
+     * request is still running waits for it. Failed requests are not remembered, so they can be retried.
+     *
+     * @param key The idempotency key sent by the client.
+     * @param action The invoice creation to be run.
+     * @return The {@link InvoiceDTO} created by the first request with this key.
+     * @throws BadRequestException If the key is blank or too long.
+     */
+    @Override
+    public InvoiceDTO execute(String key, Supplier<InvoiceDTO> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must contain between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Entry mine = new Entry(new CompletableFuture<>(), System.currentTimeMillis() + ttl.toMillis());
+        Entry existing = entries.putIfAbsent(key, mine);
+        if (existing != null && !existing.isExpired()) {
+            return await(existing.result);
+        }
+        if (existing != null && !entries.replace(key, existing, mine)) {
+            // Another request replaced the expired entry first, follow it instead
+            return execute(key, action);
+        }
+
+        try {
+            InvoiceDTO invoiceDTO = findStored(key).orElseGet(() -> createAndStore(key, action));
+            mine.result.complete(invoiceDTO);
+            return invoiceDTO;
+        } catch (RuntimeException e) {
+            entries.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the expired keys from memory and deletes the stored ones with a single bulk statement.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${pos.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        entries.entrySet().removeIf(item -> item.getValue().isExpired() && item.getValue().result.isDone());
+        Integer deleted = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteAllExpired(new Date()));
+        logger.info("[Idempotency] Purged {} expired keys", deleted);
+    }
+
+    // Runs the action and stores the key in the same transaction, falling back to the stored result if another node won
+    private InvoiceDTO createAndStore(String key, Supplier<InvoiceDTO> action) {
+        try {
+            return transactionTemplate.execute(status -> {
+                InvoiceDTO invoiceDTO = action.get();
+                Date now = new Date();
+                idempotencyKeyRepository.saveAndFlush(new IdempotencyKey(key, invoiceDTO.getId(), serialize(invoiceDTO),
+                        now, new Date(now.getTime() + ttl.toMillis())));
+                return invoiceDTO;
+            });
+        } catch (DataIntegrityViolationException e) {
+            return findStored(key).orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<InvoiceDTO> findStored(String key) {
+        return idempotencyKeyRepository.findById(key)
+                .filter(stored -> stored.getExpiresAt().after(new Date()))
+                .map(stored -> deserialize(stored.getResponse()));
+    }
+
+    private InvoiceDTO await(CompletableFuture<InvoiceDTO> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String serialize(InvoiceDTO invoiceDTO) {
+        try {
+            return objectMapper.writeValueAsString(invoiceDTO);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store the invoice response: " + e.getMessage(), e);
+        }
+    }
+
+    private InvoiceDTO deserialize(String response) {
+        try {
+            return objectMapper.readValue(response, InvoiceDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the stored invoice response: " + e.getMessage(), e);
+        }
+    }
+
+    // Result of the request that owns a key, completed once that request finishes
+    private record Entry(CompletableFuture<InvoiceDTO> result, long expiresAt) {
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.service.StockService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Stock engine that keeps the authoritative available quantity of every product in memory. Each product is guarded by one
+ * of a fixed number of lock stripes, so a reservation only costs a short critical section instead of a row lock. The
+ * accumulated deltas are written behind to the product table in periodic batches, and the ledger is rebuilt from the
+ * product table on startup. Only meant for shops running a single node, since the ledger is not shared between nodes.
+ */
+@Service
+@ConditionalOnProperty(name = "pos.stock.engine", havingValue = "memory")
+public class InMemoryStockServiceImpl implements StockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStockServiceImpl.class);
+    private static final int STRIPES = 64;
+
+    private final Map<UUID, StockEntry> entries = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public InMemoryStockServiceImpl(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Rebuilds the ledger from the quantities currently stored in the product table.
+     */
+    @PostConstruct
+    public void rebuild() {
+        entries.clear();
+        for (Product product : productRepository.findAll()) {
+            entries.put(product.getId(), new StockEntry(product.getQuantity()));
+        }
+        logger.info("[Stock] Ledger rebuilt with {} products", entries.size());
+    }
+
+    /**
+     * Takes the given quantity from the in-memory stock of a product. If the surrounding transaction is rolled back,
+     * the quantity is given back automatically.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The quantity to be taken from the stock.
+     * @throws IllegalArgumentException If the remaining stock is not sufficient.
+     */
+    @Override
+    public void reserve(UUID productId, int quantity) {
+        synchronized (stripeFor(productId)) {
+            StockEntry entry = entryFor(productId);
+            if (entry.available < quantity) {
+                throw new IllegalArgumentException("Insufficient product stock");
+            }
+            entry.available -= quantity;
+            entry.pendingDelta -= quantity;
+        }
+        onRollback(() -> adjust(productId, quantity));
+    }
+
+    /**
+     * Gives the given quantity back to the in-memory stock of a product. If the surrounding transaction is rolled back,
+     * the quantity is taken again automatically.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The quantity to be given back to the stock.
+     */
+    @Override
+    public void release(UUID productId, int quantity) {
+        adjust(productId, quantity);
+        onRollback(() -> adjust(productId, -quantity));
+    }
+
+    /**
+     * Overrides the in-memory stock of a product after it has been edited directly. Deltas that were not flushed yet are
+     * superseded, and the next flush writes the new quantity as an absolute value. Inside a transaction the ledger is
+     * only changed once the edit is committed, so a rolled back edit leaves it untouched.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The new quantity of the product.
+     */
+    @Override
+    public void reset(UUID productId, int quantity) {
+        afterCommit(() -> {
+            synchronized (stripeFor(productId)) {
+                StockEntry entry = entries.computeIfAbsent(productId, id -> new StockEntry(quantity));
+                entry.available = quantity;
+                entry.pendingDelta = 0;
+                entry.absolute = quantity;
+            }
+        });
+    }
+
+    /**
+     * Reads the quantities from the ledger, which is ahead of the product table until the next flush. Products that are
+     * not in the ledger yet fall back to their stored quantity.
+     *
+     * @param products The products whose quantities are requested.
+     * @return A map of product ID to its available quantity.
+     */
+    @Override
+    public Map<UUID, Integer> findAvailable(List<Product> products) {
+        Map<UUID, Integer> available = new HashMap<>();
+        for (Product product : products) {
+            synchronized (stripeFor(product.getId())) {
+                StockEntry entry = entries.get(product.getId());
+                available.put(product.getId(), entry != null ? entry.available : product.getQuantity());
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Writes the accumulated deltas of every product back to the product table in a single transaction. Deltas that
+     * fail to be written are put back so they are retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${pos.stock.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        Map<UUID, StockEntry> pending = new ConcurrentHashMap<>();
+        for (Map.Entry<UUID, StockEntry> item : entries.entrySet()) {
+            synchronized (stripeFor(item.getKey())) {
+                StockEntry entry = item.getValue();
+                if (entry.pendingDelta != 0 || entry.absolute != null) {
+                    StockEntry snapshot = new StockEntry(0);
+                    snapshot.pendingDelta = entry.pendingDelta;
+                    snapshot.absolute = entry.absolute;
+                    pending.put(item.getKey(), snapshot);
+                    entry.pendingDelta = 0;
+                    entry.absolute = null;
+                }
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> pending.forEach((productId, snapshot) -> {
+                if (snapshot.absolute != null) {
+                    productRepository.setQuantity(productId, snapshot.absolute + snapshot.pendingDelta);
+                } else {
+                    productRepository.incrementQuantity(productId, snapshot.pendingDelta);
+                }
+            }));
+            logger.info("[Stock] Flushed {} products", pending.size());
+        } catch (RuntimeException e) {
+            logger.error("[Stock] Flush failed, retrying on the next run: " + e.getMessage());
+            pending.forEach(this::restore);
+        }
+    }
+
+    // Puts back a snapshot that could not be written, unless the product has been reset in the meantime
+    private void restore(UUID productId, StockEntry snapshot) {
+        synchronized (stripeFor(productId)) {
+            StockEntry entry = entries.get(productId);
+            if (entry == null || entry.absolute != null) {
+                return;
+            }
+            entry.pendingDelta += snapshot.pendingDelta;
+            entry.absolute = snapshot.absolute;
+        }
+    }
+
+    // Applies a delta to the available stock without any check
+    private void adjust(UUID productId, int delta) {
+        synchronized (stripeFor(productId)) {
+            StockEntry entry = entryFor(productId);
+            entry.available += delta;
+            entry.pendingDelta += delta;
+        }
+    }
+
+    // Must be called while holding the stripe of the product
+    private StockEntry entryFor(UUID productId) {
+        return entries.computeIfAbsent(productId, id -> productRepository.findById(id)
+                .map(product -> new StockEntry(product.getQuantity()))
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found")));
+    }
+
+    private Object stripeFor(UUID productId) {
+        return stripes[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    private void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    compensation.run();
+                }
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Mutable stock of a single product, only accessed while holding its stripe
+    private static class StockEntry {
+        private int available;
+        private int pendingDelta;
+        private Integer absolute;
+
+        private StockEntry(int available) {
+            this.available = available;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.fpt_midterm_pos.dto.InvoiceBatchResultDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceIngestionStatsDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceSaveDTO;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.exception.ServiceUnavailableException;
+import com.example.fpt_midterm_pos.service.InvoiceIngestionService;
+import com.example.fpt_midterm_pos.service.InvoiceService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Group commit for invoice creation. Submitted invoices wait on a bounded queue, and a few writer threads drain it in
+ * micro-batches that are each created in a single transaction, so concurrent checkouts share one commit instead of paying
+ * for one each. A writer never waits for a batch to fill up: it takes whatever is queued, so batches stay small when the
+ * load is light and grow with it. When the queue is full, submissions are refused right away instead of piling up.
+ */
+@Service
+@ConditionalOnProperty(name = "pos.invoice.ingestion.enabled", havingValue = "true")
+public class InvoiceIngestionServiceImpl implements InvoiceIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceIngestionServiceImpl.class);
+    private static final long POLL_MILLIS = 100;
+
+    private final InvoiceService invoiceService;
+    private final BlockingQueue<Submission> queue;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final int writers;
+    private final long retryAfterSeconds;
+    private final List<Thread> writerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder invoices = new LongAdder();
+    private final LongAdder rejectedSubmissions = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+    private final LongAccumulator maxCommitNanos = new LongAccumulator(Long::max, 0);
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+
+    @Autowired
+    public InvoiceIngestionServiceImpl(InvoiceService invoiceService,
+                                       @Value("${pos.invoice.ingestion.queue-capacity:1000}") int queueCapacity,
+                                       @Value("${pos.invoice.ingestion.max-batch-size:50}") int maxBatchSize,
+                                       @Value("${pos.invoice.ingestion.writers:2}") int writers,
+                                       @Value("${pos.invoice.ingestion.retry-after-seconds:1}") long retryAfterSeconds) {
+        if (queueCapacity < 1 || maxBatchSize < 1 || writers < 1) {
+            throw new IllegalArgumentException("The invoice ingestion queue capacity, batch size and writers must be at least 1");
+        }
+        this.invoiceService = invoiceService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.writers = writers;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Starts the writer threads.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(this::drain, "invoice-ingestion-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            writerThreads.add(thread);
+        }
+        logger.info("[Ingestion] Started {} writers, queue capacity {}, max batch size {}", writers, queueCapacity, maxBatchSize);
+    }
+
+    /**
+     * Stops the writer threads once they have finished their current batch. Invoices still queued at that point are
+     * refused, so their callers can retry them against another node.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : writerThreads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        writerThreads.clear();
+
+        List<Submission> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(submission -> submission.result.completeExceptionally(
+                new ServiceUnavailableException("Invoice ingestion is shutting down", retryAfterSeconds)));
+    }
+
+    /**
+     * Queues an invoice and waits until the batch it belongs to has been committed.
+     *
+     * @param invoiceSaveDTO The invoice to be created.
+     * @return The created invoice as a DTO.
+     * @throws ServiceUnavailableException If the queue is full or the ingestion is shutting down.
+     * @throws ResourceNotFoundException If the customer or one of the products is not found.
+     * @throws IllegalArgumentException If the invoice is rejected, for example because of insufficient stock.
+     */
+    @Override
+    public InvoiceDTO submit(InvoiceSaveDTO invoiceSaveDTO) {
+        Submission submission = new Submission(invoiceSaveDTO, new CompletableFuture<>());
+        if (!running || !queue.offer(submission)) {
+            rejectedSubmissions.increment();
+            throw new ServiceUnavailableException("Invoice ingestion queue is full", retryAfterSeconds);
+        }
+
+        try {
+            return submission.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the current queue depth together with the batch size and commit latency observed since startup.
+     *
+     * @return An {@link InvoiceIngestionStatsDTO} describing the ingestion.
+     */
+    @Override
+    public InvoiceIngestionStatsDTO getStats() {
+        long batchCount = batches.sum();
+        long invoiceCount = invoices.sum();
+        double averageBatchSize = batchCount == 0 ? 0 : (double) invoiceCount / batchCount;
+        double averageCommitMillis = batchCount == 0 ? 0 : commitNanos.sum() / 1_000_000.0 / batchCount;
+        return new InvoiceIngestionStatsDTO(queue.size(), queueCapacity, writers, maxBatchSize, batchCount, invoiceCount,
+                rejectedSubmissions.sum(), lastBatchSize.get(), averageBatchSize, averageCommitMillis,
+                maxCommitNanos.get() / 1_000_000.0);
+    }
+
+    // Loop of a writer thread: waits for the first invoice, then takes whatever else is already queued
+    private void drain() {
+        List<Submission> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Submission first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Creates the batch in one transaction and completes the future of every invoice with its own outcome
+    private void commit(List<Submission> batch) {
+        List<InvoiceSaveDTO> invoiceSaveDTOs = batch.stream().map(Submission::invoiceSaveDTO).toList();
+        long start = System.nanoTime();
+        List<InvoiceBatchResultDTO> results;
+        try {
+            results = invoiceService.createInvoiceGroup(invoiceSaveDTOs);
+        } catch (RuntimeException e) {
+            logger.error("[Ingestion] Batch of {} invoices failed: {}", batch.size(), e.getMessage());
+            batch.forEach(submission -> submission.result.completeExceptionally(e));
+            return;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        batches.increment();
+        invoices.add(batch.size());
+        commitNanos.add(elapsed);
+        maxCommitNanos.accumulate(elapsed);
+        lastBatchSize.set(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            InvoiceBatchResultDTO result = results.get(i);
+            CompletableFuture<InvoiceDTO> future = batch.get(i).result;
+            switch (result.getStatus()) {
+                case "created" -> future.complete(result.getInvoice());
+                case "not_found" -> future.completeExceptionally(new ResourceNotFoundException(result.getReason()));
+                default -> future.completeExceptionally(new IllegalArgumentException(result.getReason()));
+            }
+        }
+    }
+
+    // An invoice waiting on the queue, completed by the writer once its batch has been committed
+    private record Submission(InvoiceSaveDTO invoiceSaveDTO, CompletableFuture<InvoiceDTO> result) {
+    }
+}
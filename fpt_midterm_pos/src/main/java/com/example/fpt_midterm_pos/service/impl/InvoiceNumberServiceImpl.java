@@ -0,0 +1,171 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.fpt_midterm_pos.service.InvoiceNumberService;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Hands out sequential receipt numbers without a global lock. Each node takes a block of numbers from the sequence row
+ * with one short transaction of its own and then hands them out from memory with an atomic counter, so the sequence row
+ * is only locked once per block instead of once per invoice. Numbers are unique but may have gaps: a rolled back invoice
+ * does not give its number back, and the rest of a block is lost when the node stops.
+ * <p>
+ * The blocks are taken on a dedicated connection, outside the application pool. A number is asked for inside the
+ * transaction of the invoice, which already holds a pooled connection, so taking the block from the same pool could
+ * wait forever once every pooled connection belongs to an invoice waiting for that block.
+ */
+@Service
+public class InvoiceNumberServiceImpl implements InvoiceNumberService, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceNumberServiceImpl.class);
+
+    // Attempts to take a block when other nodes keep creating the same sequence at the same time
+    private static final int MAX_ALLOCATION_ATTEMPTS = 3;
+
+    // Table and columns of InvoiceNumberSequence, as named by the default naming strategy
+    private static final String UPDATE_SQL = "UPDATE invoice_number_sequence SET next_value = next_value + ? WHERE sequence_name = ?";
+    private static final String SELECT_SQL = "SELECT next_value FROM invoice_number_sequence WHERE sequence_name = ?";
+    private static final String INSERT_SQL = "INSERT INTO invoice_number_sequence (sequence_name, next_value) VALUES (?, ?)";
+
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String sequence;
+    private final int blockSize;
+
+    @Autowired
+    public InvoiceNumberServiceImpl(DataSourceProperties properties,
+                                    @Value("${pos.invoice.number.sequence:default}") String sequence,
+                                    @Value("${pos.invoice.number.block-size:100}") int blockSize) {
+        this(dedicatedDataSource(properties), sequence, blockSize);
+    }
+
+    public InvoiceNumberServiceImpl(DataSource dataSource, String sequence, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The invoice number block size must be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Bound to the dedicated data source, so the block is committed on its own whatever the caller is running in
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next receipt number of the sequence configured for this node, prefixed with the sequence name so the
+     * numbers of different stores or terminals never collide.
+     *
+     * @return The next receipt number, for example "default-00000042".
+     */
+    @Override
+    public String nextInvoiceNumber() {
+        return String.format("%s-%08d", sequence, next(sequence));
+    }
+
+    /**
+     * Returns the next number of the given sequence from the current block, taking a new block when it is used up.
+     *
+     * @param sequence The name of the sequence.
+     * @return The next number of the sequence, starting from 1.
+     * @throws IllegalStateException If no block could be taken after a few attempts.
+     */
+    @Override
+    public long next(String sequence) {
+        Sequence state = sequences.computeIfAbsent(sequence, name -> new Sequence());
+        while (true) {
+            Block block = state.current;
+            long number = block.next.getAndIncrement();
+            if (number < block.end) {
+                return number;
+            }
+
+            synchronized (state) {
+                // Only the first thread to find the block used up takes a new one, the others retry with it
+                if (state.current == block) {
+                    long start = allocate(sequence);
+                    state.current = new Block(start, start + blockSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the dedicated connection pool.
+     */
+    @Override
+    public void destroy() throws IOException {
+        if (dataSource instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    // Takes the next block of the sequence, creating the sequence on its first use
+    private long allocate(String sequence) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = transactionTemplate.execute(status -> {
+                    // The update locks the row until the commit, so two nodes never take the same block
+                    if (jdbcTemplate.update(UPDATE_SQL, blockSize, sequence) == 0) {
+                        jdbcTemplate.update(INSERT_SQL, sequence, 1L + blockSize);
+                        return 1L;
+                    }
+                    return jdbcTemplate.queryForObject(SELECT_SQL, Long.class, sequence) - blockSize;
+                });
+                logger.info("[InvoiceNumber] Allocated block {} to {} of sequence {}", start, start + blockSize - 1, sequence);
+                return start;
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the sequence at the same time, its row can be updated now
+                if (attempt == MAX_ALLOCATION_ATTEMPTS) {
+                    throw new IllegalStateException("Could not allocate a block of invoice numbers for sequence " + sequence, e);
+                }
+            }
+        }
+    }
+
+    // A single connection is enough, it is only used once per block
+    private static DataSource dedicatedDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("invoice-number");
+        dataSource.setMaximumPoolSize(1);
+        dataSource.setMinimumIdle(0);
+        return dataSource;
+    }
+
+    // Current block of a sequence, only replaced while holding its monitor
+    private static class Sequence {
+        private volatile Block current = new Block(0, 0);
+    }
+
+    // Numbers from next up to, but not including, end. Only the counter moves, so a number is always checked against
+    // the end of the block it was taken from
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -1,24 +1,36 @@
 package com.example.fpt_midterm_pos.service.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import com.example.fpt_midterm_pos.dto.*;
 import com.example.fpt_midterm_pos.utils.ExcelGenerator;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.fpt_midterm_pos.data.model.Customer;
 import com.example.fpt_midterm_pos.data.model.Invoice;
@@ -27,15 +39,32 @@ import com.example.fpt_midterm_pos.data.model.InvoiceDetailKey;
 import com.example.fpt_midterm_pos.data.model.Product;
 import com.example.fpt_midterm_pos.data.model.Status;
 import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
+import com.example.fpt_midterm_pos.data.repository.InvoiceCursor;
 import com.example.fpt_midterm_pos.data.repository.InvoiceDetailRepository;
+import com.example.fpt_midterm_pos.data.repository.InvoiceLineSummary;
 import com.example.fpt_midterm_pos.data.repository.InvoiceRepository;
+import com.example.fpt_midterm_pos.data.repository.InvoiceSummary;
 import com.example.fpt_midterm_pos.data.repository.ProductRepository;
 import com.example.fpt_midterm_pos.exception.BadRequestException;
 import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
 import com.example.fpt_midterm_pos.mapper.InvoiceMapper;
+import com.example.fpt_midterm_pos.service.CatalogCacheService;
+import com.example.fpt_midterm_pos.service.CountCacheService;
+import com.example.fpt_midterm_pos.service.CustomerNameIndexService;
+import com.example.fpt_midterm_pos.service.InvoiceNumberService;
 import com.example.fpt_midterm_pos.service.InvoiceService;
+import com.example.fpt_midterm_pos.service.StockService;
+import com.example.fpt_midterm_pos.utils.CursorUtils;
 import com.example.fpt_midterm_pos.utils.PDFGenerator;
 import com.example.fpt_midterm_pos.utils.DateUtils;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 @Service
 public class InvoiceServiceImpl implements InvoiceService {
@@ -58,54 +87,224 @@ public class InvoiceServiceImpl implements InvoiceService {
     @Autowired
     private PDFGenerator pdfGenerator;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private InvoiceNumberService invoiceNumberService;
+
+    @Autowired
+    private CountCacheService countCacheService;
+
+    @Autowired
+    private CustomerNameIndexService customerNameIndexService;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${pos.invoice.batch-chunk-size:500}")
+    private int batchChunkSize;
+
     /**
      * Find invoices based on the provided criteria. It takes an {@link InvoiceSearchCriteriaDTO} object and a {@link Pageable} object as input parameters. The {@link InvoiceSearchCriteriaDTO} object contains various criteria such as customer name, customer ID, start date, end date, month, sort by date, and sort by amount. The {@link Pageable} object is used to specify the pagination details.
      * The method first extracts the various criteria from the {@link InvoiceSearchCriteriaDTO} object. It then defines the sort rules based on the sort by date and sort by amount criteria. If the sort by date is not null, it adds a sorting rule based on the invoice date in ascending or descending order depending on the value of the sort by date. Similarly, it adds a sorting rule based on the invoice amount in ascending or descending order depending on the value of the sort by amount.
-     * The method then sets the pageable object with the provided page number, page size, and the defined sort rules. It then retrieves the invoices data from the repository based on the provided filters and sorts the data using the defined sort rules. Finally, it maps the retrieved invoices to their corresponding DTOs using the {@link InvoiceMapper} and returns the mapped invoices as a paginated list.
+     * The method then sets the pageable object with the provided page number, page size, and the defined sort rules. It then reads the listed columns of the invoices and their customers from the repository in one query, based on the provided filters and sorted using the defined sort rules. Finally, unless the lines were not asked for, it reads the lines of the whole page in a second query and returns the invoices as a paginated list of DTOs.
      *
      * @param criteria The {@link InvoiceSearchCriteriaDTO} object containing various criteria for filtering the invoices.
      * @param pageable The {@link Pageable} object containing the pagination details.
+     * @param withDetails Whether the lines of the invoices are read, when false the invoices are returned without them.
      * @return A paginated list of {@link InvoiceDTO} objects representing the invoices that match the provided criteria.
      */
     @Override
-    public Page<InvoiceDTO> findByCriteria(InvoiceSearchCriteriaDTO criteria, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public Page<InvoiceDTO> findByCriteria(InvoiceSearchCriteriaDTO criteria, Pageable pageable, boolean withDetails) {
         // Listing all the criterias
         String customerName = criteria.getCustomerName();
         UUID customerId = criteria.getCustomerId();
+        Collection<UUID> customerIds = customerIdsByName(customerName);
+        String nameFilter = customerIds == null ? customerName : null;
         Date startDate = criteria.getStartDate();
         Date endDate = criteria.getEndDate();
-        Integer month = criteria.getMonth();
+        Date[] monthPeriod = monthPeriod(criteria.getMonth());
         String sortByDate = criteria.getSortByDate();
         String sortByAmount = criteria.getSortByAmount();
 
         // Set the pageable
         Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
         
-        // Get the invoices data from the repo
-        Page<Invoice> invoices = invoiceRepository.findByFilters(customerName, customerId, startDate, endDate, month, sortByDate, sortByAmount, sortedPageable);
-        return invoices.map(invoiceMapper::toInvoiceDTO);
+        // Get the invoices data from the repo, the total is only counted when the page alone does not tell it
+        Slice<InvoiceSummary> invoices = invoiceRepository.findSummarySliceByFilters(nameFilter, customerId, customerIds, startDate, endDate, monthPeriod[0], monthPeriod[1], sortByDate, sortByAmount, sortedPageable);
+        String countKey = customerName + "|" + customerId + "|" + timeOf(startDate) + "|" + timeOf(endDate) + "|" + timeOf(monthPeriod[0]);
+        return PageableExecutionUtils.getPage(toInvoiceDTOs(invoices.getContent(), withDetails), sortedPageable,
+                () -> countCacheService.getCount("invoice", countKey,
+                        () -> invoiceRepository.countByFilters(nameFilter, customerId, customerIds, startDate, endDate, monthPeriod[0], monthPeriod[1])));
     }
 
     /**
-     * Creating a new invoice. It takes an {@link InvoiceSaveDTO} object as input, which contains the necessary details for creating a new invoice. The method first retrieves the customer associated with the provided customer ID from the customer repository. It then initializes a new invoice object with the retrieved customer and sets its initial amount to 0.00. The method then saves the newly created invoice to the database.
-     * Next, the method iterates through the list of invoice details provided in the {@link InvoiceSaveDTO} object. For each invoice detail, it checks whether the corresponding product exists in the product repository and whether its quantity is sufficient. If both conditions are met, it creates a new invoice detail object, associates it with the newly created invoice, and saves it to the database. The method also updates the product's quantity in the process.
-     * Finally, the method updates the total amount of the invoice based on the amounts of its associated invoice details and saves the updated invoice back to the database. The method then returns the newly created invoice as a DTO using the {@link InvoiceMapper} class.
+     * Find invoices based on the provided criteria without counting them. One more invoice than requested is read to know whether there is a next page, so the cost of a page does not grow with the number of matching invoices.
+     *
+     * @param criteria The {@link InvoiceSearchCriteriaDTO} object containing various criteria for filtering the invoices.
+     * @param pageable The {@link Pageable} object containing the pagination details.
+     * @param withDetails Whether the lines of the invoices are read, when false the invoices are returned without them.
+     * @return A {@link Slice} of {@link InvoiceDTO} objects representing the invoices that match the provided criteria.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<InvoiceDTO> findSliceByCriteria(InvoiceSearchCriteriaDTO criteria, Pageable pageable, boolean withDetails) {
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        Date[] monthPeriod = monthPeriod(criteria.getMonth());
+        Collection<UUID> customerIds = customerIdsByName(criteria.getCustomerName());
+        Slice<InvoiceSummary> invoices = invoiceRepository.findSummarySliceByFilters(customerIds == null ? criteria.getCustomerName() : null, criteria.getCustomerId(), customerIds,
+                criteria.getStartDate(), criteria.getEndDate(), monthPeriod[0], monthPeriod[1], criteria.getSortByDate(), criteria.getSortByAmount(), sortedPageable);
+        return new SliceImpl<>(toInvoiceDTOs(invoices.getContent(), withDetails), sortedPageable, invoices.hasNext());
+    }
+
+    // Builds the listed invoices from their summaries and the lines of the whole page, read in one query unless they were not asked for
+    private List<InvoiceDTO> toInvoiceDTOs(List<InvoiceSummary> invoices, boolean withDetails) {
+        if (invoices.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Without the lines the invoices are returned with null details
+        Map<UUID, List<InvoiceDetailDTO>> lines = new HashMap<>();
+        if (withDetails) {
+            for (InvoiceSummary invoice : invoices) {
+                lines.put(invoice.id(), new ArrayList<>());
+            }
+            for (InvoiceLineSummary line : invoiceDetailRepository.findLineSummariesByInvoiceIds(lines.keySet())) {
+                lines.get(line.invoiceId()).add(new InvoiceDetailDTO(line.productId(), line.productName(), line.quantity(), line.price(), line.amount()));
+            }
+        }
+
+        List<InvoiceDTO> invoiceDTOs = new ArrayList<>();
+        for (InvoiceSummary invoice : invoices) {
+            invoiceDTOs.add(new InvoiceDTO(invoice.id(), invoice.invoiceNumber(), invoice.amount(), invoice.date(),
+                    new CustomerInvoiceDTO(invoice.customerId(), invoice.customerName()), lines.get(invoice.id())));
+        }
+        return invoiceDTOs;
+    }
+
+    // Dates are compared by their instant in the count key, whatever their Date subclass
+    private static Long timeOf(Date date) {
+        return date == null ? null : date.getTime();
+    }
+
+    // The customers whose name contains the searched name, looked up in the name index instead of joining every customer,
+    // or null when the index cannot answer and the name is matched by the database
+    private Collection<UUID> customerIdsByName(String customerName) {
+        return customerName == null ? null : customerNameIndexService.findIdsByNameContaining(customerName);
+    }
+
+    // The month filter covers that month of the current year, as a date range instead of a MONTH() call on every row
+    private static Date[] monthPeriod(Integer month) {
+        if (month == null) {
+            return new Date[2];
+        }
+        if (month < 1 || month > 12) {
+            throw new BadRequestException("Month must be between 1 and 12");
+        }
+        return DateUtils.monthPeriod(null, month);
+    }
+
+    /**
+     * Find invoices based on the provided criteria, reading the page that comes right after the given cursor instead of skipping a number of rows. The invoices are ordered by date, then amount, then ID, or by amount first when only the amount sort is requested, so every invoice has a unique position.
+     * One more invoice than requested is read to know whether there is a next page, and the position of the last returned invoice is encoded into the cursor of the next page.
+     *
+     * @param criteria The {@link InvoiceSearchCriteriaDTO} object containing various criteria for filtering the invoices.
+     * @param after The cursor returned with the previous page, or null for the first page.
+     * @param size The number of invoices per page.
+     * @param withDetails Whether the lines of the invoices are read, when false the invoices are returned without them.
+     * @return A {@link CursorPageDTO} of {@link InvoiceDTO} objects, with the cursor of the next page.
+     * @throws BadRequestException If the cursor is malformed or was returned for another sort.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDTO<InvoiceDTO> findByCriteriaAfter(InvoiceSearchCriteriaDTO criteria, String after, int size, boolean withDetails) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+
+        boolean sortByAmount = criteria.getSortByDate() == null && criteria.getSortByAmount() != null;
+        String direction = sortByAmount ? criteria.getSortByAmount() : criteria.getSortByDate();
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        String sort = (sortByAmount ? "amount" : "date") + ":" + (descending ? "desc" : "asc");
+        InvoiceCursor cursor = after == null ? null : CursorUtils.decodeInvoiceCursor(sort, after);
+        Date[] monthPeriod = monthPeriod(criteria.getMonth());
+        Collection<UUID> customerIds = customerIdsByName(criteria.getCustomerName());
+
+        List<InvoiceSummary> invoices = invoiceRepository.findSummariesByFiltersAfter(customerIds == null ? criteria.getCustomerName() : null, criteria.getCustomerId(), customerIds,
+                criteria.getStartDate(), criteria.getEndDate(), monthPeriod[0], monthPeriod[1], sortByAmount, descending, cursor, size + 1);
+        return toCursorPage(invoices, sort, size, withDetails);
+    }
+
+    /**
+     * Find the invoices of a customer, newest first, reading the page that comes right after the given cursor. The page is read from the customer, date and amount index, so the history of a customer with many invoices costs the same to page through as a short one.
+     *
+     * @param customerId The unique identifier of the customer.
+     * @param after The cursor returned with the previous page, or null for the first page.
+     * @param size The number of invoices per page.
+     * @return A {@link CursorPageDTO} of {@link InvoiceDTO} objects, with the cursor of the next page.
+     * @throws ResourceNotFoundException If the customer is not found.
+     * @throws BadRequestException If the page size is below 1 or the cursor is malformed.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDTO<InvoiceDTO> findByCustomerAfter(UUID customerId, String after, int size) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        // Served from the cache, an unknown customer is answered with 404 instead of an empty history
+        catalogCacheService.findCustomer(customerId);
+
+        String sort = "date:desc";
+        InvoiceCursor cursor = after == null ? null : CursorUtils.decodeInvoiceCursor(sort, after);
+        List<InvoiceSummary> invoices = invoiceRepository.findSummariesByFiltersAfter(null, customerId, null, null, null, null, null,
+                false, true, cursor, size + 1);
+        return toCursorPage(invoices, sort, size, true);
+    }
+
+    // Cuts the extra invoice read past the page and encodes the position of the last returned one as the next cursor
+    private CursorPageDTO<InvoiceDTO> toCursorPage(List<InvoiceSummary> invoices, String sort, int size, boolean withDetails) {
+        boolean hasNext = invoices.size() > size;
+        List<InvoiceSummary> page = hasNext ? invoices.subList(0, size) : invoices;
+        String next = null;
+        if (hasNext) {
+            InvoiceSummary last = page.get(page.size() - 1);
+            next = CursorUtils.encodeInvoiceCursor(sort, new InvoiceCursor(last.date(), last.amount(), last.id()));
+        }
+        return new CursorPageDTO<>(toInvoiceDTOs(page, withDetails), size, hasNext, next);
+    }
+
+    /**
+     * Creating a new invoice. It takes an {@link InvoiceSaveDTO} object as input, which contains the necessary details for creating a new invoice. The method first retrieves the customer associated with the provided customer ID from the {@link CatalogCacheService}, which only reads the customer repository when the customer is not cached. It then initializes a new invoice object with the retrieved customer and sets its initial amount to 0.00. The method then saves the newly created invoice to the database.
+     * Next, the method looks up every requested product in the same cache, loading the missing ones in a single query, and checks whether each product exists, is active, and has enough quantity. Lines that refer to the same product are merged into one invoice detail. For each product, it creates a new invoice detail object and associates it with the newly created invoice.
+     * The stock is then taken through the configured {@link StockService}, which only succeeds when enough quantity is still left, so two concurrent checkouts can never oversell the same product. Finally, the method updates the total amount of the invoice and saves it back to the database. The method then returns the newly created invoice as a DTO using the {@link InvoiceMapper} class.
      * 
      * @param invoiceSaveDTO The {@link InvoiceSaveDTO} object containing the details for creating a new invoice.
      * @return The newly created invoice as a DTO.
+     * @throws IllegalArgumentException If a product is not active or its stock is insufficient.
      */
     @Override
     @Transactional
     public InvoiceDTO createInvoice(InvoiceSaveDTO invoiceSaveDTO) {
         // 1. Select the customer
-        // The main idea is by looking the invoice customer ID and browse on customer repo
-        Customer customer = customerRepository.findById(invoiceSaveDTO.getCustomerId())
-            .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
+        // The main idea is by looking the invoice customer ID and browse on the catalog cache, the invoice only refers to it
+        CustomerInvoiceDTO customer = catalogCacheService.findCustomer(invoiceSaveDTO.getCustomerId());
 
         // 2. Add new invoice
         // Initialize a new invoice with initial value
         Invoice invoice = new Invoice();
-        invoice.setCustomer(customer);
+        invoice.setInvoiceNumber(invoiceNumberService.nextInvoiceNumber());
+        invoice.setCustomer(customerRepository.getReferenceById(customer.getId()));
         invoice.setAmount(0.00);    // Set the initial amount to 0.00
         invoice.setDate(new Date());
         invoice.setCreatedAt(new Date());
@@ -114,54 +313,46 @@ public class InvoiceServiceImpl implements InvoiceService {
         Invoice savedInvoice = invoiceRepository.save(invoice);
 
         // 3. Add product to invoice
-        // This can be done through invoice details
+        // Load all the requested products at once instead of one query per line
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(invoiceSaveDTO.getInvoiceDetails());
+        Map<UUID, ProductSnapshotDTO> products = findProductsById(requestedQuantities.keySet());
+
         double totalAmount = 0.00;
         List<InvoiceDetail> invoiceDetails = new ArrayList<>();
 
-        for (InvoiceDetailSaveDTO detailDTO : invoiceSaveDTO.getInvoiceDetails()) {
-            // Check whether the product actually exists using the ID on the product repo
-            Product product = productRepository.findById(detailDTO.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-            
+        for (Map.Entry<UUID, Integer> requested : requestedQuantities.entrySet()) {
+            ProductSnapshotDTO product = products.get(requested.getKey());
+            int quantity = requested.getValue();
+
             // Re-validate the product status
             if (product.getStatus() != Status.Active) {
                 throw new IllegalArgumentException("Product is not active");
             }
-            
-            // And request quantity
-            if (product.getQuantity() < detailDTO.getQuantity()) {
-                throw new IllegalArgumentException("Insufficient product stock");
-            }
 
             // If valid, then create invoice detail
             // Start from the key
-            InvoiceDetailKey key = new InvoiceDetailKey(savedInvoice.getId(), detailDTO.getProductId());
+            InvoiceDetailKey key = new InvoiceDetailKey(savedInvoice.getId(), product.getId());
             
             // Create invoice detail
             InvoiceDetail invoiceDetail = new InvoiceDetail();
             invoiceDetail.setId(key);
             invoiceDetail.setInvoice(savedInvoice);
-
-            // Since the repo only returning active product, it already validated
-            invoiceDetail.setProduct(product);
+            invoiceDetail.setProduct(productRepository.getReferenceById(product.getId()));
             invoiceDetail.setProductName(product.getName());
-            invoiceDetail.setQuantity(detailDTO.getQuantity());
+            invoiceDetail.setQuantity(quantity);
             invoiceDetail.setPrice(product.getPrice());
-            invoiceDetail.setAmount(product.getPrice() * detailDTO.getQuantity());  // Amount = price * quantity
+            invoiceDetail.setAmount(product.getPrice() * quantity);  // Amount = price * quantity
             invoiceDetail.setCreatedAt(savedInvoice.getCreatedAt());
             invoiceDetail.setUpdatedAt(savedInvoice.getUpdatedAt());
             invoiceDetails.add(invoiceDetail);
 
-            // Update product quantity
-            product.setQuantity(product.getQuantity() - detailDTO.getQuantity());
-            if (product.getQuantity() < 0) {
-                throw new IllegalArgumentException("Insufficient product stock");
-            }
-            productRepository.save(product);
-
             totalAmount += invoiceDetail.getAmount();
         }
 
+        // 4. Update product quantity
+        // The stock engine is the authoritative check, it fails if the stock is not sufficient anymore
+        requestedQuantities.forEach(stockService::reserve);
+
         // Save all the invoice details
         invoiceDetailRepository.saveAll(invoiceDetails);
 
@@ -170,11 +361,133 @@ public class InvoiceServiceImpl implements InvoiceService {
         // Set list of products for the invoice
         savedInvoice.setInvoiceDetails(invoiceDetails);
 
-        return invoiceMapper.toInvoiceDTO(invoiceRepository.save(savedInvoice));
+        return toInvoiceDTO(invoiceRepository.save(savedInvoice), customer);
+    }
+
+    /**
+     * Creates every invoice of a JSON array read from the given stream. The array is parsed one invoice at a time and the invoices are persisted in chunks, each chunk in its own transaction, so the whole array never has to be held in memory.
+     * Every chunk loads its customers and products with one query each, and the invoices are inserted together with their details through JDBC batching. An invoice that cannot be created is rejected with a reason and its stock is given back, without affecting the other invoices of the chunk.
+     *
+     * @param inputStream The stream containing a JSON array of {@link InvoiceSaveDTO} objects.
+     * @return A list of {@link InvoiceBatchResultDTO} objects, one per invoice of the array, in the same order.
+     * @throws IOException If the stream cannot be read.
+     * @throws BadRequestException If the stream does not contain a JSON array.
+     */
+    @Override
+    public List<InvoiceBatchResultDTO> createInvoices(InputStream inputStream) throws IOException {
+        List<InvoiceBatchResultDTO> results = new ArrayList<>();
+        List<InvoiceSaveDTO> chunk = new ArrayList<>();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException("Expected an array of invoices");
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                // A malformed invoice is kept as null so it is rejected on its own
+                JsonNode node = objectMapper.readTree(parser);
+                try {
+                    chunk.add(objectMapper.treeToValue(node, InvoiceSaveDTO.class));
+                } catch (JsonProcessingException e) {
+                    chunk.add(null);
+                }
+
+                if (chunk.size() == batchChunkSize) {
+                    results.addAll(createInvoiceChunk(chunk, results.size(), false));
+                    chunk.clear();
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            results.addAll(createInvoiceChunk(chunk, results.size(), false));
+        }
+        return results;
+    }
+
+    /**
+     * Creates a group of invoices in a single transaction, so the whole group pays for a single commit. Each invoice is still created or rejected on its own, exactly like the invoices of a batch chunk.
+     *
+     * @param invoiceSaveDTOs The invoices to be created.
+     * @return A list of {@link InvoiceBatchResultDTO} objects in the same order, each created result carrying its {@link InvoiceDTO}.
+     */
+    @Override
+    public List<InvoiceBatchResultDTO> createInvoiceGroup(List<InvoiceSaveDTO> invoiceSaveDTOs) {
+        return createInvoiceChunk(invoiceSaveDTOs, 0, true);
+    }
+
+    /**
+     * Creates an invoice from lines whose products were already looked up, for example by a cart. The customer is not loaded again and the invoice only refers to the products by ID, but the products are checked against the current catalog: the lines may have been priced long before, so they are invoiced with the current name and price, and an inactive product is rejected.
+     * The stock of every line is taken through the configured {@link StockService}, and the invoice is inserted together with its details in a single write.
+     *
+     * @param customer The customer of the invoice.
+     * @param lines The lines of the invoice, only their products and quantities are used.
+     * @return The newly created invoice as a DTO.
+     * @throws ResourceNotFoundException If a product does not exist anymore.
+     * @throws IllegalArgumentException If a product is not active or its stock is insufficient.
+     */
+    @Override
+    @Transactional
+    public InvoiceDTO createInvoiceFromLines(CustomerInvoiceDTO customer, List<InvoiceDetailDTO> lines) {
+        Map<UUID, Integer> quantities = new TreeMap<>();
+        for (InvoiceDetailDTO line : lines) {
+            quantities.put(line.getProductId(), line.getQuantity());
+        }
+
+        // The products may have been deactivated or repriced since the lines were priced
+        Map<UUID, ProductSnapshotDTO> products = findProductsById(quantities.keySet());
+        for (ProductSnapshotDTO product : products.values()) {
+            if (product.getStatus() != Status.Active) {
+                throw new IllegalArgumentException("Product is not active");
+            }
+        }
+
+        // Take the stock in product ID order, like every other invoice
+        quantities.forEach(stockService::reserve);
+
+        Date now = new Date();
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber(invoiceNumberService.nextInvoiceNumber());
+        invoice.setCustomer(customerRepository.getReferenceById(customer.getId()));
+        invoice.setDate(now);
+        invoice.setCreatedAt(now);
+        invoice.setUpdatedAt(now);
+
+        double totalAmount = 0.00;
+        List<InvoiceDetail> invoiceDetails = new ArrayList<>();
+        List<InvoiceDetailDTO> invoicedLines = new ArrayList<>();
+        for (Map.Entry<UUID, Integer> line : quantities.entrySet()) {
+            ProductSnapshotDTO product = products.get(line.getKey());
+            int quantity = line.getValue();
+
+            // The invoice part of the key is filled in when the invoice is persisted
+            InvoiceDetail invoiceDetail = new InvoiceDetail();
+            invoiceDetail.setId(new InvoiceDetailKey(null, product.getId()));
+            invoiceDetail.setInvoice(invoice);
+            invoiceDetail.setProduct(productRepository.getReferenceById(product.getId()));
+            invoiceDetail.setProductName(product.getName());
+            invoiceDetail.setQuantity(quantity);
+            invoiceDetail.setPrice(product.getPrice());
+            invoiceDetail.setAmount(product.getPrice() * quantity);
+            invoiceDetail.setCreatedAt(now);
+            invoiceDetail.setUpdatedAt(now);
+            invoiceDetails.add(invoiceDetail);
+            invoicedLines.add(new InvoiceDetailDTO(product.getId(), product.getName(), quantity, product.getPrice(), invoiceDetail.getAmount()));
+
+            totalAmount += invoiceDetail.getAmount();
+        }
+
+        invoice.setAmount(totalAmount);
+        invoice.setInvoiceDetails(invoiceDetails);
+        Invoice savedInvoice = invoiceRepository.save(invoice);
+
+        // Built from the invoiced lines, so the customer and product references are never loaded
+        return new InvoiceDTO(savedInvoice.getId(), savedInvoice.getInvoiceNumber(), savedInvoice.getAmount(), savedInvoice.getDate(), customer, invoicedLines);
     }
 
     /**
      * Updates an existing invoice with the provided invoice details. The method first checks if the invoice actually exists and if it is within the 10-minute editable window. It then updates the invoice details, ensuring that the product exists and is active, and that the quantity requested does not exceed the available stock. The method also updates the product quantity and saves the updated invoice details. Finally, it updates the invoice amount and returns the updated invoice as a DTO.
+     * The invoice row is locked first, like in {@link #patchInvoiceLines(UUID, List)}, so concurrent edits of the same invoice are applied one after the other. Lines left out of the request are deleted and their stock is given back.
      *
      * @param id The unique identifier of the invoice to be updated.
      * @param invoiceSaveDTO The invoice details containing the details for updating the invoice.
@@ -184,17 +497,12 @@ public class InvoiceServiceImpl implements InvoiceService {
     @Override
     @Transactional
     public InvoiceDTO updateInvoice(UUID id, InvoiceSaveDTO invoiceSaveDTO) throws BadRequestException {
-        // Check if the invoice actually exists
-        Invoice existingInvoice = invoiceRepository.findById(id)
+        // Check if the invoice actually exists, locking it until the edit is committed
+        Invoice existingInvoice = invoiceRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Invoice not found"));
 
         // Check if the invoice is within the 10-minute editable window
-        Instant createdAt = existingInvoice.getCreatedAt().toInstant();
-        Instant now = Instant.now();
-        Duration duration = Duration.between(createdAt, now);
-        if (duration.toMinutes() > 10) {
-            throw new BadRequestException("Invoice can only be edited within 10 minutes of its creation");
-        }
+        checkEditWindow(existingInvoice);
 
         // Update the invoice details
         existingInvoice.setDate(new Date());
@@ -204,68 +512,187 @@ public class InvoiceServiceImpl implements InvoiceService {
         double totalAmount = 0.00;
         List<InvoiceDetail> updatedInvoiceDetails = new ArrayList<>();
 
-        for (InvoiceDetailSaveDTO detailDTO : invoiceSaveDTO.getInvoiceDetails()) {
-            // Check if the product exists
-            Product product = productRepository.findById(detailDTO.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        // Load all the requested products at once instead of one query per line
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(invoiceSaveDTO.getInvoiceDetails());
+        Map<UUID, ProductSnapshotDTO> products = findProductsById(requestedQuantities.keySet());
+        Map<UUID, Integer> quantityDifferences = new TreeMap<>();
+        Map<UUID, InvoiceDetail> existingDetails = new HashMap<>();
+        for (InvoiceDetail detail : existingInvoice.getInvoiceDetails()) {
+            existingDetails.put(detail.getId().getProductId(), detail);
+        }
+
+        for (Map.Entry<UUID, Integer> requested : requestedQuantities.entrySet()) {
+            ProductSnapshotDTO product = products.get(requested.getKey());
+            int quantity = requested.getValue();
             
             // Validate the product status
             if (product.getStatus() != Status.Active) {
                 throw new BadRequestException("Product is not active");
             }
 
-            // Modify based on the existing invoice
-            Optional<InvoiceDetail> existingDetailOpt = existingInvoice.getInvoiceDetails().stream()
-                .filter(detail -> detail.getProduct().getId().equals(detailDTO.getProductId()))
-                .findFirst();
-
-            // Calculate the diifs
-            int quantityDifference = detailDTO.getQuantity();
-            if (existingDetailOpt.isPresent()) {
-                InvoiceDetail existingDetail = existingDetailOpt.get();
-                quantityDifference -= existingDetail.getQuantity();
-                updatedInvoiceDetails.remove(existingDetail);
-            }
-
-            // Validate
-            if (product.getQuantity() < quantityDifference) {
-                throw new IllegalArgumentException("Insufficient product stock");
+            // Modify the existing line of the product, or start a new one from the key
+            InvoiceDetail invoiceDetail = existingDetails.remove(product.getId());
+            int quantityDifference = quantity;
+            if (invoiceDetail != null) {
+                quantityDifference -= invoiceDetail.getQuantity();
+            } else {
+                invoiceDetail = new InvoiceDetail();
+                invoiceDetail.setId(new InvoiceDetailKey(existingInvoice.getId(), product.getId()));
+                invoiceDetail.setInvoice(existingInvoice);
+                invoiceDetail.setProduct(productRepository.getReferenceById(product.getId()));
+                invoiceDetail.setCreatedAt(new Date());
             }
 
-            // Start from the key
-            InvoiceDetailKey key = new InvoiceDetailKey(existingInvoice.getId(), detailDTO.getProductId());
-            
-            // Managing the invoice detail
-            InvoiceDetail invoiceDetail = new InvoiceDetail();
-            invoiceDetail.setId(key);
-            invoiceDetail.setInvoice(existingInvoice);
-
-            invoiceDetail.setProduct(product);
             invoiceDetail.setProductName(product.getName());
-            invoiceDetail.setQuantity(detailDTO.getQuantity());
+            invoiceDetail.setQuantity(quantity);
             invoiceDetail.setPrice(product.getPrice());
-            invoiceDetail.setAmount(product.getPrice() * detailDTO.getQuantity());
-            invoiceDetail.setCreatedAt(existingInvoice.getCreatedAt());
+            invoiceDetail.setAmount(product.getPrice() * quantity);
             invoiceDetail.setUpdatedAt(new Date());
             updatedInvoiceDetails.add(invoiceDetail);
 
-            // Update product quantity
-            product.setQuantity(product.getQuantity() - quantityDifference);
-            if (product.getQuantity() < 0) {
-                throw new IllegalArgumentException("Insufficient product stock");
-            }
-            productRepository.save(product);
-
+            quantityDifferences.put(product.getId(), quantityDifference);
             totalAmount += invoiceDetail.getAmount();
         }
 
+        // The lines left out of the request are dropped, giving their whole quantity back
+        for (InvoiceDetail droppedDetail : existingDetails.values()) {
+            quantityDifferences.put(droppedDetail.getId().getProductId(), -droppedDetail.getQuantity());
+        }
+
+        // Update product quantity, taking more stock or giving it back
+        quantityDifferences.forEach((productId, quantityDifference) -> {
+            if (quantityDifference > 0) {
+                stockService.reserve(productId, quantityDifference);
+            } else if (quantityDifference < 0) {
+                stockService.release(productId, -quantityDifference);
+            }
+        });
+
         invoiceDetailRepository.saveAll(updatedInvoiceDetails);
+        invoiceDetailRepository.deleteAll(existingDetails.values());
 
         // Update the invoice amount
         existingInvoice.setAmount(totalAmount);
         existingInvoice.setInvoiceDetails(updatedInvoiceDetails);
 
-        return invoiceMapper.toInvoiceDTO(invoiceRepository.save(existingInvoice));
+        // Reading the ID of the customer does not load it
+        CustomerInvoiceDTO customer = catalogCacheService.findCustomer(existingInvoice.getCustomer().getId());
+        return toInvoiceDTO(invoiceRepository.save(existingInvoice), customer);
+    }
+
+    /**
+     * Applies add, remove and set-quantity operations to the lines of an existing invoice within its 10-minute editable window. The invoice row is locked first, so concurrent edits of the same invoice are applied one after the other instead of overwriting each other.
+     * Only the lines touched by the operations are loaded, and only the products of the lines that grow are looked up, so no more of an inactive product is sold. Lines whose quantity changes are updated, emptied lines are deleted and the other lines are left alone. The invoice amount is adjusted by the difference of the touched lines instead of being recomputed.
+     *
+     * @param id The unique identifier of the invoice to be edited.
+     * @param operations The operations to be applied in order. "add" adds a quantity to a line, creating it if needed, "set" replaces the quantity of a line, removing it when zero, and "remove" deletes a line.
+     * @return The edited invoice as a DTO.
+     * @throws BadRequestException If the invoice is not within the 10-minute editable window or a line of an inactive product grows.
+     * @throws IllegalArgumentException If an operation is malformed or the stock of a product is insufficient.
+     */
+    @Override
+    @Transactional
+    public InvoiceDTO patchInvoiceLines(UUID id, List<InvoiceLineOperationDTO> operations) {
+        Invoice invoice = invoiceRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Invoice not found"));
+        checkEditWindow(invoice);
+
+        // Load only the lines touched by the operations
+        Set<UUID> productIds = new HashSet<>();
+        for (InvoiceLineOperationDTO operation : operations) {
+            if (operation.getProductId() == null) {
+                throw new IllegalArgumentException("Invalid invoice line operation");
+            }
+            productIds.add(operation.getProductId());
+        }
+        Map<UUID, InvoiceDetail> existingDetails = new HashMap<>();
+        for (InvoiceDetail detail : invoiceDetailRepository.findAllById(productIds.stream().map(productId -> new InvoiceDetailKey(id, productId)).toList())) {
+            existingDetails.put(detail.getId().getProductId(), detail);
+        }
+
+        // Fold the operations into the new quantity of every touched line, ordered by product ID for the stock locks
+        Map<UUID, Integer> newQuantities = new TreeMap<>();
+        for (InvoiceLineOperationDTO operation : operations) {
+            UUID productId = operation.getProductId();
+            InvoiceDetail existing = existingDetails.get(productId);
+            int current = newQuantities.getOrDefault(productId, existing != null ? existing.getQuantity() : 0);
+            newQuantities.put(productId, applyLineOperation(operation, current));
+        }
+
+        // Look up the products of the new and the growing lines, which take more stock and must still be for sale.
+        // Shrinking and removed lines give stock back and are allowed for any product, existing lines keep their own
+        // name and price
+        List<UUID> growingProductIds = newQuantities.entrySet().stream()
+                .filter(line -> line.getValue() > (existingDetails.containsKey(line.getKey()) ? existingDetails.get(line.getKey()).getQuantity() : 0))
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<UUID, ProductSnapshotDTO> products = findProductsById(growingProductIds);
+        for (ProductSnapshotDTO product : products.values()) {
+            if (product.getStatus() != Status.Active) {
+                throw new BadRequestException("Product is not active");
+            }
+        }
+
+        Date now = new Date();
+        double amountDifference = 0.00;
+        List<InvoiceDetail> changedDetails = new ArrayList<>();
+        List<InvoiceDetail> removedDetails = new ArrayList<>();
+
+        for (Map.Entry<UUID, Integer> line : newQuantities.entrySet()) {
+            UUID productId = line.getKey();
+            int quantity = line.getValue();
+            InvoiceDetail detail = existingDetails.get(productId);
+            int quantityDifference = quantity - (detail != null ? detail.getQuantity() : 0);
+            if (quantityDifference == 0) {
+                continue;
+            }
+
+            // Take more stock or give it back
+            if (quantityDifference > 0) {
+                stockService.reserve(productId, quantityDifference);
+            } else {
+                stockService.release(productId, -quantityDifference);
+            }
+
+            if (detail == null) {
+                ProductSnapshotDTO product = products.get(productId);
+                detail = new InvoiceDetail();
+                detail.setId(new InvoiceDetailKey(invoice.getId(), productId));
+                detail.setInvoice(invoice);
+                detail.setProduct(productRepository.getReferenceById(productId));
+                detail.setProductName(product.getName());
+                detail.setQuantity(quantity);
+                detail.setPrice(product.getPrice());
+                detail.setAmount(product.getPrice() * quantity);
+                detail.setCreatedAt(now);
+                detail.setUpdatedAt(now);
+                changedDetails.add(detail);
+                amountDifference += detail.getAmount();
+            } else if (quantity == 0) {
+                removedDetails.add(detail);
+                amountDifference -= detail.getAmount();
+            } else {
+                double previousAmount = detail.getAmount();
+                detail.setQuantity(quantity);
+                detail.setAmount(detail.getPrice() * quantity);
+                detail.setUpdatedAt(now);
+                changedDetails.add(detail);
+                amountDifference += detail.getAmount() - previousAmount;
+            }
+        }
+
+        if (changedDetails.isEmpty() && removedDetails.isEmpty()) {
+            return invoiceMapper.toInvoiceDTO(invoice);
+        }
+
+        invoiceDetailRepository.saveAll(changedDetails);
+        invoiceDetailRepository.deleteAll(removedDetails);
+        // Write the lines before the invoice lines are read back for the response
+        invoiceDetailRepository.flush();
+
+        invoice.setAmount(invoice.getAmount() + amountDifference);
+        invoice.setUpdatedAt(now);
+        return invoiceMapper.toInvoiceDTO(invoiceRepository.save(invoice));
     }
 
     /**
@@ -276,26 +703,40 @@ public class InvoiceServiceImpl implements InvoiceService {
      * @throws IOException If an error occurs while generating the PDF.
      */
     @Override
+    @Transactional(readOnly = true)
     public byte[] exportInvoiceToPDF(UUID id) throws IOException {
-        // Check if the invoice actually exists
-        Invoice invoice = invoiceRepository.findById(id)
+        // Check if the invoice actually exists, reading the customer and the lines printed on the PDF with it
+        Invoice invoice = invoiceRepository.findWithCustomerAndDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Invoice not found"));
 
         return pdfGenerator.generateInvoicePDF(invoice);
     }
 
     /**
-     * Generates an Excel file containing the specified invoices based on the provided search criteria.
+     * Generates an Excel file containing the specified invoices based on the provided search criteria. The month and year are turned into a date range, a month without a year being the month of the current year.
      *
      * @param criteria The {@link InvoiceDetailsSearchCriteriaDTO} object containing various criteria for filtering the invoices.
      * @return A {@link Workbook} object containing the Excel file with the specified invoices.
+     * @throws BadRequestException If the month is not between 1 and 12.
      */
     @Override
+    @Transactional(readOnly = true)
     public Workbook exportInvoiceToExcelByFilter(InvoiceDetailsSearchCriteriaDTO criteria) {
         UUID customerId = criteria.getCustomerId();
         Integer month = criteria.getMonth();
         Integer year = criteria.getYear();
-        List<Invoice> invoices = invoiceRepository.findByFiltersForExcel(customerId, month, year);
+
+        // A month without a year is the month of the current year
+        Date[] period = new Date[2];
+        if (month != null) {
+            if (month < 1 || month > 12) {
+                throw new BadRequestException("Month must be between 1 and 12");
+            }
+            period = DateUtils.monthPeriod(year, month);
+        } else if (year != null) {
+            period = DateUtils.yearPeriod(year);
+        }
+        List<Invoice> invoices = invoiceRepository.findByFiltersForExcel(customerId, period[0], period[1]);
         return ExcelGenerator.generateInvoiceExcel(invoices);
     }
 
@@ -309,6 +750,7 @@ public class InvoiceServiceImpl implements InvoiceService {
      * @see RevenueShowDTO
      */
     @Override
+    @Transactional(readOnly = true)
     public RevenueShowDTO getInvoicesRevenue(Date date, String revenueBy) {
         Double revenueTotal;
         LocalDate localDate = DateUtils.formatDateToLocalDate(date);
@@ -319,18 +761,23 @@ public class InvoiceServiceImpl implements InvoiceService {
 
         RevenueShowDTO revenueShowDTO = new RevenueShowDTO(year, 0, 0, 0.0);
 
+        // Every period is read as a date range, so the sum comes from the date and amount index
+        Date[] period;
         switch (revenueBy.toLowerCase()) {
             case "year" -> {
-                revenueTotal = invoiceRepository.findTotalRevenueByYear(year);
+                period = DateUtils.yearPeriod(year);
+                revenueTotal = invoiceRepository.findTotalRevenueBetween(period[0], period[1]);
                 revenueShowDTO.setAmount(revenueTotal);
             }
             case "month" -> {
-                revenueTotal = invoiceRepository.findTotalRevenueByMonth(year, month);
+                period = DateUtils.monthPeriod(year, month);
+                revenueTotal = invoiceRepository.findTotalRevenueBetween(period[0], period[1]);
                 revenueShowDTO.setMonth(month);
                 revenueShowDTO.setAmount(revenueTotal);
             }
             case "day" -> {
-                revenueTotal = invoiceRepository.findTotalRevenueByDay(date);
+                period = DateUtils.dayPeriod(localDate);
+                revenueTotal = invoiceRepository.findTotalRevenueBetween(period[0], period[1]);
                 revenueShowDTO.setMonth(month);
                 revenueShowDTO.setDay(day);
                 revenueShowDTO.setAmount(revenueTotal);
@@ -342,4 +789,256 @@ public class InvoiceServiceImpl implements InvoiceService {
 
         return revenueShowDTO;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks that the invoice is still within its 10-minute editable window.
+     *
+     * @param invoice The invoice to be edited.
+     * @throws BadRequestException If the invoice was created more than 10 minutes ago.
+     */
+    private void checkEditWindow(Invoice invoice) {
+        Instant createdAt = invoice.getCreatedAt().toInstant();
+        Instant now = Instant.now();
+        Duration duration = Duration.between(createdAt, now);
+        if (duration.toMinutes() > 10) {
+            throw new BadRequestException("Invoice can only be edited within 10 minutes of its creation");
+        }
+    }
+
+    /**
+     * Applies a single line operation to the current quantity of a line.
+     *
+     * @param operation The operation to be applied.
+     * @param current The current quantity of the line, zero if the line does not exist.
+     * @return The new quantity of the line, zero if the line should not exist.
+     * @throws IllegalArgumentException If the operation is unknown or its quantity is invalid.
+     */
+    private int applyLineOperation(InvoiceLineOperationDTO operation, int current) {
+        String op = operation.getOp() == null ? "" : operation.getOp().toLowerCase();
+        Integer quantity = operation.getQuantity();
+        return switch (op) {
+            case "add" -> {
+                if (quantity == null || quantity <= 0) {
+                    throw new IllegalArgumentException("Invalid invoice line operation");
+                }
+                yield current + quantity;
+            }
+            case "set" -> {
+                if (quantity == null || quantity < 0) {
+                    throw new IllegalArgumentException("Invalid invoice line operation");
+                }
+                yield quantity;
+            }
+            case "remove" -> 0;
+            default -> throw new IllegalArgumentException("Invalid invoice line operation");
+        };
+    }
+
+    /**
+     * Merges the requested invoice lines by product, summing the quantities of lines that refer to the same product.
+     * The result is ordered by product ID so that concurrent invoices always lock the product rows in the same order.
+     *
+     * @param invoiceDetails The list of requested invoice lines.
+     * @return A map of product ID to the total requested quantity, ordered by product ID.
+     * @throws IllegalArgumentException If a line has no product or a non-positive quantity.
+     */
+    private Map<UUID, Integer> mergeQuantities(List<InvoiceDetailSaveDTO> invoiceDetails) {
+        Map<UUID, Integer> requestedQuantities = new TreeMap<>();
+        for (InvoiceDetailSaveDTO detailDTO : invoiceDetails) {
+            if (detailDTO.getProductId() == null || detailDTO.getQuantity() == null || detailDTO.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Invalid invoice detail");
+            }
+            requestedQuantities.merge(detailDTO.getProductId(), detailDTO.getQuantity(), Integer::sum);
+        }
+        return requestedQuantities;
+    }
+
+    /**
+     * Looks up all the given products in the catalog cache, the ones that are not cached being loaded in a single query.
+     *
+     * @param productIds The unique identifiers of the products to be looked up.
+     * @return A map of product ID to the {@link ProductSnapshotDTO} holding its name, price and status.
+     * @throws ResourceNotFoundException If any of the products does not exist.
+     */
+    private Map<UUID, ProductSnapshotDTO> findProductsById(Collection<UUID> productIds) {
+        Map<UUID, ProductSnapshotDTO> products = catalogCacheService.findProducts(productIds);
+
+        if (products.size() != productIds.size()) {
+            throw new ResourceNotFoundException("Product not found");
+        }
+        return products;
+    }
+
+    /**
+     * Builds the DTO of an invoice from the name and price stored on its lines and the given customer, so neither the customer nor the products of the invoice are loaded.
+     *
+     * @param invoice The invoice, with its lines.
+     * @param customer The customer of the invoice.
+     * @return The invoice as a DTO.
+     */
+    private InvoiceDTO toInvoiceDTO(Invoice invoice, CustomerInvoiceDTO customer) {
+        List<InvoiceDetailDTO> lines = new ArrayList<>();
+        for (InvoiceDetail detail : invoice.getInvoiceDetails()) {
+            lines.add(new InvoiceDetailDTO(detail.getId().getProductId(), detail.getProductName(), detail.getQuantity(), detail.getPrice(), detail.getAmount()));
+        }
+        return new InvoiceDTO(invoice.getId(), invoice.getInvoiceNumber(), invoice.getAmount(), invoice.getDate(), new CustomerInvoiceDTO(customer.getId(), customer.getName()), lines);
+    }
+
+    /**
+     * Creates a chunk of invoices in a single transaction. Invalid invoices are rejected one by one, while a failure of the whole transaction rejects every invoice of the chunk.
+     *
+     * @param chunk The invoices to be created, null for a malformed invoice.
+     * @param offset The index of the first invoice of the chunk within the whole batch.
+     * @param withInvoice Whether the created invoices should be included in the results as DTOs.
+     * @return A list of {@link InvoiceBatchResultDTO} objects, one per invoice of the chunk.
+     */
+    private List<InvoiceBatchResultDTO> createInvoiceChunk(List<InvoiceSaveDTO> chunk, int offset, boolean withInvoice) {
+        Invoice[] invoices = new Invoice[chunk.size()];
+        String[] reasons = new String[chunk.size()];
+        String[] statuses = new String[chunk.size()];
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                // Load the customers and the products of the whole chunk at once
+                Set<UUID> customerIds = new HashSet<>();
+                Set<UUID> productIds = new HashSet<>();
+                for (InvoiceSaveDTO invoiceSaveDTO : chunk) {
+                    if (invoiceSaveDTO == null) {
+                        continue;
+                    }
+                    if (invoiceSaveDTO.getCustomerId() != null) {
+                        customerIds.add(invoiceSaveDTO.getCustomerId());
+                    }
+                    if (invoiceSaveDTO.getInvoiceDetails() != null) {
+                        invoiceSaveDTO.getInvoiceDetails().stream()
+                            .filter(detailDTO -> detailDTO.getProductId() != null)
+                            .forEach(detailDTO -> productIds.add(detailDTO.getProductId()));
+                    }
+                }
+
+                Map<UUID, Customer> customers = new HashMap<>();
+                customerRepository.findAllById(customerIds).forEach(customer -> customers.put(customer.getId(), customer));
+                Map<UUID, Product> products = new HashMap<>();
+                productRepository.findAllById(productIds).forEach(product -> products.put(product.getId(), product));
+
+                List<Invoice> acceptedInvoices = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    try {
+                        invoices[i] = buildInvoice(chunk.get(i), customers, products);
+                        acceptedInvoices.add(invoices[i]);
+                    } catch (ResourceNotFoundException e) {
+                        statuses[i] = "not_found";
+                        reasons[i] = e.getMessage();
+                    } catch (RuntimeException e) {
+                        statuses[i] = "rejected";
+                        reasons[i] = e.getMessage();
+                    }
+                }
+
+                // The details are cascaded with their invoice, so both are inserted in JDBC batches
+                invoiceRepository.saveAll(acceptedInvoices);
+            });
+        } catch (RuntimeException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                if (invoices[i] != null) {
+                    invoices[i] = null;
+                    statuses[i] = "rejected";
+                    reasons[i] = "Chunk could not be saved: " + e.getMessage();
+                }
+            }
+        } finally {
+            // Keep the persistence context small when it is shared by the whole request
+            entityManager.clear();
+        }
+
+        List<InvoiceBatchResultDTO> results = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (invoices[i] != null) {
+                InvoiceDTO invoiceDTO = withInvoice ? invoiceMapper.toInvoiceDTO(invoices[i]) : null;
+                results.add(new InvoiceBatchResultDTO(offset + i, invoices[i].getId(), "created", null, invoiceDTO));
+            } else {
+                results.add(new InvoiceBatchResultDTO(offset + i, null, statuses[i], reasons[i], null));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Validates a single invoice of a batch against the preloaded customers and products, reserves its stock and builds the invoice together with its details, without saving it.
+     * If the stock of one of its products is not sufficient, the stock already reserved for the invoice is given back.
+     *
+     * @param invoiceSaveDTO The invoice to be built.
+     * @param customers The preloaded customers of the chunk, keyed by ID.
+     * @param products The preloaded products of the chunk, keyed by ID.
+     * @return The built {@link Invoice}, ready to be saved.
+     * @throws IllegalArgumentException If the invoice is malformed, a product is not active or its stock is insufficient.
+     * @throws ResourceNotFoundException If the customer or a product does not exist.
+     */
+    private Invoice buildInvoice(InvoiceSaveDTO invoiceSaveDTO, Map<UUID, Customer> customers, Map<UUID, Product> products) {
+        if (invoiceSaveDTO == null || invoiceSaveDTO.getInvoiceDetails() == null || invoiceSaveDTO.getInvoiceDetails().isEmpty()) {
+            throw new IllegalArgumentException("Malformed invoice");
+        }
+
+        Customer customer = customers.get(invoiceSaveDTO.getCustomerId());
+        if (customer == null) {
+            throw new ResourceNotFoundException("Customer not found");
+        }
+
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(invoiceSaveDTO.getInvoiceDetails());
+        for (UUID productId : requestedQuantities.keySet()) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ResourceNotFoundException("Product not found");
+            }
+            if (product.getStatus() != Status.Active) {
+                throw new IllegalArgumentException("Product is not active");
+            }
+        }
+
+        // Reserve the stock, giving back what was already taken if a product runs out
+        Map<UUID, Integer> reservedQuantities = new TreeMap<>();
+        try {
+            for (Map.Entry<UUID, Integer> requested : requestedQuantities.entrySet()) {
+                stockService.reserve(requested.getKey(), requested.getValue());
+                reservedQuantities.put(requested.getKey(), requested.getValue());
+            }
+        } catch (RuntimeException e) {
+            reservedQuantities.forEach(stockService::release);
+            throw e;
+        }
+
+        Date now = new Date();
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber(invoiceNumberService.nextInvoiceNumber());
+        invoice.setCustomer(customer);
+        invoice.setDate(now);
+        invoice.setCreatedAt(now);
+        invoice.setUpdatedAt(now);
+
+        double totalAmount = 0.00;
+        List<InvoiceDetail> invoiceDetails = new ArrayList<>();
+        for (Map.Entry<UUID, Integer> requested : requestedQuantities.entrySet()) {
+            Product product = products.get(requested.getKey());
+            int quantity = requested.getValue();
+
+            // The invoice part of the key is filled in when the invoice is persisted
+            InvoiceDetail invoiceDetail = new InvoiceDetail();
+            invoiceDetail.setId(new InvoiceDetailKey(null, product.getId()));
+            invoiceDetail.setInvoice(invoice);
+            invoiceDetail.setProduct(product);
+            invoiceDetail.setProductName(product.getName());
+            invoiceDetail.setQuantity(quantity);
+            invoiceDetail.setPrice(product.getPrice());
+            invoiceDetail.setAmount(product.getPrice() * quantity);
+            invoiceDetail.setCreatedAt(now);
+            invoiceDetail.setUpdatedAt(now);
+            invoiceDetails.add(invoiceDetail);
+
+            totalAmount += invoiceDetail.getAmount();
+        }
+
+        invoice.setAmount(totalAmount);
+        invoice.setInvoiceDetails(invoiceDetails);
+        return invoice;
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductCatalogVersion;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.ProductSearchCriteriaDTO;
+import com.example.fpt_midterm_pos.service.ProductCatalogService;
+
+/**
+ * Answers the product listing from memory instead of running the filtered query on the product table for every screen.
+ * The active products are kept in two arrays, one sorted by name and one sorted by price, so a listing sorted by either
+ * key is read in order without sorting, and a price range is cut out of the price array with two binary searches. Only
+ * the IDs are returned: the listed page is read by primary key, which keeps the stock and the other fields fresh.
+ * <p>
+ * Both arrays are held by an immutable snapshot that readers take without locking. Writes build the next snapshot by
+ * merging the saved products into the current one and then publish it. The writes of other nodes are not seen this
+ * way, so the product table is checked periodically and the catalog is loaded again once it has changed.
+ */
+@Service
+public class ProductCatalogServiceImpl implements ProductCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalogServiceImpl.class);
+    private static final Comparator<Item> BY_NAME = Comparator.comparing(Item::key).thenComparing(Item::id);
+    private static final Comparator<Item> BY_PRICE = Comparator.comparingDouble(Item::price).thenComparing(Item::id);
+
+    private final Map<UUID, Item> products = new HashMap<>();
+    // Products saved while the catalog is being loaded, or before its first load, the loaded rows of these may be older
+    // than the save. Null when no load is running
+    private Set<UUID> savedWhileLoading = new HashSet<>();
+    // Held for a whole load, so the startup load and a refresh never run at the same time
+    private final Object loading = new Object();
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private volatile Snapshot snapshot;
+    // Version of the product table the current snapshot was loaded from
+    private volatile ProductCatalogVersion loadedVersion;
+
+    @Autowired
+    public ProductCatalogServiceImpl(ProductRepository productRepository,
+                                     @Value("${pos.product-catalog.enabled:true}") boolean enabled) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Finds the active products matching the given criteria, counting all of them.
+     *
+     * @param criteria The search criteria containing the product name, minimum and maximum price, and sorting options.
+     * @param pageable The pagination information, including the page number and size.
+     * @return A page of product IDs in the requested order, or null when the catalog is not loaded.
+     */
+    @Override
+    public Page<UUID> findIds(ProductSearchCriteriaDTO criteria, Pageable pageable) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        Matches matches = match(current, criteria, pageable, true);
+        return new PageImpl<>(matches.ids(), pageable, matches.total());
+    }
+
+    /**
+     * Finds the active products matching the given criteria, stopping at the first product after the page.
+     *
+     * @param criteria The search criteria containing the product name, minimum and maximum price, and sorting options.
+     * @param pageable The pagination information, including the page number and size.
+     * @return A slice of product IDs in the requested order, or null when the catalog is not loaded.
+     */
+    @Override
+    public Slice<UUID> findSliceIds(ProductSearchCriteriaDTO criteria, Pageable pageable) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        Matches matches = match(current, criteria, pageable, false);
+        return new SliceImpl<>(matches.ids(), pageable, matches.hasNext());
+    }
+
+    /**
+     * Applies the given saved products to the catalog and publishes the next snapshot: active products are added or
+     * moved to their new name and price, the other ones are removed.
+     *
+     * @param saved The products as they were saved.
+     */
+    @Override
+    public synchronized void update(Collection<Product> saved) {
+        if (!enabled) {
+            return;
+        }
+        Set<UUID> changed = new HashSet<>();
+        List<Item> added = new ArrayList<>();
+        for (Product product : saved) {
+            changed.add(product.getId());
+            products.remove(product.getId());
+            if (product.getStatus() == Status.Active) {
+                Item item = new Item(product.getId(), normalize(product.getName()), product.getPrice());
+                products.put(product.getId(), item);
+                added.add(item);
+            }
+        }
+
+        if (savedWhileLoading != null) {
+            savedWhileLoading.addAll(changed);
+        }
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        snapshot = new Snapshot(merge(current.byName(), changed, added, BY_NAME), merge(current.byPrice(), changed, added, BY_PRICE));
+    }
+
+    /**
+     * Loads all the active products once the application is started and publishes the first snapshot. Until then the
+     * listing is read from the database. Products saved while they are read keep the version they were saved with.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (loading) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                if (savedWhileLoading == null) {
+                    savedWhileLoading = new HashSet<>();
+                }
+            }
+            // Read before the rows, a write committed meanwhile then shows up as a change at the next refresh
+            ProductCatalogVersion version = productRepository.findCatalogVersion();
+            List<Object[]> rows = productRepository.findIdNameAndPriceByStatus(Status.Active);
+            synchronized (this) {
+                Map<UUID, Item> loaded = new HashMap<>();
+                for (Object[] row : rows) {
+                    UUID id = (UUID) row[0];
+                    if (!savedWhileLoading.contains(id)) {
+                        loaded.put(id, new Item(id, normalize((String) row[1]), (Double) row[2]));
+                    }
+                }
+                for (UUID id : savedWhileLoading) {
+                    Item saved = products.get(id);
+                    if (saved != null) {
+                        loaded.put(id, saved);
+                    }
+                }
+                savedWhileLoading = null;
+                products.clear();
+                products.putAll(loaded);
+
+                Item[] byName = products.values().toArray(new Item[0]);
+                Item[] byPrice = byName.clone();
+                Arrays.sort(byName, BY_NAME);
+                Arrays.sort(byPrice, BY_PRICE);
+                snapshot = new Snapshot(byName, byPrice);
+                loadedVersion = version;
+            }
+            logger.info("[ProductCatalog] Loaded {} active products in {} ms", rows.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Loads the catalog again when the product table has changed since the last load, which brings in the products
+     * written by other nodes. The check itself is a single aggregate query.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${pos.product-catalog.refresh-interval-ms:60000}", initialDelayString = "${pos.product-catalog.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled || snapshot == null) {
+            return;
+        }
+        if (!Objects.equals(productRepository.findCatalogVersion(), loadedVersion)) {
+            load();
+        }
+    }
+
+    // Walks the products in the requested order, keeping the IDs of the requested page
+    private static Matches match(Snapshot current, ProductSearchCriteriaDTO criteria, Pageable pageable, boolean count) {
+        Sort.Direction nameOrder = direction(criteria.getSortByName());
+        Sort.Direction priceOrder = direction(criteria.getSortByPrice());
+        String name = criteria.getName() != null ? normalize(criteria.getName()) : null;
+        Double minPrice = criteria.getMinPrice();
+        Double maxPrice = criteria.getMaxPrice();
+
+        // Names are unique, so sorting by name leaves nothing for the price to order. The price array is walked when
+        // the price is the only sort key, or when only a price range narrows the products
+        boolean byPrice = nameOrder == null && (priceOrder != null || minPrice != null || maxPrice != null);
+        Item[] items = byPrice ? current.byPrice() : current.byName();
+        int from = 0;
+        int to = items.length;
+        if (byPrice) {
+            from = minPrice != null ? priceBound(items, minPrice, false) : 0;
+            to = maxPrice != null ? priceBound(items, maxPrice, true) : items.length;
+        }
+        boolean descending = (byPrice ? priceOrder : nameOrder) == Sort.Direction.DESC;
+
+        long offset = pageable.getOffset();
+        int size = pageable.getPageSize();
+        List<UUID> ids = new ArrayList<>(size);
+        long total = 0;
+        boolean hasNext = false;
+        for (int i = 0; i < to - from; i++) {
+            Item item = items[descending ? to - 1 - i : from + i];
+            if ((name != null && !item.key().contains(name))
+                    || (minPrice != null && item.price() < minPrice)
+                    || (maxPrice != null && item.price() > maxPrice)) {
+                continue;
+            }
+            if (total >= offset) {
+                if (ids.size() < size) {
+                    ids.add(item.id());
+                } else {
+                    hasNext = true;
+                    if (!count) {
+                        break;
+                    }
+                }
+            }
+            total++;
+        }
+        return new Matches(ids, total, hasNext);
+    }
+
+    // Same rules as the sort of the database listing: no sort when empty, descending only when asked
+    private static Sort.Direction direction(String sort) {
+        if (sort == null || sort.isEmpty()) {
+            return null;
+        }
+        return sort.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+    }
+
+    // Index of the first product priced above the given price, or at it when not past it
+    private static int priceBound(Item[] items, double price, boolean past) {
+        int low = 0;
+        int high = items.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            double current = items[middle].price();
+            if (current < price || (past && current == price)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Builds the next sorted array from the unchanged products of the previous one and the added products
+    private static Item[] merge(Item[] previous, Set<UUID> changed, List<Item> added, Comparator<Item> order) {
+        List<Item> sortedAdded = new ArrayList<>(added);
+        sortedAdded.sort(order);
+
+        Item[] next = new Item[previous.length + sortedAdded.size()];
+        int size = 0;
+        int a = 0;
+        int b = 0;
+        while (a < previous.length || b < sortedAdded.size()) {
+            if (a < previous.length && changed.contains(previous[a].id())) {
+                a++;
+            } else if (b == sortedAdded.size() || (a < previous.length && order.compare(previous[a], sortedAdded.get(b)) <= 0)) {
+                next[size++] = previous[a++];
+            } else {
+                next[size++] = sortedAdded.get(b++);
+            }
+        }
+        return size == next.length ? next : Arrays.copyOf(next, size);
+    }
+
+    // Matched like the LIKE of the database listing, which ignores the case
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // An active product, with its lower-cased name to search in and sort by
+    private record Item(UUID id, String key, double price) {
+    }
+
+    private record Snapshot(Item[] byName, Item[] byPrice) {
+    }
+
+    private record Matches(List<UUID> ids, long total, boolean hasNext) {
+    }
+}
@@ -1,16 +1,27 @@
 package com.example.fpt_midterm_pos.service.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.fpt_midterm_pos.data.model.Product;
@@ -24,7 +35,11 @@ import com.example.fpt_midterm_pos.exception.BadRequestException;
 import com.example.fpt_midterm_pos.exception.DuplicateStatusException;
 import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
 import com.example.fpt_midterm_pos.mapper.ProductMapper;
+import com.example.fpt_midterm_pos.service.CountCacheService;
+import com.example.fpt_midterm_pos.service.ProductCatalogService;
 import com.example.fpt_midterm_pos.service.ProductService;
+import com.example.fpt_midterm_pos.service.ProductSuggestService;
+import com.example.fpt_midterm_pos.service.StockService;
 import com.example.fpt_midterm_pos.utils.FileUtils;
 
 @Service
@@ -36,23 +51,108 @@ public class ProductServiceImpl implements ProductService {
     @Autowired
     private ProductMapper productMapper;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private CountCacheService countCacheService;
+
+    @Autowired
+    private ProductSuggestService productSuggestService;
+
+    @Autowired
+    private ProductCatalogService productCatalogService;
+
     /**
-     * Finds products based on the given criteria and sorts them according to the provided sort rules.
+     * Finds products based on the given criteria and sorts them according to the provided sort rules. The matching products are found in the {@link ProductCatalogService} once it is loaded, and only the products of the page are read from the database.
      *
      * @param criteria The search criteria containing the product name, minimum and maximum price, and sorting options.
      * @param pageable The pagination information, including the page number and size.
+     * @param withQuantity Whether the available quantity is looked up in the stock engine, when false the products are returned without it.
      * @return A page of {@link ProductShowDTO} objects representing the products that match the criteria and are sorted according to the provided rules.
      */
     @Override
-    public Page<ProductShowDTO> findByCriteria(ProductSearchCriteriaDTO criteria, Pageable pageable) {
-        // Listing all the criteria
-        String productName = criteria.getName();
+    @Transactional(readOnly = true)
+    public Page<ProductShowDTO> findByCriteria(ProductSearchCriteriaDTO criteria, Pageable pageable, boolean withQuantity) {
+        Pageable sortedPageable = sortedPageable(criteria, pageable);
+
+        // The catalog counts the products while finding them
+        Page<UUID> ids = productCatalogService.findIds(criteria, sortedPageable);
+        if (ids != null) {
+            return new PageImpl<>(findShowDTOsById(ids.getContent(), criteria, withQuantity), sortedPageable, ids.getTotalElements());
+        }
+
+        // Get the product data from the repo, the total is only counted when the page alone does not tell it
+        Slice<ProductShowDTO> products = findSliceByCriteria(criteria, sortedPageable, withQuantity);
+        String countKey = criteria.getName() + "|" + criteria.getMinPrice() + "|" + criteria.getMaxPrice();
+        return PageableExecutionUtils.getPage(products.getContent(), sortedPageable,
+                () -> countCacheService.getCount("product", countKey,
+                        () -> productRepository.countByFilters(Status.Active, criteria.getName(), criteria.getMinPrice(), criteria.getMaxPrice())));
+    }
+
+    /**
+     * Finds products based on the given criteria without counting them. One more product than requested is read to know whether there is a next page.
+     *
+     * @param criteria The search criteria containing the product name, minimum and maximum price, and sorting options.
+     * @param pageable The pagination information, including the page number and size.
+     * @param withQuantity Whether the available quantity is looked up in the stock engine, when false the products are returned without it.
+     * @return A slice of {@link ProductShowDTO} objects representing the products that match the criteria and are sorted according to the provided rules.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ProductShowDTO> findSliceByCriteria(ProductSearchCriteriaDTO criteria, Pageable pageable, boolean withQuantity) {
+        Pageable sortedPageable = sortedPageable(criteria, pageable);
+        Slice<UUID> ids = productCatalogService.findSliceIds(criteria, sortedPageable);
+        if (ids != null) {
+            return new SliceImpl<>(findShowDTOsById(ids.getContent(), criteria, withQuantity), sortedPageable, ids.hasNext());
+        }
+
+        Slice<Product> products = productRepository.findSliceByFilters(Status.Active, criteria.getName(), criteria.getMinPrice(), criteria.getMaxPrice(), sortedPageable);
+        return new SliceImpl<>(toShowDTOs(products.getContent(), withQuantity), sortedPageable, products.hasNext());
+    }
+
+    // Read the products of a page found in the catalog by their IDs, keeping the order of the catalog.
+    // The catalog may not have seen the last writes of another node yet, so the rows read are checked against the criteria again
+    private List<ProductShowDTO> findShowDTOsById(List<UUID> ids, ProductSearchCriteriaDTO criteria, boolean withQuantity) {
+        Map<UUID, Product> found = new HashMap<>();
+        productRepository.findAllById(ids).forEach(product -> found.put(product.getId(), product));
+
+        List<Product> products = new ArrayList<>();
+        for (UUID id : ids) {
+            // A product deleted, deactivated or moved out of the criteria since it was found is left out
+            Product product = found.get(id);
+            if (product != null && matches(product, criteria)) {
+                products.add(product);
+            }
+        }
+        return toShowDTOs(products, withQuantity);
+    }
+
+    // Same filters as the database listing, whose LIKE ignores the case
+    private static boolean matches(Product product, ProductSearchCriteriaDTO criteria) {
+        return product.getStatus() == Status.Active
+                && (criteria.getName() == null || product.getName().toLowerCase(Locale.ROOT).contains(criteria.getName().toLowerCase(Locale.ROOT)))
+                && (criteria.getMinPrice() == null || product.getPrice() >= criteria.getMinPrice())
+                && (criteria.getMaxPrice() == null || product.getPrice() <= criteria.getMaxPrice());
+    }
+
+    // Map the products with their available quantity, the stock engine may hold a fresher quantity than the product row.
+    // The stock engine is not asked when the quantity was not requested
+    private List<ProductShowDTO> toShowDTOs(List<Product> products, boolean withQuantity) {
+        Map<UUID, Integer> available = withQuantity ? stockService.findAvailable(products) : Map.of();
+        List<ProductShowDTO> productShowDTOs = new ArrayList<>();
+        for (Product product : products) {
+            ProductShowDTO productShowDTO = productMapper.toShowDTO(product);
+            productShowDTO.setQuantity(withQuantity ? available.get(product.getId()) : null);
+            productShowDTOs.add(productShowDTO);
+        }
+        return productShowDTOs;
+    }
+
+    // Define the sort rules of the name and price sort criteria
+    private Pageable sortedPageable(ProductSearchCriteriaDTO criteria, Pageable pageable) {
         String sortByName = criteria.getSortByName();
         String sortByPrice = criteria.getSortByPrice();
-        Double minPrice = criteria.getMinPrice();
-        Double maxPrice = criteria.getMaxPrice();
-
-        // Define the sort rules
         Sort sort = Sort.unsorted();
 
         if (sortByName != null && !sortByName.isEmpty()) {
@@ -75,34 +175,31 @@ public class ProductServiceImpl implements ProductService {
             sort = sort.and(priceSort);
         }
 
-        // Set the pageable
-        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
-
-        // Get the product data from the repo
-        Page<Product> products = productRepository.findByFilters(Status.Active, productName, minPrice, maxPrice, sortedPageable);
-        return products.map(productMapper::toShowDTO);
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
     }
 
-
     /**
-     * Creates a new product based on the provided {@link ProductSaveDTO} and saves it to the database.
+     * Creates a new product based on the provided {@link ProductSaveDTO} and saves it to the database. The product and its stock are saved in one transaction, and the in-memory indexes only see the product once it is committed.
      *
      * @param productSaveDTO The data transfer object containing the details of the new product to be created.
      * @return A {@link ProductDTO} representing the newly created product with its ID and other relevant details.
      * @throws BadRequestException If the provided CSV file is not in the correct format.
      */
     @Override
+    @Transactional
     public ProductDTO createProduct(ProductSaveDTO productSaveDTO) {
         Product product = productMapper.toProduct(productSaveDTO);
         product.setStatus(Status.Active); // Ensure the product is set to active when saving
         product.setCreatedAt(new Date());
         product.setUpdatedAt(new Date());
         Product savedProduct = productRepository.save(product);
+        stockService.reset(savedProduct.getId(), savedProduct.getQuantity());
+        updateIndexesAfterCommit(List.of(savedProduct));
         return productMapper.toProductDTO(savedProduct);
     }
 
     /**
-     * Updates an existing product in the database with the provided details.
+     * Updates an existing product in the database with the provided details. The product and its stock are updated in one transaction, and the in-memory indexes only see the change once it is committed.
      *
      * @param id The unique identifier of the product to be updated.
      * @param productSaveDTO The data transfer object containing the details of the updated product.
@@ -110,6 +207,7 @@ public class ProductServiceImpl implements ProductService {
      * @throws ResourceNotFoundException If the product with the given ID is not found in the database.
      */
     @Override
+    @Transactional
     public ProductDTO updateProduct(UUID id, ProductSaveDTO productSaveDTO) {
         Product product = productRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Product not found"));
 
@@ -118,6 +216,8 @@ public class ProductServiceImpl implements ProductService {
         product.setQuantity(productSaveDTO.getQuantity());
         product.setUpdatedAt(new Date());
         Product updateProduct = productRepository.save(product);
+        stockService.reset(updateProduct.getId(), updateProduct.getQuantity());
+        updateIndexesAfterCommit(List.of(updateProduct));
         return productMapper.toProductDTO(updateProduct);
     }
 
@@ -130,6 +230,7 @@ public class ProductServiceImpl implements ProductService {
      * @throws ResourceNotFoundException If the product with the given ID is not found in the database.
      */
     @Override
+    @Transactional
     public ProductDTO updateProductStatus(UUID id, Status status) {
         Product prodCheck = productRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Product not found"));
 
@@ -144,11 +245,12 @@ public class ProductServiceImpl implements ProductService {
         }
         prodCheck.setUpdatedAt(new Date());
         Product updatedProduct = productRepository.save(prodCheck);
+        updateIndexesAfterCommit(List.of(updatedProduct));
         return productMapper.toProductDTO(updatedProduct);
     }
 
     /**
-     * Saves a list of products from a CSV file to the database.
+     * Saves a list of products from a CSV file to the database. The products and their stock are saved in one transaction, so a failing row leaves none of them saved.
      *
      * @param file The MultipartFile object containing the CSV file with product data.
      * @return A list of {@link ProductDTO} objects representing the saved products with their IDs and other relevant details.
@@ -156,6 +258,7 @@ public class ProductServiceImpl implements ProductService {
      * @throws BadRequestException If an error occurs while reading the CSV file.
      */
     @Override
+    @Transactional
     public List<ProductDTO> saveProductsFromCSV(MultipartFile file) {
         if (!FileUtils.hasCSVFormat(file)) {
             throw new IllegalArgumentException("Invalid file format. Only CSV files are accepted.");
@@ -176,9 +279,27 @@ public class ProductServiceImpl implements ProductService {
             });
     
             List<Product> savedProducts = productRepository.saveAll(products);
+            savedProducts.forEach(product -> stockService.reset(product.getId(), product.getQuantity()));
+            updateIndexesAfterCommit(savedProducts);
             return productMapper.toProductDTOList(savedProducts);
         } catch (IOException e) {
             throw new BadRequestException("Error reading CSV file: " + e.getMessage());
         }
     }
+
+    // Update the suggestions and the catalog once the products are committed, so a rolled back write never reaches them
+    private void updateIndexesAfterCommit(List<Product> products) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productSuggestService.update(products);
+            productCatalogService.update(products);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                productSuggestService.update(products);
+                productCatalogService.update(products);
+            }
+        });
+    }
 }
@@ -0,0 +1,265 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductCatalogVersion;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.ProductSuggestionDTO;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+import com.example.fpt_midterm_pos.service.ProductSuggestService;
+
+/**
+ * Typeahead over the names of the active products, answered from memory instead of a {@code LIKE '%name%'} scan on
+ * every keystroke. Every word start of every name is one entry of a sorted array, so a prefix is found with a binary
+ * search and the matches are the entries that follow it. An entry only holds the product it belongs to and the offset
+ * of its word, which keeps about a million products within a few hundred megabytes.
+ * <p>
+ * Searches read the current array without locking. Writes build a new array by merging the changed products into the
+ * previous one and then publish it, once per saved batch of products. The writes of other nodes are not seen this way,
+ * so the product table is checked periodically and the suggestions are loaded again once it has changed.
+ */
+@Service
+public class ProductSuggestServiceImpl implements ProductSuggestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestServiceImpl.class);
+    private static final int MAX_LIMIT = 50;
+
+    private final Map<UUID, Suggestion> products = new HashMap<>();
+    // Products saved while the suggestions are being loaded, or before their first load, the loaded rows of these may
+    // be older than the save. Null when no load is running
+    private Set<UUID> savedWhileLoading = new HashSet<>();
+    // Held for a whole load, so the startup load and a refresh never run at the same time
+    private final Object loading = new Object();
+    private final ProductRepository productRepository;
+    private volatile Entry[] entries = new Entry[0];
+    private volatile boolean loaded;
+    // Version of the product table the current suggestions were loaded from
+    private volatile ProductCatalogVersion loadedVersion;
+
+    @Autowired
+    public ProductSuggestServiceImpl(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Suggests the active products having a word of their name starting with the given text, ignoring the case. Before
+     * the suggestions are loaded, the products are searched in the database instead.
+     *
+     * @param query The text typed so far.
+     * @param limit The maximum number of suggestions, at most 50.
+     * @return The suggested products, ordered by the matching part of their name.
+     * @throws BadRequestException If the limit is less than 1.
+     */
+    @Override
+    public List<ProductSuggestionDTO> suggest(String query, int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be at least 1");
+        }
+        limit = Math.min(limit, MAX_LIMIT);
+        String prefix = normalize(query == null ? "" : query.trim());
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        if (!loaded) {
+            return productRepository.findByStatusAndNameContaining(Status.Active, query.trim(), PageRequest.of(0, limit))
+                    .map(product -> new ProductSuggestionDTO(product.getId(), product.getName(), product.getPrice()))
+                    .getContent();
+        }
+
+        Entry[] current = entries;
+        // A product shows up once even when several of its words start with the prefix
+        Map<UUID, ProductSuggestionDTO> suggestions = new LinkedHashMap<>();
+        for (int i = lowerBound(current, prefix); i < current.length && suggestions.size() < limit; i++) {
+            Entry entry = current[i];
+            if (!entry.suggestion().key().startsWith(prefix, entry.offset())) {
+                break;
+            }
+            Suggestion suggestion = entry.suggestion();
+            suggestions.putIfAbsent(suggestion.id(), new ProductSuggestionDTO(suggestion.id(), suggestion.name(), suggestion.price()));
+        }
+        return new ArrayList<>(suggestions.values());
+    }
+
+    /**
+     * Applies the given saved products to the suggestions: active products are added or moved to their new name and
+     * price, the other ones are removed.
+     *
+     * @param saved The products as they were saved.
+     */
+    @Override
+    public synchronized void update(Collection<Product> saved) {
+        Set<UUID> changed = new HashSet<>();
+        List<Suggestion> added = new ArrayList<>();
+        for (Product product : saved) {
+            changed.add(product.getId());
+            products.remove(product.getId());
+            if (product.getStatus() == Status.Active) {
+                Suggestion suggestion = new Suggestion(product.getId(), product.getName(), product.getPrice(), normalize(product.getName()));
+                products.put(product.getId(), suggestion);
+                added.add(suggestion);
+            }
+        }
+        if (savedWhileLoading != null) {
+            savedWhileLoading.addAll(changed);
+        }
+        entries = merge(entries, changed, added);
+    }
+
+    /**
+     * Loads all the active products once the application is started. Products saved while they are read keep the
+     * version they were saved with, which is newer than the one read.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (loading) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                if (savedWhileLoading == null) {
+                    savedWhileLoading = new HashSet<>();
+                }
+            }
+            // Read before the rows, a write committed meanwhile then shows up as a change at the next refresh
+            ProductCatalogVersion version = productRepository.findCatalogVersion();
+            List<Object[]> rows = productRepository.findIdNameAndPriceByStatus(Status.Active);
+            synchronized (this) {
+                Map<UUID, Suggestion> loadedProducts = new HashMap<>();
+                for (Object[] row : rows) {
+                    UUID id = (UUID) row[0];
+                    if (!savedWhileLoading.contains(id)) {
+                        loadedProducts.put(id, new Suggestion(id, (String) row[1], (Double) row[2], normalize((String) row[1])));
+                    }
+                }
+                for (UUID id : savedWhileLoading) {
+                    Suggestion saved = products.get(id);
+                    if (saved != null) {
+                        loadedProducts.put(id, saved);
+                    }
+                }
+                savedWhileLoading = null;
+                products.clear();
+                products.putAll(loadedProducts);
+
+                // Built from scratch, the searches keep reading the previous array meanwhile
+                entries = merge(new Entry[0], Set.of(), new ArrayList<>(products.values()));
+                loadedVersion = version;
+                loaded = true;
+            }
+            logger.info("[ProductSuggest] Indexed {} active products in {} ms", rows.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Loads the suggestions again when the product table has changed since the last load, which brings in the products
+     * written by other nodes. The check itself is a single aggregate query.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${pos.product-suggest.refresh-interval-ms:60000}", initialDelayString = "${pos.product-suggest.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        if (!Objects.equals(productRepository.findCatalogVersion(), loadedVersion)) {
+            load();
+        }
+    }
+
+    // Builds the next array from the entries of the unchanged products of the previous one and the entries of the added
+    // ones, both sorted
+    private static Entry[] merge(Entry[] previous, Set<UUID> changed, List<Suggestion> added) {
+        List<Entry> addedEntries = new ArrayList<>();
+        for (Suggestion suggestion : added) {
+            String key = suggestion.key();
+            for (int i = 0; i < key.length(); i++) {
+                if (!Character.isWhitespace(key.charAt(i)) && (i == 0 || Character.isWhitespace(key.charAt(i - 1)))) {
+                    addedEntries.add(new Entry(suggestion, i));
+                }
+            }
+        }
+        addedEntries.sort(ProductSuggestServiceImpl::compare);
+
+        Entry[] next = new Entry[previous.length + addedEntries.size()];
+        int size = 0;
+        int a = 0;
+        int b = 0;
+        while (a < previous.length || b < addedEntries.size()) {
+            if (a < previous.length && changed.contains(previous[a].suggestion().id())) {
+                a++;
+            } else if (b == addedEntries.size() || (a < previous.length && compare(previous[a], addedEntries.get(b)) <= 0)) {
+                next[size++] = previous[a++];
+            } else {
+                next[size++] = addedEntries.get(b++);
+            }
+        }
+        return size == next.length ? next : Arrays.copyOf(next, size);
+    }
+
+    // Index of the first entry whose word is not before the prefix
+    private static int lowerBound(Entry[] entries, String prefix) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Entry entry = entries[middle];
+            if (compareSuffix(entry.suggestion().key(), entry.offset(), prefix, 0) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(Entry first, Entry second) {
+        int order = compareSuffix(first.suggestion().key(), first.offset(), second.suggestion().key(), second.offset());
+        return order != 0 ? order : first.suggestion().id().compareTo(second.suggestion().id());
+    }
+
+    // Compares the ends of two strings without copying them
+    private static int compareSuffix(String first, int firstOffset, String second, int secondOffset) {
+        int firstLength = first.length() - firstOffset;
+        int secondLength = second.length() - secondOffset;
+        for (int i = 0; i < Math.min(firstLength, secondLength); i++) {
+            char a = first.charAt(firstOffset + i);
+            char b = second.charAt(secondOffset + i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // An active product, with its lower-cased name to search in
+    private record Suggestion(UUID id, String name, Double price, String key) {
+    }
+
+    // One word start of a product name
+    private record Entry(Suggestion suggestion, int offset) {
+    }
+}
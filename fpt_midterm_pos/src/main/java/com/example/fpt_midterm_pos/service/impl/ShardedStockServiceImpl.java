@@ -0,0 +1,168 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.ProductStockShard;
+import com.example.fpt_midterm_pos.data.model.ProductStockShardKey;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.data.repository.ProductStockShardRepository;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.service.StockService;
+
+/**
+ * Stock engine that spreads the quantity of every product across a fixed number of shard rows, so concurrent sales of
+ * the same product usually lock different rows. The available quantity of a product is the sum of its shards. Products
+ * that do not have shards yet are split lazily from their stored quantity on their first sale.
+ */
+@Service
+@ConditionalOnProperty(name = "pos.stock.engine", havingValue = "sharded")
+public class ShardedStockServiceImpl implements StockService {
+
+    private final ProductRepository productRepository;
+    private final ProductStockShardRepository shardRepository;
+    private final int shards;
+
+    @Autowired
+    public ShardedStockServiceImpl(ProductRepository productRepository, ProductStockShardRepository shardRepository,
+                                   @Value("${pos.stock.shards:4}") int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("The number of stock shards must be at least 1");
+        }
+        this.productRepository = productRepository;
+        this.shardRepository = shardRepository;
+        this.shards = shards;
+    }
+
+    /**
+     * Takes the given quantity from a randomly chosen shard that still has enough stock. When no single shard can cover
+     * the quantity, every shard of the product is locked and the quantity is taken across several of them.
+     * <p>
+     * A failed attempt keeps its shard locked until the end of the transaction, so two sales that both fall back while
+     * the product is nearly sold out can deadlock. The database then rolls one of them back, and the client is asked
+     * to retry.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The quantity to be taken from the stock.
+     * @throws IllegalArgumentException If the total stock of the product is not sufficient.
+     */
+    @Override
+    @Transactional(noRollbackFor = IllegalArgumentException.class)
+    public void reserve(UUID productId, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            if (shardRepository.decrementQuantity(productId, (start + i) % shards, quantity) == 1) {
+                return;
+            }
+        }
+
+        // No single shard can cover the quantity, or the product has no shards yet
+        List<ProductStockShard> productShards = findOrCreateShards(productId);
+        int total = productShards.stream().mapToInt(ProductStockShard::getQuantity).sum();
+        if (total < quantity) {
+            throw new IllegalArgumentException("Insufficient product stock");
+        }
+
+        int remaining = quantity;
+        for (ProductStockShard shard : productShards) {
+            int taken = Math.min(remaining, shard.getQuantity());
+            shard.setQuantity(shard.getQuantity() - taken);
+            remaining -= taken;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        shardRepository.saveAll(productShards);
+    }
+
+    /**
+     * Gives the given quantity back to a randomly chosen shard.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The quantity to be given back to the stock.
+     */
+    @Override
+    @Transactional
+    public void release(UUID productId, int quantity) {
+        if (shardRepository.incrementQuantity(productId, ThreadLocalRandom.current().nextInt(shards), quantity) == 0) {
+            List<ProductStockShard> productShards = findOrCreateShards(productId);
+            ProductStockShard shard = productShards.get(0);
+            shard.setQuantity(shard.getQuantity() + quantity);
+            shardRepository.save(shard);
+        }
+    }
+
+    /**
+     * Replaces the shards of a product with a fresh, even split of the given quantity.
+     *
+     * @param productId The unique identifier of the product.
+     * @param quantity The new quantity of the product.
+     */
+    @Override
+    @Transactional
+    public void reset(UUID productId, int quantity) {
+        shardRepository.deleteAllByProductId(productId);
+        createShards(productId, quantity);
+    }
+
+    /**
+     * Sums the shards of the given products in a single query. Products without shards fall back to their stored quantity.
+     *
+     * @param products The products whose quantities are requested.
+     * @return A map of product ID to its available quantity.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<UUID, Integer> findAvailable(List<Product> products) {
+        Map<UUID, Integer> available = new HashMap<>();
+        if (products.isEmpty()) {
+            return available;
+        }
+
+        for (Product product : products) {
+            available.put(product.getId(), product.getQuantity());
+        }
+        for (Object[] row : shardRepository.sumQuantityByProductIds(available.keySet())) {
+            available.put((UUID) row[0], ((Number) row[1]).intValue());
+        }
+        return available;
+    }
+
+    // Locks all the shards of a product, splitting its stored quantity first if it has none yet
+    private List<ProductStockShard> findOrCreateShards(UUID productId) {
+        List<ProductStockShard> productShards = shardRepository.findAllForUpdate(productId);
+        if (!productShards.isEmpty()) {
+            return productShards;
+        }
+
+        // Lock the product row so concurrent first sales do not both create the shards
+        Product product = productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        productShards = shardRepository.findAllForUpdate(productId);
+        if (!productShards.isEmpty()) {
+            return productShards;
+        }
+        return createShards(productId, product.getQuantity());
+    }
+
+    // Splits the quantity evenly, the first shards take the remainder
+    private List<ProductStockShard> createShards(UUID productId, int quantity) {
+        List<ProductStockShard> productShards = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            int shardQuantity = quantity / shards + (shard < quantity % shards ? 1 : 0);
+            productShards.add(new ProductStockShard(new ProductStockShardKey(productId, shard), shardQuantity));
+        }
+        return shardRepository.saveAll(productShards);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.fpt_midterm_pos.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import com.example.fpt_midterm_pos.data.repository.InvoiceCursor;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+
+public class CursorUtils {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Encodes the position of an invoice into an opaque token. The sort the page was read with is part of the token, so a cursor cannot be replayed against another sort.
+     *
+     * @param sort The sort the page was read with, for example "date:asc".
+     * @param cursor The position of the last invoice of the page.
+     * @return The URL-safe token of the cursor.
+     */
+    public static String encodeInvoiceCursor(String sort, InvoiceCursor cursor) {
+        String raw = String.join(SEPARATOR, sort, String.valueOf(cursor.date().getTime()), String.valueOf(cursor.amount()), cursor.id().toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token created by {@link #encodeInvoiceCursor(String, InvoiceCursor)}.
+     *
+     * @param sort The sort the next page is read with, which must be the sort of the token.
+     * @param token The token sent by the client.
+     * @return The decoded {@link InvoiceCursor}.
+     * @throws BadRequestException If the token is malformed or was created for another sort.
+     */
+    public static InvoiceCursor decodeInvoiceCursor(String sort, String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\" + SEPARATOR);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (parts.length != 4) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        if (!parts[0].equals(sort)) {
+            throw new BadRequestException("Cursor does not match the requested sort");
+        }
+
+        try {
+            return new InvoiceCursor(new Date(Long.parseLong(parts[1])), Double.valueOf(parts[2]), UUID.fromString(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
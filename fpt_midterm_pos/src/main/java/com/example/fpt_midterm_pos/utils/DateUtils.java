@@ -46,4 +46,49 @@ public class DateUtils {
     public static LocalDate formatDateToLocalDate(Date date) {
         return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
     }
+
+    /**
+     * Converts the given LocalDate object to the Date at the start of that day in the system default time zone.
+     *
+     * @param date the LocalDate object to be converted
+     * @return the Date object at midnight of the given day
+     */
+    public static Date toStartOfDay(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Returns the period covering the given month of the given year, or of the current year when no year is given, as a
+     * pair of dates going from the inclusive start until the exclusive end. Unlike comparing MONTH() of a column, a range
+     * lets the database read the period from an index on that column.
+     *
+     * @param year the year of the month, or null for the current year
+     * @param month the month, from 1 to 12
+     * @return the start and the end of the month
+     */
+    public static Date[] monthPeriod(Integer year, int month) {
+        LocalDate start = LocalDate.of(year != null ? year : LocalDate.now().getYear(), month, 1);
+        return new Date[] { toStartOfDay(start), toStartOfDay(start.plusMonths(1)) };
+    }
+
+    /**
+     * Returns the period covering the given year, as a pair of dates going from the inclusive start until the exclusive end.
+     *
+     * @param year the year
+     * @return the start and the end of the year
+     */
+    public static Date[] yearPeriod(int year) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return new Date[] { toStartOfDay(start), toStartOfDay(start.plusYears(1)) };
+    }
+
+    /**
+     * Returns the period covering the day of the given date, as a pair of dates going from the inclusive start until the exclusive end.
+     *
+     * @param date the day
+     * @return the start and the end of the day
+     */
+    public static Date[] dayPeriod(LocalDate date) {
+        return new Date[] { toStartOfDay(date), toStartOfDay(date.plusDays(1)) };
+    }
 }
\ No newline at end of file
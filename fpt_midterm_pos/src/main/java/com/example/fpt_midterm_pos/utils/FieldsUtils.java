@@ -0,0 +1,77 @@
+package com.example.fpt_midterm_pos.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Slice;
+
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+
+public class FieldsUtils {
+
+    /**
+     * Parses the comma-separated field names sent with the fields parameter of a listing, before anything is read.
+     *
+     * @param fields The parameter as sent, for example "id,date,amount,customer".
+     * @param accessors The fields the listing can return, keyed by name.
+     * @return The requested names in the requested order, or null when the parameter is missing or blank, meaning every field.
+     * @throws BadRequestException If a name is not one of the fields of the listing.
+     */
+    public static <T> Set<String> parseFields(String fields, Map<String, Function<T, Object>> accessors) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!accessors.containsKey(name)) {
+                throw new BadRequestException("Unknown field: " + name + ", expected some of " + String.join(", ", accessors.keySet()));
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /**
+     * Keeps only the selected fields of every item of a page, keeping the page or slice around them.
+     *
+     * @param items The page or slice of full items.
+     * @param fields The selected field names, as returned by {@link #parseFields(String, Map)}.
+     * @param accessors The fields of the listing, keyed by name.
+     * @return The page or slice of items reduced to a map of their selected fields.
+     */
+    public static <T> Slice<Map<String, Object>> select(Slice<T> items, Set<String> fields, Map<String, Function<T, Object>> accessors) {
+        return items.map(item -> selectItem(item, fields, accessors));
+    }
+
+    /**
+     * Keeps only the selected fields of every item of a list.
+     *
+     * @param items The full items.
+     * @param fields The selected field names, as returned by {@link #parseFields(String, Map)}.
+     * @param accessors The fields of the listing, keyed by name.
+     * @return The items reduced to a map of their selected fields.
+     */
+    public static <T> List<Map<String, Object>> select(List<T> items, Set<String> fields, Map<String, Function<T, Object>> accessors) {
+        List<Map<String, Object>> selected = new ArrayList<>(items.size());
+        for (T item : items) {
+            selected.add(selectItem(item, fields, accessors));
+        }
+        return selected;
+    }
+
+    // Copies the selected fields of one item, null values included, in the requested order
+    private static <T> Map<String, Object> selectItem(T item, Set<String> fields, Map<String, Function<T, Object>> accessors) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String field : fields) {
+            selected.put(field, accessors.get(field).apply(item));
+        }
+        return selected;
+    }
+}
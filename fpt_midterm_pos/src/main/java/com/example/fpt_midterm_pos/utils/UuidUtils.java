@@ -0,0 +1,54 @@
+package com.example.fpt_midterm_pos.utils;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+public class UuidUtils {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int SEQUENCE_BITS = 12;
+    private static final int SEQUENCE_MAX = (1 << SEQUENCE_BITS) - 1;
+
+    private static long lastTimestamp = -1L;
+    private static int sequence;
+
+    /**
+     * Generates a time-ordered UUID following the version 7 layout: 48 bits of Unix milliseconds, the version, a 12-bit sequence and 62 random bits.
+     * UUIDs generated by the same JVM are strictly increasing, even within the same millisecond, so they are appended at the end of a clustered index instead of being scattered across it.
+     *
+     * @return A new time-ordered UUID.
+     */
+    public static synchronized UUID timeOrderedUuid() {
+        long timestamp = System.currentTimeMillis();
+
+        if (timestamp > lastTimestamp) {
+            // Start each millisecond at a random point of the lower half, leaving room for the sequence to grow
+            lastTimestamp = timestamp;
+            sequence = RANDOM.nextInt(1 << (SEQUENCE_BITS - 1));
+        } else if (sequence < SEQUENCE_MAX) {
+            sequence++;
+        } else {
+            // The sequence is exhausted or the clock went backwards, borrow the next millisecond
+            lastTimestamp++;
+            sequence = 0;
+        }
+
+        long mostSigBits = (lastTimestamp << 16) | (0x7L << 12) | sequence;
+        long leastSigBits = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Extracts the Unix timestamp in milliseconds from a time-ordered UUID.
+     *
+     * @param uuid The time-ordered UUID.
+     * @return The Unix timestamp in milliseconds at which the UUID was generated.
+     * @throws IllegalArgumentException If the UUID is not a version 7 UUID.
+     */
+    public static long timestampOf(UUID uuid) {
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a time-ordered UUID: " + uuid);
+        }
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
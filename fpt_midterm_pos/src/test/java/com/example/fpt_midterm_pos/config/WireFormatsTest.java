@@ -0,0 +1,163 @@
+package com.example.fpt_midterm_pos.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.mockito.ArgumentMatchers.any;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.fpt_midterm_pos.controller.CustomerController;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.dto.CursorPageDTO;
+import com.example.fpt_midterm_pos.dto.CustomerDTO;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.CustomerSaveDTO;
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailDTO;
+import com.example.fpt_midterm_pos.dto.ProductShowDTO;
+import com.example.fpt_midterm_pos.service.CustomerService;
+import com.example.fpt_midterm_pos.service.InvoiceService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+class WireFormatsTest {
+
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    @InjectMocks
+    private CustomerController customerController;
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    private final WebConfig webConfig = new WebConfig();
+    private final ObjectMapper cborMapper = new Jackson2ObjectMapperBuilder().factory(new CBORFactory()).build();
+    private final ObjectMapper smileMapper = new Jackson2ObjectMapperBuilder().factory(new SmileFactory()).build();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(customerController)
+            .setMessageConverters(new MappingJackson2HttpMessageConverter(),
+                    webConfig.cborHttpMessageConverter(new Jackson2ObjectMapperBuilder()),
+                    webConfig.smileHttpMessageConverter(new Jackson2ObjectMapperBuilder()))
+            .build();
+    }
+
+    @Test
+    void testResponses_areWrittenInTheAcceptedFormat() throws Exception {
+        CustomerShowDTO customer = new CustomerShowDTO(UUID.randomUUID(), "Customer", "+62123456789");
+        when(customerService.findAllCustomer(any())).thenReturn(new PageImpl<>(List.of(customer), PageRequest.of(0, 20), 1));
+
+        byte[] body = mockMvc.perform(get("/api/v1/customers").accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode page = cborMapper.readTree(body);
+        assertThat(page.get("content").get(0).get("name").asText()).isEqualTo("Customer");
+    }
+
+    @Test
+    void testRequests_areReadInTheirContentType() throws Exception {
+        CustomerSaveDTO customerSaveDTO = new CustomerSaveDTO();
+        customerSaveDTO.setName("Customer");
+        customerSaveDTO.setPhoneNumber("+62123456789");
+        when(customerService.createCustomer(any(CustomerSaveDTO.class))).thenReturn(new CustomerDTO(UUID.randomUUID(), "Customer", "+62123456789", Status.Active));
+
+        mockMvc.perform(post("/api/v1/customers").contentType(SMILE).accept(SMILE).content(smileMapper.writeValueAsBytes(customerSaveDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentTypeCompatibleWith(SMILE));
+
+        ArgumentCaptor<CustomerSaveDTO> captor = ArgumentCaptor.forClass(CustomerSaveDTO.class);
+        verify(customerService).createCustomer(captor.capture());
+        assertThat(captor.getValue().getPhoneNumber()).isEqualTo("+62123456789");
+    }
+
+    // Run with -Dpos.benchmark=true, compares the size, the gzipped size and the serialization time of a 500 product
+    // page and a 100 invoice page in every wire format
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkPayloadPerFormat() throws IOException {
+        List<ProductShowDTO> products = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            products.add(new ProductShowDTO(UUID.randomUUID(), "Product " + i, 1000.0 + i * 250, i % 120));
+        }
+        PagedModel<ProductShowDTO> productPage = new PagedModel<>(new PageImpl<>(products, PageRequest.of(0, 500), 12_000));
+
+        List<InvoiceDTO> invoices = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            List<InvoiceDetailDTO> lines = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                lines.add(new InvoiceDetailDTO(products.get((i + j) % 500).getId(), "Product " + ((i + j) % 500), 2, 1000.0, 2000.0));
+            }
+            invoices.add(new InvoiceDTO(UUID.randomUUID(), "INV-" + i, 6000.0, new Date(), new CustomerInvoiceDTO(UUID.randomUUID(), "Customer " + i), lines));
+        }
+        CursorPageDTO<InvoiceDTO> invoicePage = new CursorPageDTO<>(invoices, 100, true, "next");
+
+        ObjectMapper jsonMapper = new Jackson2ObjectMapperBuilder().build();
+        measure("JSON", jsonMapper, productPage, invoicePage);
+        measure("CBOR", cborMapper, productPage, invoicePage);
+        measure("Smile", smileMapper, productPage, invoicePage);
+    }
+
+    private void measure(String format, ObjectMapper mapper, Object productPage, Object invoicePage) throws IOException {
+        for (Object page : List.of(productPage, invoicePage)) {
+            for (int i = 0; i < 2000; i++) {
+                mapper.writeValueAsBytes(page);
+            }
+            int rounds = 5000;
+            long start = System.nanoTime();
+            byte[] body = null;
+            for (int i = 0; i < rounds; i++) {
+                body = mapper.writeValueAsBytes(page);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%s %s page: %d bytes, %d gzipped, %.1f us per serialization%n", format,
+                    page == productPage ? "500 product" : "100 invoice", body.length, gzip(body).length, nanos / 1e3 / rounds);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
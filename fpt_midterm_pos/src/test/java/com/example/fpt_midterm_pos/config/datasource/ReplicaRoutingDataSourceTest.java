@@ -0,0 +1,91 @@
+package com.example.fpt_midterm_pos.config.datasource;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReplicaRoutingDataSourceTest {
+
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase replica;
+    // Fails at once, as a replica that is down
+    private final DataSource broken = new DriverManagerDataSource("jdbc:unreachable:replica");
+
+    @BeforeEach
+    public void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReplicaRoutingContext.clear();
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    void testGetConnection_sendsOnlyAllowedReadOnlyTransactionsToTheReplica() {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), 30000);
+
+        assertThat(read(routing, true)).isEqualTo("primary");
+
+        ReplicaRoutingContext.setReplicaAllowed(true);
+        assertThat(read(routing, true)).isEqualTo("replica");
+        assertThat(read(routing, false)).isEqualTo("primary");
+        assertThat(ReplicaRoutingContext.onPrimary(() -> read(routing, true))).isEqualTo("primary");
+        assertThat(ReplicaRoutingContext.isReplicaAllowed()).isTrue();
+    }
+
+    @Test
+    void testGetConnection_fallsBackWhenAReplicaIsDown() {
+        ReplicaRoutingContext.setReplicaAllowed(true);
+
+        ReplicaRoutingDataSource onlyBroken = new ReplicaRoutingDataSource(primary, List.of(broken), 30000);
+        assertThat(read(onlyBroken, true)).isEqualTo("primary");
+        assertThat(onlyBroken.isUnhealthy(0)).isTrue();
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(broken, replica), 30000);
+        for (int i = 0; i < 4; i++) {
+            assertThat(read(routing, true)).isEqualTo("replica");
+        }
+
+        // Tried again once the delay has passed
+        ReplicaRoutingDataSource retrying = new ReplicaRoutingDataSource(primary, List.of(broken), 0);
+        read(retrying, true);
+        assertThat(retrying.isUnhealthy(0)).isFalse();
+    }
+
+    // Reads the name of the database answering a transaction, through the lazy proxy the application wraps it in
+    private String read(ReplicaRoutingDataSource routing, boolean readOnly) {
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> new JdbcTemplate(dataSource).queryForObject("SELECT name FROM origin", String.class));
+    }
+
+    private EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name + "-" + UUID.randomUUID())
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE origin (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO origin VALUES (?)", name);
+        return database;
+    }
+}
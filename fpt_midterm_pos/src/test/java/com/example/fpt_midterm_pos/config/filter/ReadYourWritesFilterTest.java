@@ -0,0 +1,52 @@
+package com.example.fpt_midterm_pos.config.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.fpt_midterm_pos.config.datasource.ReplicaRoutingContext;
+
+class ReadYourWritesFilterTest {
+
+    private final List<Boolean> allowed = new ArrayList<>();
+
+    @Test
+    void testDoFilter_keepsTheReadsOfAWritingClientOnThePrimary() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(60000);
+
+        filter.doFilter(request("GET", "Bearer till-1"), new MockHttpServletResponse(), (request, response) -> record());
+        filter.doFilter(request("POST", "Bearer till-1"), new MockHttpServletResponse(), (request, response) -> record());
+        filter.doFilter(request("GET", "Bearer till-1"), new MockHttpServletResponse(), (request, response) -> record());
+        filter.doFilter(request("GET", "Bearer till-2"), new MockHttpServletResponse(), (request, response) -> record());
+
+        assertThat(allowed).containsExactly(true, false, false, true);
+        assertThat(ReplicaRoutingContext.isReplicaAllowed()).isFalse();
+    }
+
+    @Test
+    void testDoFilter_allowsTheReplicasAgainAfterThePeriod() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(0);
+
+        filter.doFilter(request("PUT", null), new MockHttpServletResponse(), (request, response) -> record());
+        filter.doFilter(request("GET", null), new MockHttpServletResponse(), (request, response) -> record());
+        filter.purgeExpired();
+
+        assertThat(allowed).containsExactly(false, true);
+    }
+
+    private void record() {
+        allowed.add(ReplicaRoutingContext.isReplicaAllowed());
+    }
+
+    private MockHttpServletRequest request(String method, String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/v1/invoices");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        return request;
+    }
+}
@@ -26,13 +26,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
-import com.example.fpt_midterm_pos.data.model.Customer;
 import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.dto.CursorPageDTO;
 import com.example.fpt_midterm_pos.dto.CustomerDTO;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
 import com.example.fpt_midterm_pos.dto.CustomerSaveDTO;
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
 import com.example.fpt_midterm_pos.exception.GlobalExceptionHandler;
 import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
 import com.example.fpt_midterm_pos.service.CustomerService;
+import com.example.fpt_midterm_pos.service.InvoiceService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @EnableWebMvc
@@ -44,6 +48,9 @@ class CustomerControllerTest {
     @Mock
     private CustomerService customerService;
 
+    @Mock
+    private InvoiceService invoiceService;
+
     private MockMvc mockMvc;
 
     @BeforeEach
@@ -58,8 +65,8 @@ class CustomerControllerTest {
     void testGetAllCustomer_withCustomers() throws Exception {
         // Prepare test data
         Pageable pageable = PageRequest.of(0, 20);
-        Customer customer = new Customer(UUID.randomUUID(), "Customer", "+62123456789", Status.ACTIVE.toString(), new Date(), new Date(), null);
-        Page<Customer> customerPage = new PageImpl<>(List.of(customer), pageable, 1);
+        CustomerShowDTO customer = new CustomerShowDTO(UUID.randomUUID(), "Customer", "+62123456789");
+        Page<CustomerShowDTO> customerPage = new PageImpl<>(List.of(customer), pageable, 1);
 
         // Mock the service call
         when(customerService.findAllCustomer(any(Pageable.class)))
@@ -82,7 +89,7 @@ class CustomerControllerTest {
     void testGetAllCustomer_noCustomers() throws Exception {
         // Prepare test data
         Pageable pageable = PageRequest.of(0, 20);
-        Page<Customer> emptyPage = new PageImpl<>(List.of(), pageable, 0);
+        Page<CustomerShowDTO> emptyPage = new PageImpl<>(List.of(), pageable, 0);
 
         // Mock the service call
         when(customerService.findAllCustomer(any(Pageable.class)))
@@ -96,6 +103,29 @@ class CustomerControllerTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    void testGetCustomerInvoices() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        InvoiceDTO invoice = new InvoiceDTO(UUID.randomUUID(), "INV-1", 1000.0, new Date(), new CustomerInvoiceDTO(customerId, "Customer"), List.of());
+        when(invoiceService.findByCustomerAfter(customerId, "cursor", 1)).thenReturn(new CursorPageDTO<>(List.of(invoice), 1, true, "next"));
+
+        mockMvc.perform(get("/api/v1/customers/" + customerId + "/invoices")
+                .param("after", "cursor")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"size\": 1, \"hasNext\": true, \"next\": \"next\", \"content\": [{\"invoiceNumber\": \"INV-1\"}]}"));
+    }
+
+    @Test
+    void testGetCustomerInvoices_withCustomerNotExist() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        when(invoiceService.findByCustomerAfter(customerId, null, 20)).thenThrow(new ResourceNotFoundException("Customer not found"));
+
+        mockMvc.perform(get("/api/v1/customers/" + customerId + "/invoices"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"error\": \"Customer not found\"}"));
+    }
+
     @Test
     void testCreateCustomer_withValidFormat() throws Exception {
         CustomerDTO customerDTO = new CustomerDTO(UUID.randomUUID(), "Customer", "+62123456789", Status.ACTIVE);
@@ -0,0 +1,153 @@
+package com.example.fpt_midterm_pos.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.fpt_midterm_pos.config.datasource.ReplicaRoutingContext;
+import com.example.fpt_midterm_pos.dto.ProductSearchCriteriaDTO;
+import com.example.fpt_midterm_pos.dto.ProductShowDTO;
+import com.example.fpt_midterm_pos.exception.GlobalExceptionHandler;
+import com.example.fpt_midterm_pos.service.CatalogVersionService;
+import com.example.fpt_midterm_pos.service.ProductService;
+import com.example.fpt_midterm_pos.service.ProductSuggestService;
+import com.example.fpt_midterm_pos.service.impl.CatalogVersionServiceImpl;
+
+class ProductControllerTest {
+
+    @InjectMocks
+    private ProductController productController;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private ProductSuggestService productSuggestService;
+
+    @Spy
+    private CatalogVersionService catalogVersionService = new CatalogVersionServiceImpl();
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(productController)
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+        ProductShowDTO product = new ProductShowDTO(UUID.randomUUID(), "Milk", 1000.0, 10);
+        when(productService.findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), anyBoolean())).thenReturn(new PageImpl<>(List.of(product), PageRequest.of(0, 20), 1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReplicaRoutingContext.clear();
+    }
+
+    @Test
+    void testGetProductsByCriteria_answersAnUnchangedCatalogWithNotModified() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/v1/products").param("name", "Milk"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/products").param("name", "Milk").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+        verify(productService, times(1)).findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), anyBoolean());
+
+        // Another request, or the same one after a write, is read again
+        mockMvc.perform(get("/api/v1/products").param("name", "Bread").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        catalogVersionService.bump();
+        mockMvc.perform(get("/api/v1/products").param("name", "Milk").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        verify(productService, times(3)).findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), anyBoolean());
+    }
+
+    @Test
+    void testGetProductsByCriteria_normalizesTheSort() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/products").param("sortByName", "ASC"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/products").param("sortByName", "asc").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testGetProductsByCriteria_returnsOnlyTheRequestedFields() throws Exception {
+        mockMvc.perform(get("/api/v1/products").param("fields", "name, price"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("Milk"))
+                .andExpect(jsonPath("$.content[0].price").value(1000.0))
+                .andExpect(jsonPath("$.content[0].id").doesNotExist())
+                .andExpect(jsonPath("$.content[0].quantity").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(1));
+        // The stock engine is not asked for a quantity nobody reads
+        verify(productService).findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), eq(false));
+
+        mockMvc.perform(get("/api/v1/products").param("fields", "name,stock"))
+                .andExpect(status().isBadRequest());
+        verify(productService, times(1)).findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), anyBoolean());
+    }
+
+    @Test
+    void testGetProductsByCriteria_readsTheTaggedProductsOnThePrimary() throws Exception {
+        List<Boolean> replicaAllowed = new ArrayList<>();
+        when(productService.findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), anyBoolean())).thenAnswer(invocation -> {
+            replicaAllowed.add(ReplicaRoutingContext.isReplicaAllowed());
+            return new PageImpl<>(List.of(new ProductShowDTO(UUID.randomUUID(), "Milk", 1000.0, 10)), PageRequest.of(0, 20), 1);
+        });
+        when(productSuggestService.suggest("mi", 10)).thenAnswer(invocation -> {
+            replicaAllowed.add(ReplicaRoutingContext.isReplicaAllowed());
+            return List.of();
+        });
+
+        // A GET the read-your-writes filter lets read the replicas, which may not have the last write of another till yet
+        ReplicaRoutingContext.setReplicaAllowed(true);
+        mockMvc.perform(get("/api/v1/products")).andExpect(status().isOk()).andExpect(header().exists("ETag"));
+        mockMvc.perform(get("/api/v1/products/suggest").param("q", "mi")).andExpect(status().isOk()).andExpect(header().exists("ETag"));
+
+        assertThat(replicaAllowed).containsExactly(false, false);
+        assertThat(ReplicaRoutingContext.isReplicaAllowed()).isTrue();
+    }
+
+    @Test
+    void testGetProductsByCriteria_asksToRetryAfterADeadlock() throws Exception {
+        when(productService.findByCriteria(any(ProductSearchCriteriaDTO.class), any(Pageable.class), anyBoolean()))
+                .thenThrow(new CannotAcquireLockException("Deadlock detected"));
+
+        mockMvc.perform(get("/api/v1/products"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+}
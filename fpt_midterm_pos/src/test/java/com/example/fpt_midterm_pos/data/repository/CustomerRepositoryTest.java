@@ -9,9 +9,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 import com.example.fpt_midterm_pos.data.model.Customer;
 import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
 
 @DataJpaTest
 class CustomerRepositoryTest {
@@ -44,4 +46,15 @@ class CustomerRepositoryTest {
         Page<Customer> customers = customerRepository.findAll(PageRequest.of(0, 10));
         assertThat(customers.getTotalElements()).isEqualTo(1);
     }
+
+    @Test
+    void findAllShowBy_readsTheListedColumns() {
+        Page<CustomerShowDTO> customers = customerRepository.findAllShowBy(PageRequest.of(0, 10));
+        assertThat(customers.getTotalElements()).isEqualTo(1);
+        assertThat(customers.getContent()).extracting(CustomerShowDTO::getName).containsExactly("Test Customer");
+
+        Slice<CustomerShowDTO> slice = customerRepository.findShowSliceBy(PageRequest.of(0, 10));
+        assertThat(slice.getContent()).extracting(CustomerShowDTO::getPhoneNumber).containsExactly("+62123456789");
+        assertThat(slice.hasNext()).isFalse();
+    }
 }
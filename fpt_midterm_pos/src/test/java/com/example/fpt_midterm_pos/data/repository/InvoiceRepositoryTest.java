@@ -0,0 +1,388 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Invoice;
+import com.example.fpt_midterm_pos.data.model.InvoiceDetail;
+import com.example.fpt_midterm_pos.data.model.InvoiceDetailKey;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.utils.DateUtils;
+import com.example.fpt_midterm_pos.utils.ExcelGenerator;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class InvoiceRepositoryTest {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InvoiceDetailRepository invoiceDetailRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Customer customer;
+
+    @BeforeEach
+    public void setUp() {
+        customer = new Customer();
+        customer.setName("Test Customer");
+        customer.setStatus(Status.Active);
+        customer.setPhoneNumber("+62123456789");
+        customer.setCreatedAt(new Date());
+        customer.setUpdatedAt(new Date());
+        customer = customerRepository.save(customer);
+    }
+
+    @Test
+    void findByFiltersAfter_walksEveryInvoiceOnceInOrder() {
+        // Few distinct dates and amounts, so the ID has to break the ties
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            invoices.add(invoice(new Date(BASE_TIME + (i % 4) * 1000L), (double) (i % 3) * 1000));
+        }
+        invoiceRepository.saveAll(invoices);
+        entityManager.flush();
+
+        List<Invoice> expected = invoiceRepository.findByFiltersAfter(null, null, null, null, null, null, null, false, false, null, 100);
+        assertThat(expected).hasSize(25);
+        assertThat(expected).isSortedAccordingTo(Comparator.comparing(Invoice::getDate).thenComparing(Invoice::getAmount));
+
+        assertThat(walk(false, false, 7)).containsExactlyElementsOf(expected);
+        List<Invoice> reversed = new ArrayList<>(expected);
+        Collections.reverse(reversed);
+        assertThat(walk(false, true, 7)).containsExactlyElementsOf(reversed);
+        assertThat(walk(true, false, 4)).hasSize(25).doesNotHaveDuplicates()
+                .isSortedAccordingTo(Comparator.comparing(Invoice::getAmount).thenComparing(Invoice::getDate));
+    }
+
+    @Test
+    void findByFiltersAfter_keepsTheFilters() {
+        Customer other = new Customer();
+        other.setName("Other Customer");
+        other.setStatus(Status.Active);
+        other.setPhoneNumber("+62123456780");
+        other.setCreatedAt(new Date());
+        other.setUpdatedAt(new Date());
+        other = customerRepository.save(other);
+
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Invoice invoice = invoice(new Date(BASE_TIME + i * 1000L), 1000.0);
+            if (i % 2 == 0) {
+                invoice.setCustomer(other);
+            }
+            invoices.add(invoice);
+        }
+        invoiceRepository.saveAll(invoices);
+        entityManager.flush();
+
+        List<Invoice> page = invoiceRepository.findByFiltersAfter(null, customer.getId(), null, null, null, null, null, false, false, null, 3);
+        Invoice last = page.get(page.size() - 1);
+        List<Invoice> next = invoiceRepository.findByFiltersAfter(null, customer.getId(), null, null, null, null, null, false, false,
+                new InvoiceCursor(last.getDate(), last.getAmount(), last.getId()), 3);
+
+        assertThat(page).hasSize(3);
+        assertThat(next).hasSize(2);
+        assertThat(next).allMatch(invoice -> invoice.getCustomer().getId().equals(customer.getId()));
+    }
+
+    @Test
+    void findByFilters_appliesTheRequestedFiltersAndSort() {
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            invoices.add(invoice(new Date(BASE_TIME + (i % 5) * 1000L), (double) i * 1000));
+        }
+        invoiceRepository.saveAll(invoices);
+        entityManager.flush();
+
+        Page<Invoice> all = invoiceRepository.findByFilters(null, null, null, null, null, null, null, null, null, PageRequest.of(0, 4));
+        assertThat(all.getTotalElements()).isEqualTo(10);
+        assertThat(all.getContent()).isSortedAccordingTo(Comparator.comparing(Invoice::getDate).thenComparing(Invoice::getAmount));
+
+        Page<Invoice> byDateRange = invoiceRepository.findByFilters(null, customer.getId(), null, new Date(BASE_TIME + 1000L),
+                new Date(BASE_TIME + 2000L), null, null, "desc", "desc", PageRequest.of(0, 10));
+        assertThat(byDateRange.getContent()).extracting(Invoice::getAmount).containsExactly(7000.0, 2000.0, 6000.0, 1000.0);
+
+        Slice<Invoice> lastSlice = invoiceRepository.findSliceByFilters("Test", null, null, null, null, null, null, null, "desc", PageRequest.of(2, 4));
+        assertThat(lastSlice.getContent()).hasSize(2);
+        assertThat(lastSlice.hasNext()).isFalse();
+        assertThat(invoiceRepository.countByFilters("Nobody", null, null, null, null, null, null)).isZero();
+        assertThat(invoiceRepository.countByFilters(null, null, List.of(customer.getId()), null, null, null, null)).isEqualTo(10);
+        assertThat(invoiceRepository.countByFilters(null, null, List.of(), null, null, null, null)).isZero();
+    }
+
+    @Test
+    void findSummarySliceByFilters_readsAPageWithItsLinesInTwoStatements() {
+        List<Product> products = productRepository.saveAll(List.of(product("Test Apple"), product("Test Banana")));
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            invoices.add(withLines(invoice(new Date(BASE_TIME + i * 1000L), 2000.0), products));
+        }
+        invoiceRepository.saveAll(invoices);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = statistics();
+        Slice<InvoiceSummary> page = invoiceRepository.findSummarySliceByFilters("Test", null, null, null, null, null, null, "asc", null, PageRequest.of(0, 3));
+        List<InvoiceLineSummary> lines = invoiceDetailRepository.findLineSummariesByInvoiceIds(page.stream().map(InvoiceSummary::id).toList());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(page.getContent()).hasSize(3).allMatch(invoice -> invoice.customerName().equals("Test Customer"));
+        assertThat(page.hasNext()).isTrue();
+        assertThat(lines).hasSize(6).extracting(InvoiceLineSummary::productName).containsOnly("Test Apple", "Test Banana");
+
+        // The same page read as entities loads the customer and the lines of every invoice on their own
+        entityManager.clear();
+        statistics.clear();
+        for (Invoice invoice : invoiceRepository.findSliceByFilters("Test", null, null, null, null, null, null, "asc", null, PageRequest.of(0, 3))) {
+            invoice.getCustomer().getName();
+            invoice.getInvoiceDetails().size();
+        }
+        assertThat(statistics.getPrepareStatementCount()).isGreaterThan(2);
+    }
+
+    @Test
+    void findWithCustomerAndDetailsById_readsWhatThePdfPrintsInOneStatement() {
+        List<Product> products = productRepository.saveAll(List.of(product("Test Apple"), product("Test Banana")));
+        Invoice saved = invoiceRepository.save(withLines(invoice(new Date(BASE_TIME), 2000.0), products));
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = statistics();
+        Invoice invoice = invoiceRepository.findWithCustomerAndDetailsById(saved.getId()).orElseThrow();
+        assertThat(invoice.getCustomer().getName()).isEqualTo("Test Customer");
+        assertThat(invoice.getInvoiceDetails()).extracting(InvoiceDetail::getProductName).containsExactlyInAnyOrder("Test Apple", "Test Banana");
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findByFiltersForExcel_staysWithinItsQueryBudget() {
+        List<Product> products = productRepository.saveAll(List.of(product("Test Apple"), product("Test Banana")));
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            invoices.add(withLines(invoice(new Date(BASE_TIME + i * 1000L), 2000.0), products));
+        }
+        // An invoice without lines is still exported
+        invoices.add(invoice(new Date(BASE_TIME), 0.0));
+        invoiceRepository.saveAll(invoices);
+        entityManager.flush();
+        entityManager.clear();
+
+        // The invoices with their customer, then their details and then their products, one batch each
+        Statistics statistics = statistics();
+        List<Invoice> exported = invoiceRepository.findByFiltersForExcel(customer.getId(), null, null);
+        Workbook workbook = ExcelGenerator.generateInvoiceExcel(exported);
+
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+        assertThat(exported).extracting(Invoice::getId).hasSize(31).doesNotHaveDuplicates();
+        assertThat(workbook.getSheet("Invoices").getLastRowNum()).isEqualTo(60);
+    }
+
+    @Test
+    void findByPeriod_readsTheHalfOpenRange() {
+        Date[] day = DateUtils.dayPeriod(DateUtils.formatDateToLocalDate(new Date(BASE_TIME)));
+        invoiceRepository.saveAll(List.of(
+                invoice(new Date(day[0].getTime() - 1), 1000.0),
+                invoice(day[0], 2000.0),
+                invoice(new Date(day[1].getTime() - 1), 3000.0),
+                invoice(day[1], 4000.0)));
+        entityManager.flush();
+
+        assertThat(invoiceRepository.findTotalRevenueBetween(day[0], day[1])).isEqualTo(5000.0);
+        assertThat(invoiceRepository.countByFilters(null, null, null, null, null, day[0], day[1])).isEqualTo(2);
+    }
+
+    // Run with -Dpos.benchmark=true, compares the revenue of a month read with MONTH() and YEAR() calls on every row
+    // against the same month read as a date range. -Dpos.benchmark.invoices sets the table size, 5M by default
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkRevenueFunctionAgainstRange() {
+        int total = Integer.getInteger("pos.benchmark.invoices", 5_000_000);
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            // Spread over about ten years
+            invoices.add(invoice(new Date(BASE_TIME - (long) i * 60_000L), (double) (i % 100) * 1000));
+            if (invoices.size() == 1000) {
+                invoiceRepository.saveAll(invoices);
+                entityManager.flush();
+                entityManager.clear();
+                invoices.clear();
+            }
+        }
+
+        LocalDate month = DateUtils.formatDateToLocalDate(new Date(BASE_TIME)).withDayOfMonth(1);
+        long functionStart = System.nanoTime();
+        Double byFunction = entityManager.createQuery("SELECT SUM(i.amount) FROM Invoice i WHERE YEAR(i.date) = :year AND MONTH(i.date) = :month", Double.class)
+                .setParameter("year", month.getYear())
+                .setParameter("month", month.getMonthValue())
+                .getSingleResult();
+        long functionNanos = System.nanoTime() - functionStart;
+
+        Date[] period = DateUtils.monthPeriod(month.getYear(), month.getMonthValue());
+        long rangeStart = System.nanoTime();
+        Double byRange = invoiceRepository.findTotalRevenueBetween(period[0], period[1]);
+        long rangeNanos = System.nanoTime() - rangeStart;
+
+        assertThat(byRange).isEqualTo(byFunction);
+        System.out.printf("Revenue of %s over %d invoices: function %.1f ms, range %.1f ms%n", month, total, functionNanos / 1e6, rangeNanos / 1e6);
+    }
+
+    // Run with -Dpos.benchmark=true, compares reading a page deep into the results with an offset and with a cursor
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkDeepPageOffsetAgainstCursor() {
+        int total = 200_000;
+        int size = 20;
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            invoices.add(invoice(new Date(BASE_TIME + i * 1000L), (double) (i % 100) * 1000));
+            if (invoices.size() == 1000) {
+                invoiceRepository.saveAll(invoices);
+                entityManager.flush();
+                entityManager.clear();
+                invoices.clear();
+            }
+        }
+
+        int deepPage = total / size - 1;
+        long offsetStart = System.nanoTime();
+        invoiceRepository.findByFilters(null, null, null, null, null, null, null, "asc", null, PageRequest.of(deepPage, size));
+        long offsetNanos = System.nanoTime() - offsetStart;
+
+        // The cursor of the deep page is the invoice right before it, dates are unique so both modes share the order
+        Invoice last = invoiceRepository.findByFilters(null, null, null, null, null, null, null, "asc", null, PageRequest.of(deepPage * size - 1, 1)).getContent().get(0);
+        long cursorStart = System.nanoTime();
+        invoiceRepository.findByFiltersAfter(null, null, null, null, null, null, null, false, false,
+                new InvoiceCursor(last.getDate(), last.getAmount(), last.getId()), size);
+        long cursorNanos = System.nanoTime() - cursorStart;
+
+        System.out.printf("Page %d of %d: offset %.1f ms, cursor %.1f ms%n", deepPage, total / size, offsetNanos / 1e6, cursorNanos / 1e6);
+    }
+
+    // Run with -Dpos.benchmark=true, compares a listing of 500 invoices of 3 lines read with their lines, as by default,
+    // and without them, as when the lines are left out of the requested fields
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkListingWithAndWithoutLines() {
+        List<Product> products = productRepository.saveAll(List.of(product("Test Apple"), product("Test Banana"), product("Test Cherry")));
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            invoices.add(withLines(invoice(new Date(BASE_TIME + i * 1000L), 3000.0), products));
+        }
+        invoiceRepository.saveAll(invoices);
+        entityManager.flush();
+        entityManager.clear();
+
+        int listings = 50;
+        long[] nanos = new long[2];
+        int lines = 0;
+        for (int i = 0; i < listings * 2; i++) {
+            boolean withDetails = i % 2 == 0;
+            long start = System.nanoTime();
+            Slice<InvoiceSummary> page = invoiceRepository.findSummarySliceByFilters(null, null, null, null, null, null, null, "asc", null, PageRequest.of(0, 500));
+            if (withDetails) {
+                lines = invoiceDetailRepository.findLineSummariesByInvoiceIds(page.stream().map(InvoiceSummary::id).toList()).size();
+            }
+            nanos[withDetails ? 0 : 1] += System.nanoTime() - start;
+            entityManager.clear();
+        }
+
+        System.out.printf("Listing of 500 invoices: with %d lines %.1f ms, without lines %.1f ms%n", lines, nanos[0] / 1e6 / listings, nanos[1] / 1e6 / listings);
+    }
+
+    // Reads every invoice page by page, following the cursor of the last invoice of each page
+    private List<Invoice> walk(boolean sortByAmount, boolean descending, int size) {
+        List<Invoice> all = new ArrayList<>();
+        InvoiceCursor cursor = null;
+        while (true) {
+            List<Invoice> page = invoiceRepository.findByFiltersAfter(null, null, null, null, null, null, null, sortByAmount, descending, cursor, size);
+            all.addAll(page);
+            if (page.size() < size) {
+                return all;
+            }
+            Invoice last = page.get(page.size() - 1);
+            cursor = new InvoiceCursor(last.getDate(), last.getAmount(), last.getId());
+        }
+    }
+
+    // Statistics of the statements prepared from now on
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    // Adds a line of one unit of every given product to the invoice
+    private Invoice withLines(Invoice invoice, List<Product> products) {
+        invoice.setInvoiceDetails(new ArrayList<>());
+        for (Product product : products) {
+            InvoiceDetail detail = new InvoiceDetail();
+            detail.setId(new InvoiceDetailKey(null, product.getId()));
+            detail.setInvoice(invoice);
+            detail.setProduct(product);
+            detail.setProductName(product.getName());
+            detail.setQuantity(1);
+            detail.setPrice(1000.0);
+            detail.setAmount(1000.0);
+            detail.setCreatedAt(invoice.getCreatedAt());
+            detail.setUpdatedAt(invoice.getUpdatedAt());
+            invoice.getInvoiceDetails().add(detail);
+        }
+        return invoice;
+    }
+
+    private Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(1000.0);
+        product.setStatus(Status.Active);
+        product.setQuantity(10);
+        product.setCreatedAt(new Date());
+        product.setUpdatedAt(new Date());
+        return product;
+    }
+
+    private Invoice invoice(Date date, double amount) {
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber("test-" + UUID.randomUUID());
+        invoice.setCustomer(customer);
+        invoice.setAmount(amount);
+        invoice.setDate(date);
+        invoice.setCreatedAt(date);
+        invoice.setUpdatedAt(date);
+        return invoice;
+    }
+}
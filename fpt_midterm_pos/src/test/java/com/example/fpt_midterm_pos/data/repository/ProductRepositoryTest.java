@@ -0,0 +1,100 @@
+package com.example.fpt_midterm_pos.data.repository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductRepositoryTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        product = new Product();
+        product.setName("Test Product");
+        product.setPrice(1000.0);
+        product.setStatus(Status.Active);
+        product.setQuantity(10);
+        product.setCreatedAt(new Date());
+        product.setUpdatedAt(new Date());
+        product = productRepository.save(product);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void decrementQuantity() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        Integer updated = transaction.execute(status -> productRepository.decrementQuantity(product.getId(), 4));
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getQuantity()).isEqualTo(6);
+    }
+
+    @Test
+    void decrementQuantity_withInsufficientStock() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        Integer updated = transaction.execute(status -> productRepository.decrementQuantity(product.getId(), 11));
+
+        assertThat(updated).isZero();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getQuantity()).isEqualTo(10);
+    }
+
+    @Test
+    void decrementQuantity_withConcurrentCheckoutsNeverOversells() throws Exception {
+        int checkouts = 32;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < checkouts; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return transaction.execute(status -> productRepository.decrementQuantity(product.getId(), 1));
+            }));
+        }
+        start.countDown();
+
+        int sold = 0;
+        for (Future<Integer> result : results) {
+            sold += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(sold).isEqualTo(10);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getQuantity()).isZero();
+    }
+}
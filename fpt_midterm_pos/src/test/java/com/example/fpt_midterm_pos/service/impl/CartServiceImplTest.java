@@ -0,0 +1,191 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.CartDTO;
+import com.example.fpt_midterm_pos.dto.CartSaveDTO;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailSaveDTO;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.service.CustomerService;
+import com.example.fpt_midterm_pos.service.InvoiceService;
+import com.example.fpt_midterm_pos.service.StockService;
+
+class CartServiceImplTest {
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    private Customer customer;
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        customer = new Customer();
+        customer.setId(UUID.randomUUID());
+        customer.setName("Test Customer");
+
+        product = new Product();
+        product.setId(UUID.randomUUID());
+        product.setName("Test Product");
+        product.setPrice(1000.0);
+        product.setStatus(Status.Active);
+        product.setQuantity(5);
+
+        when(customerService.findById(customer.getId())).thenReturn(customer);
+        when(productRepository.findById(product.getId())).thenReturn(Optional.of(product));
+        when(stockService.findAvailable(anyList())).thenReturn(Map.of(product.getId(), 5));
+    }
+
+    @Test
+    void testAddLine_withHoldsOfOtherCartsRejectsOversell() {
+        CartServiceImpl cartService = new CartServiceImpl(customerService, productRepository, stockService, invoiceService, 300);
+        CartDTO first = cartService.createCart(new CartSaveDTO(customer.getId()));
+        CartDTO second = cartService.createCart(new CartSaveDTO(customer.getId()));
+
+        cartService.addLine(first.getId(), new InvoiceDetailSaveDTO(product.getId(), 2));
+        CartDTO updated = cartService.addLine(first.getId(), new InvoiceDetailSaveDTO(product.getId(), 2));
+
+        assertThat(updated.getLines()).hasSize(1);
+        assertThat(updated.getLines().get(0).getQuantity()).isEqualTo(4);
+        assertThat(updated.getAmount()).isEqualTo(4000.0);
+        assertThrows(IllegalArgumentException.class, () -> cartService.addLine(second.getId(), new InvoiceDetailSaveDTO(product.getId(), 2)));
+
+        // Releasing the hold of the first cart makes the stock available again
+        cartService.removeLine(first.getId(), product.getId());
+        assertThat(cartService.addLine(second.getId(), new InvoiceDetailSaveDTO(product.getId(), 5)).getLines()).hasSize(1);
+    }
+
+    @Test
+    void testExpireCarts_releasesHolds() {
+        CartServiceImpl expiringCartService = new CartServiceImpl(customerService, productRepository, stockService, invoiceService, 0);
+        CartDTO cart = expiringCartService.createCart(new CartSaveDTO(customer.getId()));
+        assertThrows(ResourceNotFoundException.class, () -> expiringCartService.addLine(cart.getId(), new InvoiceDetailSaveDTO(product.getId(), 5)));
+
+        CartServiceImpl cartService = new CartServiceImpl(customerService, productRepository, stockService, invoiceService, 300);
+        CartDTO open = cartService.createCart(new CartSaveDTO(customer.getId()));
+        cartService.addLine(open.getId(), new InvoiceDetailSaveDTO(product.getId(), 5));
+        cartService.expireCarts();
+        assertThat(cartService.findById(open.getId()).getLines()).hasSize(1);
+
+        expiringCartService.expireCarts();
+        assertThrows(ResourceNotFoundException.class, () -> expiringCartService.findById(cart.getId()));
+    }
+
+    @Test
+    void testCheckout_createsInvoiceFromHeldLinesAndClosesCart() {
+        CartServiceImpl cartService = new CartServiceImpl(customerService, productRepository, stockService, invoiceService, 300);
+        CartDTO cart = cartService.createCart(new CartSaveDTO(customer.getId()));
+        cartService.addLine(cart.getId(), new InvoiceDetailSaveDTO(product.getId(), 3));
+        InvoiceDTO invoiceDTO = new InvoiceDTO(UUID.randomUUID(), "default-00000001", 3000.0, new Date(), new CustomerInvoiceDTO(customer.getId(), customer.getName()), List.of());
+        when(invoiceService.createInvoiceFromLines(any(CustomerInvoiceDTO.class), anyList())).thenReturn(invoiceDTO);
+
+        InvoiceDTO result = cartService.checkout(cart.getId());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InvoiceDetailDTO>> lines = ArgumentCaptor.forClass(List.class);
+        verify(invoiceService).createInvoiceFromLines(any(CustomerInvoiceDTO.class), lines.capture());
+        assertThat(result).isEqualTo(invoiceDTO);
+        assertThat(lines.getValue()).extracting(InvoiceDetailDTO::getQuantity).containsExactly(3);
+        assertThrows(ResourceNotFoundException.class, () -> cartService.findById(cart.getId()));
+
+        // The holds of the checked out cart are gone
+        CartDTO next = cartService.createCart(new CartSaveDTO(customer.getId()));
+        assertThat(cartService.addLine(next.getId(), new InvoiceDetailSaveDTO(product.getId(), 5)).getLines()).hasSize(1);
+    }
+
+    @Test
+    void testCheckout_neverFailsForStockHeldWhileOtherCartsCheckOut() throws Exception {
+        CartServiceImpl cartService = new CartServiceImpl(customerService, productRepository, stockService, invoiceService, 300);
+        // The stock engine, taken by every checkout
+        AtomicInteger stock = new AtomicInteger(500);
+        when(stockService.findAvailable(anyList())).thenAnswer(invocation -> Map.of(product.getId(), stock.get()));
+        when(invoiceService.createInvoiceFromLines(any(CustomerInvoiceDTO.class), anyList())).thenAnswer(invocation -> {
+            List<InvoiceDetailDTO> lines = invocation.getArgument(1);
+            int quantity = lines.get(0).getQuantity();
+            if (stock.getAndUpdate(available -> available >= quantity ? available - quantity : available) < quantity) {
+                throw new IllegalArgumentException("Insufficient product stock");
+            }
+            return null;
+        });
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> failedCheckouts = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            failedCheckouts.add(executor.submit(() -> {
+                start.await();
+                int failed = 0;
+                for (int j = 0; j < 200; j++) {
+                    CartDTO cart = cartService.createCart(new CartSaveDTO(customer.getId()));
+                    try {
+                        cartService.addLine(cart.getId(), new InvoiceDetailSaveDTO(product.getId(), 1));
+                    } catch (IllegalArgumentException e) {
+                        // Everything left is held by the other carts
+                        cartService.deleteCart(cart.getId());
+                        continue;
+                    }
+                    try {
+                        cartService.checkout(cart.getId());
+                    } catch (IllegalArgumentException e) {
+                        failed++;
+                        cartService.deleteCart(cart.getId());
+                    }
+                }
+                return failed;
+            }));
+        }
+        start.countDown();
+
+        int failed = 0;
+        for (Future<Integer> result : failedCheckouts) {
+            failed += result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // A held line is always paid for, and every unit was sold
+        assertThat(failed).isZero();
+        assertThat(stock.get()).isZero();
+    }
+}
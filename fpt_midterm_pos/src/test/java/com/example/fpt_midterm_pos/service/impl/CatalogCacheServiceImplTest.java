@@ -0,0 +1,115 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.CatalogCacheStatsDTO;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+
+class CatalogCacheServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    private Product product;
+    private Customer customer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        product = new Product();
+        product.setId(UUID.randomUUID());
+        product.setName("Test Product");
+        product.setPrice(1000.0);
+        product.setStatus(Status.Active);
+        when(productRepository.findAllById(anyIterable())).thenReturn(List.of(product));
+
+        customer = new Customer();
+        customer.setId(UUID.randomUUID());
+        customer.setName("Test Customer");
+        when(customerRepository.findById(customer.getId())).thenReturn(Optional.of(customer));
+    }
+
+    @Test
+    void testFindProducts_readsThroughOnceUntilEvicted() {
+        CatalogCacheServiceImpl catalogCacheService = new CatalogCacheServiceImpl(productRepository, customerRepository, true, 300, 100);
+
+        assertThat(catalogCacheService.findProducts(List.of(product.getId())).get(product.getId()).getName()).isEqualTo("Test Product");
+        catalogCacheService.findProducts(List.of(product.getId()));
+        verify(productRepository, times(1)).findAllById(anyIterable());
+
+        product.setName("Renamed Product");
+        catalogCacheService.evictProduct(product.getId());
+        assertThat(catalogCacheService.findProducts(List.of(product.getId())).get(product.getId()).getName()).isEqualTo("Renamed Product");
+        verify(productRepository, times(2)).findAllById(anyIterable());
+
+        CatalogCacheStatsDTO stats = catalogCacheService.getStats();
+        assertThat(stats.getProductHits()).isEqualTo(1);
+        assertThat(stats.getProductMisses()).isEqualTo(2);
+        assertThat(stats.getProductHitRatio()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    void testFindProducts_dropsSnapshotsReadDuringAnEviction() {
+        CatalogCacheServiceImpl catalogCacheService = new CatalogCacheServiceImpl(productRepository, customerRepository, true, 300, 100);
+        // The product is written while it is being read
+        when(productRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            catalogCacheService.evictProduct(product.getId());
+            return List.of(product);
+        });
+
+        catalogCacheService.findProducts(List.of(product.getId()));
+        assertThat(catalogCacheService.getStats().getProductEntries()).isZero();
+    }
+
+    @Test
+    void testFindCustomer_keepsTheCacheBounded() {
+        CatalogCacheServiceImpl catalogCacheService = new CatalogCacheServiceImpl(productRepository, customerRepository, true, 300, 10);
+        for (int i = 0; i < 25; i++) {
+            Customer other = new Customer();
+            other.setId(UUID.randomUUID());
+            other.setName("Customer " + i);
+            when(customerRepository.findById(other.getId())).thenReturn(Optional.of(other));
+            catalogCacheService.findCustomer(other.getId());
+        }
+
+        assertThat(catalogCacheService.getStats().getCustomerEntries()).isLessThanOrEqualTo(10);
+        assertThat(catalogCacheService.findCustomer(customer.getId()).getName()).isEqualTo("Test Customer");
+        assertThrows(ResourceNotFoundException.class, () -> catalogCacheService.findCustomer(UUID.randomUUID()));
+    }
+
+    @Test
+    void testFindCustomer_withExpiredOrDisabledCacheReadsAgain() {
+        CatalogCacheServiceImpl expiring = new CatalogCacheServiceImpl(productRepository, customerRepository, true, 0, 100);
+        expiring.findCustomer(customer.getId());
+        expiring.findCustomer(customer.getId());
+
+        CatalogCacheServiceImpl disabled = new CatalogCacheServiceImpl(productRepository, customerRepository, false, 300, 100);
+        disabled.findCustomer(customer.getId());
+        disabled.findCustomer(customer.getId());
+
+        verify(customerRepository, times(4)).findById(customer.getId());
+        assertThat(disabled.getStats().getCustomerEntries()).isZero();
+    }
+}
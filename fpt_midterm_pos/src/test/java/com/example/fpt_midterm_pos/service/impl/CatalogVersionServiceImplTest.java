@@ -0,0 +1,65 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.fpt_midterm_pos.dto.CatalogVersionStatsDTO;
+
+class CatalogVersionServiceImplTest {
+
+    private CatalogVersionServiceImpl catalogVersionService;
+
+    @BeforeEach
+    public void setUp() {
+        catalogVersionService = new CatalogVersionServiceImpl();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testEtag_changesWithTheVersionAndTheRequest() {
+        String etag = catalogVersionService.etag("products|milk");
+
+        assertThat(etag).startsWith("\"").endsWith("\"");
+        assertThat(catalogVersionService.etag("products|milk")).isEqualTo(etag);
+        assertThat(catalogVersionService.etag("products|bread")).isNotEqualTo(etag);
+        assertThat(new CatalogVersionServiceImpl().etag("products|milk")).isNotEqualTo(etag);
+
+        catalogVersionService.bump();
+        assertThat(catalogVersionService.etag("products|milk")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void testBump_movesTheVersionAgainAfterTheCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        catalogVersionService.bump();
+        assertThat(catalogVersionService.getVersion()).isEqualTo(1);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertThat(catalogVersionService.getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetStats_countsTheNotModifiedRequests() {
+        catalogVersionService.recordRequest(true);
+        catalogVersionService.recordRequest(true);
+        catalogVersionService.recordRequest(true);
+        catalogVersionService.recordRequest(false);
+
+        CatalogVersionStatsDTO stats = catalogVersionService.getStats();
+        assertThat(stats.getRequests()).isEqualTo(4);
+        assertThat(stats.getNotModified()).isEqualTo(3);
+        assertThat(stats.getNotModifiedRatio()).isEqualTo(0.75);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+class CountCacheServiceImplTest {
+
+    private final AtomicInteger counts = new AtomicInteger();
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clear();
+        }
+    }
+
+    @Test
+    void testGetCount_countsOncePerCriteriaUntilInvalidated() {
+        CountCacheServiceImpl cache = new CountCacheServiceImpl(true, 30, 100);
+
+        assertThat(cache.getCount("invoice", "a", this::count)).isEqualTo(1);
+        assertThat(cache.getCount("invoice", "a", this::count)).isEqualTo(1);
+        assertThat(cache.getCount("invoice", "b", this::count)).isEqualTo(2);
+
+        // Only the totals of the written entity are dropped
+        assertThat(cache.getCount("product", "a", this::count)).isEqualTo(3);
+        cache.invalidate("invoice");
+        assertThat(cache.getCount("invoice", "a", this::count)).isEqualTo(4);
+        assertThat(cache.getCount("product", "a", this::count)).isEqualTo(3);
+    }
+
+    @Test
+    void testInvalidate_dropsTotalsCountedBeforeTheCommit() {
+        CountCacheServiceImpl cache = new CountCacheServiceImpl(true, 30, 100);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.invalidate("invoice");
+        cache.invalidate("invoice");
+        // Counted by another request after the write was flushed, but before it was committed
+        assertThat(cache.getCount("invoice", "a", this::count)).isEqualTo(1);
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertThat(cache.getCount("invoice", "a", this::count)).isEqualTo(2);
+    }
+
+    @Test
+    void testGetCount_whenDisabledOrExpiredAlwaysCounts() {
+        CountCacheServiceImpl disabled = new CountCacheServiceImpl(false, 30, 100);
+        disabled.getCount("invoice", "a", this::count);
+        assertThat(disabled.getCount("invoice", "a", this::count)).isEqualTo(2);
+
+        CountCacheServiceImpl expiring = new CountCacheServiceImpl(true, 0, 100);
+        expiring.getCount("invoice", "a", this::count);
+        assertThat(expiring.getCount("invoice", "a", this::count)).isEqualTo(4);
+    }
+
+    private long count() {
+        return counts.incrementAndGet();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mock;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+
+import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
+
+class CustomerNameIndexServiceImplTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    private final UUID john = UUID.randomUUID();
+    private final UUID johanna = UUID.randomUUID();
+    private final UUID mary = UUID.randomUUID();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testFindIdsByNameContaining_matchesSubstringsIgnoringCase() {
+        CustomerNameIndexServiceImpl index = loadedIndex(List.of(
+                new Object[] { john, "John Smith" },
+                new Object[] { johanna, "Johanna Smithers" },
+                new Object[] { mary, "Mary Jones" }));
+
+        assertThat(index.findIdsByNameContaining("SMITH")).containsExactlyInAnyOrder(john, johanna);
+        assertThat(index.findIdsByNameContaining("ohn")).containsExactly(john);
+        assertThat(index.findIdsByNameContaining("hnoj")).isEmpty();
+        assertThat(index.findIdsByNameContaining("xyz")).isEmpty();
+        // Too short to be looked up by fragment, the database matches it
+        assertThat(index.findIdsByNameContaining("jo")).isNull();
+    }
+
+    @Test
+    void testPut_movesRenamedCustomersAndIgnoresStaleLoads() {
+        CustomerNameIndexServiceImpl index = new CustomerNameIndexServiceImpl(customerRepository, true, 1000);
+        // Written while the names were being read, so newer than what the load finds
+        index.put(john, "John Baker");
+        when(customerRepository.findAllIdAndName()).thenReturn(List.<Object[]>of(new Object[] { john, "John Smith" }));
+        index.load();
+
+        assertThat(index.findIdsByNameContaining("baker")).containsExactly(john);
+        assertThat(index.findIdsByNameContaining("smith")).isEmpty();
+
+        index.put(john, "John Carter");
+        assertThat(index.findIdsByNameContaining("baker")).isEmpty();
+        assertThat(index.findIdsByNameContaining("carter")).containsExactly(john);
+
+        index.remove(john);
+        assertThat(index.findIdsByNameContaining("carter")).isEmpty();
+    }
+
+    @Test
+    void testFindIdsByNameContaining_withTooManyMatchesOrNotLoadedReturnsNull() {
+        CustomerNameIndexServiceImpl index = new CustomerNameIndexServiceImpl(customerRepository, true, 1);
+        assertThat(index.findIdsByNameContaining("smith")).isNull();
+
+        when(customerRepository.findAllIdAndName()).thenReturn(List.of(
+                new Object[] { john, "John Smith" },
+                new Object[] { johanna, "Johanna Smithers" }));
+        index.load();
+        assertThat(index.findIdsByNameContaining("smith")).isNull();
+        assertThat(index.findIdsByNameContaining("johanna")).containsExactly(johanna);
+    }
+
+    // Run with -Dpos.benchmark=true, measures the lookups and the heap taken by the index of one million random names
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkLookupsOverOneMillionNames() {
+        int total = 1_000_000;
+        Random random = new Random(42);
+        List<Object[]> customers = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            customers.add(new Object[] { UUID.randomUUID(), randomWord(random) + " " + randomWord(random) });
+        }
+        when(customerRepository.findAllIdAndName()).thenReturn(customers);
+
+        long heapBefore = usedHeap();
+        CustomerNameIndexServiceImpl index = new CustomerNameIndexServiceImpl(customerRepository, true, 1000);
+        index.load();
+        long heapAfter = usedHeap();
+
+        List<String> fragments = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String name = (String) customers.get(random.nextInt(total))[1];
+            int start = random.nextInt(name.length() - 4);
+            fragments.add(name.substring(start, start + 4));
+        }
+        // Warm up before measuring
+        fragments.forEach(index::findIdsByNameContaining);
+        long start = System.nanoTime();
+        long matches = 0;
+        for (String fragment : fragments) {
+            Set<UUID> ids = index.findIdsByNameContaining(fragment);
+            matches += ids == null ? 0 : ids.size();
+        }
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("%d names: index about %d MB besides the names, %.1f us per lookup, %d matches%n",
+                total, (heapAfter - heapBefore) / (1024 * 1024), nanos / 1e3 / fragments.size(), matches);
+    }
+
+    private CustomerNameIndexServiceImpl loadedIndex(List<Object[]> customers) {
+        when(customerRepository.findAllIdAndName()).thenReturn(customers);
+        CustomerNameIndexServiceImpl index = new CustomerNameIndexServiceImpl(customerRepository, true, 1000);
+        index.load();
+        return index;
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 4 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -26,6 +26,7 @@ import com.example.fpt_midterm_pos.data.model.Status;
 import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
 import com.example.fpt_midterm_pos.dto.CustomerDTO;
 import com.example.fpt_midterm_pos.dto.CustomerSaveDTO;
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
 import com.example.fpt_midterm_pos.exception.DuplicateStatusException;
 import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
 import com.example.fpt_midterm_pos.mapper.CustomerMapper;
@@ -42,7 +43,7 @@ class CustomerServiceImplTest {
     private CustomerMapper customerMapper;
 
     private Pageable pageable;
-    private Page<Customer> customerPage;
+    private Page<CustomerShowDTO> customerPage;
 
     private static final String CUSTOMER_NOT_FOUND = "Customer not found";
 
@@ -54,20 +55,14 @@ class CustomerServiceImplTest {
     @Test
     void testFindAllActiveCustomer() {
         UUID customerId = UUID.randomUUID();
-        Customer customer = new Customer();
-        customer.setId(customerId);
-        customer.setName("Test Customer");
-        customer.setStatus(Status.ACTIVE.toString());
-        customer.setPhoneNumber("+62123456789");
-        customer.setCreatedAt(new java.util.Date());
-        customer.setUpdatedAt(new java.util.Date());
+        CustomerShowDTO customer = new CustomerShowDTO(customerId, "Test Customer", "+62123456789");
 
         pageable = PageRequest.of(0, 10);
         customerPage = new PageImpl<>(Collections.singletonList(customer));
 
-        when(customerRepository.findAll(pageable)).thenReturn(customerPage);
+        when(customerRepository.findAllShowBy(pageable)).thenReturn(customerPage);
 
-        Page<Customer> result = customerService.findAllCustomer(pageable);
+        Page<CustomerShowDTO> result = customerService.findAllCustomer(pageable);
 
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
@@ -0,0 +1,113 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.fpt_midterm_pos.data.model.IdempotencyKey;
+import com.example.fpt_midterm_pos.data.repository.IdempotencyKeyRepository;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class IdempotencyServiceImplTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    private InvoiceDTO invoiceDTO;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        idempotencyService = new IdempotencyServiceImpl(idempotencyKeyRepository, new ObjectMapper(), transactionManager, 60);
+        invoiceDTO = new InvoiceDTO(UUID.randomUUID(), "default-00000001", 1000.0, new Date(), new CustomerInvoiceDTO(UUID.randomUUID(), "Customer"), Collections.emptyList());
+    }
+
+    @Test
+    void testExecute_withRetryReturnsOriginalInvoice() {
+        AtomicInteger calls = new AtomicInteger();
+
+        InvoiceDTO first = idempotencyService.execute("key-1", () -> {
+            calls.incrementAndGet();
+            return invoiceDTO;
+        });
+        InvoiceDTO retry = idempotencyService.execute("key-1", () -> {
+            calls.incrementAndGet();
+            return invoiceDTO;
+        });
+
+        assertThat(calls).hasValue(1);
+        assertThat(retry).isEqualTo(first);
+        verify(idempotencyKeyRepository).saveAndFlush(any(IdempotencyKey.class));
+    }
+
+    @Test
+    void testExecute_withConcurrentRetryWaitsForFirstRequest() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<InvoiceDTO> first = CompletableFuture.supplyAsync(() -> idempotencyService.execute("key-2", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return invoiceDTO;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<InvoiceDTO> retry = CompletableFuture.supplyAsync(() -> idempotencyService.execute("key-2", () -> {
+            calls.incrementAndGet();
+            return invoiceDTO;
+        }));
+        assertThat(retry).isNotDone();
+        release.countDown();
+
+        assertThat(retry.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void testExecute_withFailedRequestCanBeRetried() {
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.execute("key-3", () -> {
+            throw new IllegalArgumentException("Insufficient product stock");
+        }));
+
+        assertThat(idempotencyService.execute("key-3", () -> invoiceDTO)).isEqualTo(invoiceDTO);
+    }
+
+    @Test
+    void testExecute_withBlankKey() {
+        assertThrows(BadRequestException.class, () -> idempotencyService.execute(" ", () -> invoiceDTO));
+    }
+}
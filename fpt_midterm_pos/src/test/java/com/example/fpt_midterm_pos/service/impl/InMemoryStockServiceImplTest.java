@@ -0,0 +1,100 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+
+class InMemoryStockServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private InMemoryStockServiceImpl stockService;
+
+    private UUID productId;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        productId = UUID.randomUUID();
+        Product product = new Product(productId, "Test Product", 1000.0, Status.Active, 10, new Date(), new Date());
+        when(productRepository.findAll()).thenReturn(Collections.singletonList(product));
+
+        stockService = new InMemoryStockServiceImpl(productRepository, transactionManager);
+        stockService.rebuild();
+    }
+
+    @Test
+    void testReserve_withInsufficientStock() {
+        stockService.reserve(productId, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> stockService.reserve(productId, 1));
+    }
+
+    @Test
+    void testFlush_writesAccumulatedDelta() {
+        stockService.reserve(productId, 4);
+        stockService.reserve(productId, 3);
+        stockService.release(productId, 2);
+
+        stockService.flush();
+        stockService.flush();
+
+        verify(productRepository).incrementQuantity(productId, -5);
+        verify(productRepository, never()).setQuantity(any(UUID.class), anyInt());
+    }
+
+    @Test
+    void testFlush_afterResetWritesAbsoluteQuantity() {
+        stockService.reserve(productId, 4);
+        stockService.reset(productId, 20);
+        stockService.reserve(productId, 5);
+
+        stockService.flush();
+
+        verify(productRepository).setQuantity(productId, 15);
+        verify(productRepository, never()).incrementQuantity(any(UUID.class), anyInt());
+    }
+
+    @Test
+    void testReset_withRolledBackEditKeepsTheLedger() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockService.reset(productId, 2);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        stockService.reserve(productId, 10);
+        stockService.flush();
+
+        verify(productRepository).incrementQuantity(productId, -10);
+        verify(productRepository, never()).setQuantity(any(UUID.class), anyInt());
+    }
+}
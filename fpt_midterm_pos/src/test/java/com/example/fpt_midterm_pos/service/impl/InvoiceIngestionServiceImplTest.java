@@ -0,0 +1,199 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceBatchResultDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceIngestionStatsDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceSaveDTO;
+import com.example.fpt_midterm_pos.exception.ResourceNotFoundException;
+import com.example.fpt_midterm_pos.exception.ServiceUnavailableException;
+import com.example.fpt_midterm_pos.service.InvoiceService;
+
+class InvoiceIngestionServiceImplTest {
+
+    // Simulated cost of a single commit, which is what the group commit amortizes
+    private static final long COMMIT_MILLIS = 5;
+    private static final UUID REJECTED_CUSTOMER = UUID.randomUUID();
+    private static final UUID NOT_FOUND_CUSTOMER = UUID.randomUUID();
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    private InvoiceIngestionServiceImpl ingestionService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(invoiceService.createInvoiceGroup(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(COMMIT_MILLIS);
+            List<InvoiceSaveDTO> group = invocation.getArgument(0);
+            List<InvoiceBatchResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < group.size(); i++) {
+                results.add(resultFor(i, group.get(i)));
+            }
+            return results;
+        });
+        when(invoiceService.createInvoice(any(InvoiceSaveDTO.class))).thenAnswer(invocation -> {
+            Thread.sleep(COMMIT_MILLIS);
+            return invoiceDTO();
+        });
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (ingestionService != null) {
+            ingestionService.stop();
+        }
+    }
+
+    @Test
+    void testSubmit_withConcurrentCallersSharesCommits() throws Exception {
+        start(1000, 50, 1);
+        int invoices = 64;
+
+        long created = submitConcurrently(invoices, 16, () -> ingestionService.submit(invoiceSaveDTO(UUID.randomUUID())));
+
+        InvoiceIngestionStatsDTO stats = ingestionService.getStats();
+        assertThat(created).isEqualTo(invoices);
+        assertThat(stats.getInvoices()).isEqualTo(invoices);
+        assertThat(stats.getBatches()).isLessThan(invoices);
+        assertThat(stats.getAverageBatchSize()).isGreaterThan(1.0);
+        assertThat(stats.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void testSubmit_withRejectedInvoiceThrowsItsOwnError() {
+        start(1000, 50, 1);
+
+        assertThat(ingestionService.submit(invoiceSaveDTO(UUID.randomUUID()))).isNotNull();
+        assertThrows(IllegalArgumentException.class, () -> ingestionService.submit(invoiceSaveDTO(REJECTED_CUSTOMER)));
+        assertThrows(ResourceNotFoundException.class, () -> ingestionService.submit(invoiceSaveDTO(NOT_FOUND_CUSTOMER)));
+    }
+
+    @Test
+    void testSubmit_withFullQueueThrowsServiceUnavailable() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(invoiceService.createInvoiceGroup(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            List<InvoiceSaveDTO> group = invocation.getArgument(0);
+            List<InvoiceBatchResultDTO> results = new ArrayList<>();
+            for (int i = 0; i < group.size(); i++) {
+                results.add(resultFor(i, group.get(i)));
+            }
+            return results;
+        });
+        start(1, 50, 1);
+
+        // The writer holds the first invoice, the second one fills the queue
+        CompletableFuture<InvoiceDTO> first = CompletableFuture.supplyAsync(() -> ingestionService.submit(invoiceSaveDTO(UUID.randomUUID())));
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<InvoiceDTO> second = CompletableFuture.supplyAsync(() -> ingestionService.submit(invoiceSaveDTO(UUID.randomUUID())));
+        while (ingestionService.getStats().getQueueDepth() == 0) {
+            Thread.sleep(1);
+        }
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class, () -> ingestionService.submit(invoiceSaveDTO(UUID.randomUUID())));
+        release.countDown();
+
+        assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+        assertThat(first.get(10, TimeUnit.SECONDS)).isNotNull();
+        assertThat(second.get(10, TimeUnit.SECONDS)).isNotNull();
+        assertThat(ingestionService.getStats().getRejectedSubmissions()).isEqualTo(1);
+    }
+
+    // Run with -Dpos.benchmark=true, compares one commit per invoice against the group commit at a simulated commit cost
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkGroupCommitAgainstTransactionPerInvoice() throws Exception {
+        start(1000, 50, 2);
+        int invoices = 2000;
+        int callers = 32;
+
+        long directStart = System.nanoTime();
+        submitConcurrently(invoices, callers, () -> invoiceService.createInvoice(invoiceSaveDTO(UUID.randomUUID())));
+        long directNanos = System.nanoTime() - directStart;
+
+        long groupStart = System.nanoTime();
+        submitConcurrently(invoices, callers, () -> ingestionService.submit(invoiceSaveDTO(UUID.randomUUID())));
+        long groupNanos = System.nanoTime() - groupStart;
+
+        InvoiceIngestionStatsDTO stats = ingestionService.getStats();
+        System.out.printf("Transaction per invoice: %.0f invoices/s%n", invoices / (directNanos / 1e9));
+        System.out.printf("Group commit: %.0f invoices/s, %d batches, average batch size %.1f, average commit %.1f ms%n",
+                invoices / (groupNanos / 1e9), stats.getBatches(), stats.getAverageBatchSize(), stats.getAverageCommitMillis());
+    }
+
+    private void start(int queueCapacity, int maxBatchSize, int writers) {
+        ingestionService = new InvoiceIngestionServiceImpl(invoiceService, queueCapacity, maxBatchSize, writers, 1);
+        ingestionService.start();
+    }
+
+    private long submitConcurrently(int invoices, int callers, Callable<InvoiceDTO> submission) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<InvoiceDTO>> results = new ArrayList<>();
+        for (int i = 0; i < invoices; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return submission.call();
+            }));
+        }
+        start.countDown();
+
+        long created = 0;
+        for (Future<InvoiceDTO> result : results) {
+            if (result.get(30, TimeUnit.SECONDS) != null) {
+                created++;
+            }
+        }
+        executor.shutdown();
+        return created;
+    }
+
+    private static InvoiceSaveDTO invoiceSaveDTO(UUID customerId) {
+        return new InvoiceSaveDTO(customerId, Collections.emptyList());
+    }
+
+    // The customer of the invoice tells the mocked service which outcome to report
+    private static InvoiceBatchResultDTO resultFor(int index, InvoiceSaveDTO invoiceSaveDTO) {
+        if (REJECTED_CUSTOMER.equals(invoiceSaveDTO.getCustomerId())) {
+            return new InvoiceBatchResultDTO(index, null, "rejected", "Insufficient product stock", null);
+        }
+        if (NOT_FOUND_CUSTOMER.equals(invoiceSaveDTO.getCustomerId())) {
+            return new InvoiceBatchResultDTO(index, null, "not_found", "Product not found", null);
+        }
+        InvoiceDTO invoiceDTO = invoiceDTO();
+        return new InvoiceBatchResultDTO(index, invoiceDTO.getId(), "created", null, invoiceDTO);
+    }
+
+    private static InvoiceDTO invoiceDTO() {
+        return new InvoiceDTO(UUID.randomUUID(), "default-00000001", 1000.0, new Date(), new CustomerInvoiceDTO(UUID.randomUUID(), "Customer"), Collections.emptyList());
+    }
+}
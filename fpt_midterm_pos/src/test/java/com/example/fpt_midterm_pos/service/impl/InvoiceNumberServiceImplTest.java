@@ -0,0 +1,163 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+class InvoiceNumberServiceImplTest {
+
+    private final String name = "invoice-number-" + UUID.randomUUID();
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE invoice_number_sequence (sequence_name VARCHAR(64) PRIMARY KEY, next_value BIGINT NOT NULL)");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testNext_withConcurrentCallersHandsOutEveryNumberOnce() throws Exception {
+        InvoiceNumberServiceImpl invoiceNumberService = new InvoiceNumberServiceImpl(database, "store-1", 100);
+        int threads = 8;
+        int perThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                long[] numbers = new long[perThread];
+                for (int j = 0; j < perThread; j++) {
+                    numbers[j] = invoiceNumberService.next("store-1");
+                }
+                return numbers;
+            }));
+        }
+        start.countDown();
+
+        long[] all = new long[threads * perThread];
+        for (int i = 0; i < threads; i++) {
+            System.arraycopy(results.get(i).get(30, TimeUnit.SECONDS), 0, all, i * perThread, perThread);
+        }
+        executor.shutdown();
+
+        Arrays.sort(all);
+        for (int i = 0; i < all.length; i++) {
+            assertThat(all[i]).isEqualTo(i + 1);
+        }
+        // Whole blocks were taken, one short transaction per block instead of one per invoice
+        assertThat(nextValue("store-1")).isEqualTo(threads * perThread + 1);
+    }
+
+    @Test
+    void testNextInvoiceNumber_withSeparateSequences() {
+        InvoiceNumberServiceImpl firstStore = new InvoiceNumberServiceImpl(database, "store-1", 10);
+        InvoiceNumberServiceImpl secondStore = new InvoiceNumberServiceImpl(database, "store-2", 10);
+
+        assertThat(firstStore.nextInvoiceNumber()).isEqualTo("store-1-00000001");
+        assertThat(firstStore.nextInvoiceNumber()).isEqualTo("store-1-00000002");
+        assertThat(secondStore.nextInvoiceNumber()).isEqualTo("store-2-00000001");
+    }
+
+    @Test
+    void testNext_withSecondNodeTakesTheNextBlock() {
+        InvoiceNumberServiceImpl firstNode = new InvoiceNumberServiceImpl(database, "store-1", 10);
+        InvoiceNumberServiceImpl secondNode = new InvoiceNumberServiceImpl(database, "store-1", 10);
+
+        assertThat(firstNode.next("store-1")).isEqualTo(1);
+        assertThat(secondNode.next("store-1")).isEqualTo(11);
+        assertThat(firstNode.next("store-1")).isEqualTo(2);
+    }
+
+    @Test
+    void testNext_takesABlockWhileEveryPooledConnectionIsInATransaction() throws Exception {
+        InvoiceNumberServiceImpl invoiceNumberService = new InvoiceNumberServiceImpl(database, "store-1", 2);
+        // The application pool of the same database, fully taken by the transaction of the invoice asking for the numbers
+        try (HikariDataSource pool = new HikariDataSource()) {
+            pool.setJdbcUrl("jdbc:h2:mem:" + name);
+            pool.setUsername("sa");
+            pool.setMaximumPoolSize(1);
+            pool.setConnectionTimeout(250);
+            TransactionTemplate invoiceTransaction = new TransactionTemplate(new DataSourceTransactionManager(pool));
+
+            List<Long> numbers = invoiceTransaction.execute(status -> {
+                new JdbcTemplate(pool).execute("SELECT 1");
+                List<Long> taken = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    taken.add(invoiceNumberService.next("store-1"));
+                }
+                return taken;
+            });
+
+            assertThat(numbers).containsExactly(1L, 2L, 3L, 4L, 5L);
+        }
+    }
+
+    @Test
+    void testNext_givesUpWhenTheSequenceCannotBeCreated() {
+        InvoiceNumberServiceImpl invoiceNumberService = new InvoiceNumberServiceImpl(database, "store-1", 10);
+        // Every insert fails like one racing with the insert of another node
+        jdbcTemplate.execute("ALTER TABLE invoice_number_sequence ADD CONSTRAINT always_taken CHECK (next_value < 0)");
+
+        assertThatThrownBy(() -> invoiceNumberService.next("store-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    // Run with -Dpos.benchmark=true, hands out numbers at 1,000 per second and prints the latency, block allocations included
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkLatencyAtOneThousandInvoicesPerSecond() throws Exception {
+        InvoiceNumberServiceImpl invoiceNumberService = new InvoiceNumberServiceImpl(database, "store-1", 100);
+        int invoices = 5000;
+        long[] latencies = new long[invoices];
+
+        for (int i = 0; i < invoices; i++) {
+            long start = System.nanoTime();
+            invoiceNumberService.nextInvoiceNumber();
+            latencies[i] = System.nanoTime() - start;
+            TimeUnit.MICROSECONDS.sleep(1000);
+        }
+
+        Arrays.sort(latencies);
+        System.out.printf("Invoice number latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                latencies[invoices / 2] / 1e3, latencies[invoices * 99 / 100] / 1e3, latencies[invoices - 1] / 1e3);
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("SELECT next_value FROM invoice_number_sequence WHERE sequence_name = ?", Long.class, sequence);
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.fpt_midterm_pos.data.model.Customer;
+import com.example.fpt_midterm_pos.data.model.Invoice;
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.CustomerRepository;
+import com.example.fpt_midterm_pos.data.repository.InvoiceDetailRepository;
+import com.example.fpt_midterm_pos.data.repository.InvoiceRepository;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.CustomerInvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceBatchResultDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceDetailSaveDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceLineOperationDTO;
+import com.example.fpt_midterm_pos.dto.InvoiceSaveDTO;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+import com.example.fpt_midterm_pos.mapper.InvoiceDetailMapperImpl;
+import com.example.fpt_midterm_pos.mapper.InvoiceMapperImpl;
+import com.example.fpt_midterm_pos.mapper.ProductMapperImpl;
+import com.example.fpt_midterm_pos.service.CountCacheService;
+import com.example.fpt_midterm_pos.service.CustomerNameIndexService;
+import com.example.fpt_midterm_pos.service.InvoiceNumberService;
+import com.example.fpt_midterm_pos.service.ProductCatalogService;
+import com.example.fpt_midterm_pos.service.ProductSuggestService;
+import com.example.fpt_midterm_pos.utils.PDFGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Runs the invoice service on the database, every call committing on its own like a request
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({InvoiceServiceImpl.class, ProductServiceImpl.class, DatabaseStockServiceImpl.class, CatalogCacheServiceImpl.class,
+        InvoiceMapperImpl.class, InvoiceDetailMapperImpl.class, ProductMapperImpl.class, JacksonAutoConfiguration.class})
+class InvoiceServiceImplTest {
+
+    private static final int CHECKOUTS = 40;
+
+    @Autowired
+    private InvoiceServiceImpl invoiceService;
+
+    @Autowired
+    private ProductServiceImpl productService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceDetailRepository invoiceDetailRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private InvoiceNumberService invoiceNumberService;
+
+    @MockBean
+    private CountCacheService countCacheService;
+
+    @MockBean
+    private CustomerNameIndexService customerNameIndexService;
+
+    @MockBean
+    private ProductSuggestService productSuggestService;
+
+    @MockBean
+    private ProductCatalogService productCatalogService;
+
+    @MockBean
+    private PDFGenerator pdfGenerator;
+
+    private final AtomicLong invoiceNumbers = new AtomicLong();
+
+    private Customer customer;
+
+    @BeforeEach
+    public void setUp() {
+        when(invoiceNumberService.nextInvoiceNumber()).thenAnswer(invocation -> "test-" + invoiceNumbers.incrementAndGet());
+
+        customer = new Customer();
+        customer.setName("Test Customer");
+        customer.setStatus(Status.Active);
+        customer.setPhoneNumber("+62123456789");
+        customer.setCreatedAt(new Date());
+        customer.setUpdatedAt(new Date());
+        customer = customerRepository.save(customer);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        invoiceDetailRepository.deleteAll();
+        invoiceRepository.deleteAll();
+        productRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void testCreateInvoice_keepsTheStockTakenWhileTheProductStatusChanges() throws Exception {
+        Product product = productRepository.save(product("Best Seller", CHECKOUTS));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CHECKOUTS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean checkingOut = new AtomicBoolean(true);
+        List<Future<Boolean>> checkouts = new ArrayList<>();
+
+        for (int i = 0; i < CHECKOUTS; i++) {
+            checkouts.add(executor.submit(() -> {
+                start.await();
+                try {
+                    invoiceService.createInvoice(invoiceOf(product, 1));
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    // The product was deactivated at that moment
+                    return false;
+                }
+            }));
+        }
+        // Flips the status back and forth for as long as the checkouts run
+        Future<?> statusChanges = executor.submit(() -> {
+            start.await();
+            Status status = Status.Deactive;
+            while (checkingOut.get()) {
+                productService.updateProductStatus(product.getId(), status);
+                status = status == Status.Active ? Status.Deactive : Status.Active;
+            }
+            return null;
+        });
+
+        start.countDown();
+        int sold = 0;
+        for (Future<Boolean> checkout : checkouts) {
+            sold += checkout.get(60, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        checkingOut.set(false);
+        statusChanges.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getQuantity()).isEqualTo(CHECKOUTS - sold);
+        assertThat(invoiceRepository.count()).isEqualTo(sold);
+    }
+
+    @Test
+    void testCreateInvoices_rejectsTheInvalidInvoicesOfAChunkOnTheirOwn() throws Exception {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        // Sorted like the reservations of an invoice, so the scarce product is reserved last
+        List<Product> pair = new ArrayList<>(List.of(productRepository.save(product("Rice", 10)), productRepository.save(product("Milk", 10))));
+        pair.sort((a, b) -> a.getId().compareTo(b.getId()));
+        Product plenty = pair.get(0);
+        Product scarce = pair.get(1);
+        scarce.setQuantity(1);
+        productRepository.save(scarce);
+
+        InvoiceSaveDTO unknownProduct = new InvoiceSaveDTO(customer.getId(), List.of(new InvoiceDetailSaveDTO(UUID.randomUUID(), 1)));
+        InvoiceSaveDTO outOfStock = new InvoiceSaveDTO(customer.getId(),
+                List.of(new InvoiceDetailSaveDTO(plenty.getId(), 4), new InvoiceDetailSaveDTO(scarce.getId(), 2)));
+        String json = objectMapper.writeValueAsString(List.of(invoiceOf(tea, 3), unknownProduct, outOfStock));
+
+        List<InvoiceBatchResultDTO> results = invoiceService.createInvoices(new ByteArrayInputStream(json.getBytes()));
+
+        assertThat(results).extracting(InvoiceBatchResultDTO::getStatus).containsExactly("created", "not_found", "rejected");
+        assertThat(results.get(2).getReason()).isEqualTo("Insufficient product stock");
+        assertThat(invoiceRepository.count()).isEqualTo(1);
+        assertThat(quantityOf(tea)).isEqualTo(7);
+        // The stock reserved for the rejected invoice before its scarce product ran out was given back
+        assertThat(quantityOf(plenty)).isEqualTo(10);
+        assertThat(quantityOf(scarce)).isEqualTo(1);
+    }
+
+    @Test
+    void testCreateInvoiceGroup_rejectsTheWholeChunkWhenItCannotBeSaved() {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        Product rice = productRepository.save(product("Rice", 10));
+        // Two invoices with the same number make the insert of the chunk fail
+        when(invoiceNumberService.nextInvoiceNumber()).thenReturn("test-duplicate");
+
+        List<InvoiceBatchResultDTO> results = invoiceService.createInvoiceGroup(Arrays.asList(invoiceOf(tea, 2), invoiceOf(rice, 3), null));
+
+        assertThat(results).extracting(InvoiceBatchResultDTO::getStatus).containsExactly("rejected", "rejected", "rejected");
+        assertThat(results.get(0).getReason()).startsWith("Chunk could not be saved");
+        assertThat(results.get(1).getReason()).startsWith("Chunk could not be saved");
+        assertThat(results.get(2).getReason()).isEqualTo("Malformed invoice");
+        assertThat(invoiceRepository.count()).isZero();
+        assertThat(invoiceDetailRepository.count()).isZero();
+        // The reservations were rolled back with the chunk
+        assertThat(quantityOf(tea)).isEqualTo(10);
+        assertThat(quantityOf(rice)).isEqualTo(10);
+    }
+
+    @Test
+    void testUpdateInvoice_deletesTheLinesLeftOutAndGivesTheirStockBack() {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        Product rice = productRepository.save(product("Rice", 10));
+        Product milk = productRepository.save(product("Milk", 10));
+        InvoiceDTO invoice = invoiceService.createInvoice(new InvoiceSaveDTO(customer.getId(), List.of(
+                new InvoiceDetailSaveDTO(tea.getId(), 2), new InvoiceDetailSaveDTO(rice.getId(), 3))));
+
+        InvoiceDTO updated = invoiceService.updateInvoice(invoice.getId(), new InvoiceSaveDTO(customer.getId(), List.of(
+                new InvoiceDetailSaveDTO(tea.getId(), 4), new InvoiceDetailSaveDTO(milk.getId(), 1))));
+
+        assertThat(updated.getInvoiceDetails()).extracting(InvoiceDetailDTO::getProductId, InvoiceDetailDTO::getQuantity)
+                .containsExactlyInAnyOrder(tuple(tea.getId(), 4), tuple(milk.getId(), 1));
+        assertThat(updated.getAmount()).isEqualTo(5000.0);
+        assertThat(invoiceDetailRepository.count()).isEqualTo(2);
+        assertThat(quantityOf(tea)).isEqualTo(6);
+        assertThat(quantityOf(rice)).isEqualTo(10);
+        assertThat(quantityOf(milk)).isEqualTo(9);
+    }
+
+    @Test
+    void testPatchInvoiceLines_addsRemovesAndSetsLines() {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        Product rice = productRepository.save(product("Rice", 10));
+        Product milk = productRepository.save(product("Milk", 10));
+        Product bread = productRepository.save(product("Bread", 10));
+        InvoiceDTO invoice = invoiceService.createInvoice(new InvoiceSaveDTO(customer.getId(), List.of(
+                new InvoiceDetailSaveDTO(tea.getId(), 2), new InvoiceDetailSaveDTO(rice.getId(), 3), new InvoiceDetailSaveDTO(milk.getId(), 4))));
+
+        InvoiceDTO patched = invoiceService.patchInvoiceLines(invoice.getId(), List.of(
+                new InvoiceLineOperationDTO("set", tea.getId(), 5),
+                new InvoiceLineOperationDTO("remove", rice.getId(), null),
+                new InvoiceLineOperationDTO("set", milk.getId(), 0),
+                new InvoiceLineOperationDTO("add", bread.getId(), 1),
+                new InvoiceLineOperationDTO("add", bread.getId(), 1)));
+
+        assertThat(patched.getInvoiceDetails()).extracting(InvoiceDetailDTO::getProductId, InvoiceDetailDTO::getQuantity)
+                .containsExactlyInAnyOrder(tuple(tea.getId(), 5), tuple(bread.getId(), 2));
+        assertThat(patched.getAmount()).isEqualTo(7000.0);
+        // The emptied lines are deleted, not kept with a zero quantity
+        assertThat(invoiceDetailRepository.count()).isEqualTo(2);
+        assertThat(quantityOf(tea)).isEqualTo(5);
+        assertThat(quantityOf(rice)).isEqualTo(10);
+        assertThat(quantityOf(milk)).isEqualTo(10);
+        assertThat(quantityOf(bread)).isEqualTo(8);
+    }
+
+    @Test
+    void testPatchInvoiceLines_rejectsAnInvoiceOutsideTheEditWindow() {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        InvoiceDTO invoice = invoiceService.createInvoice(invoiceOf(tea, 2));
+        Invoice stored = invoiceRepository.findById(invoice.getId()).orElseThrow();
+        stored.setCreatedAt(new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(11)));
+        invoiceRepository.save(stored);
+
+        List<InvoiceLineOperationDTO> operations = List.of(new InvoiceLineOperationDTO("add", tea.getId(), 1));
+        assertThatThrownBy(() -> invoiceService.patchInvoiceLines(invoice.getId(), operations)).isInstanceOf(BadRequestException.class);
+
+        assertThat(quantityOf(tea)).isEqualTo(8);
+    }
+
+    @Test
+    void testPatchInvoiceLines_sellsNoMoreOfADeactivatedProduct() {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        InvoiceDTO invoice = invoiceService.createInvoice(invoiceOf(tea, 4));
+        productService.updateProductStatus(tea.getId(), Status.Deactive);
+
+        assertThatThrownBy(() -> invoiceService.patchInvoiceLines(invoice.getId(), List.of(new InvoiceLineOperationDTO("add", tea.getId(), 1))))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Product is not active");
+        assertThatThrownBy(() -> invoiceService.patchInvoiceLines(invoice.getId(), List.of(new InvoiceLineOperationDTO("set", tea.getId(), 5))))
+                .isInstanceOf(BadRequestException.class);
+
+        // Giving some back is still allowed
+        InvoiceDTO patched = invoiceService.patchInvoiceLines(invoice.getId(), List.of(new InvoiceLineOperationDTO("set", tea.getId(), 1)));
+        assertThat(patched.getInvoiceDetails()).extracting(InvoiceDetailDTO::getQuantity).containsExactly(1);
+        assertThat(quantityOf(tea)).isEqualTo(9);
+    }
+
+    @Test
+    void testCreateInvoiceFromLines_invoicesTheCurrentCatalog() {
+        Product tea = productRepository.save(product("Green Tea", 10));
+        Product rice = productRepository.save(product("Rice", 10));
+        CustomerInvoiceDTO customerInvoiceDTO = new CustomerInvoiceDTO(customer.getId(), customer.getName());
+        // Priced by a cart before the tea was repriced and renamed
+        tea.setName("Jasmine Tea");
+        tea.setPrice(1500.0);
+        productRepository.save(tea);
+        List<InvoiceDetailDTO> lines = List.of(new InvoiceDetailDTO(tea.getId(), "Green Tea", 2, 1000.0, 2000.0));
+
+        InvoiceDTO invoice = invoiceService.createInvoiceFromLines(customerInvoiceDTO, lines);
+
+        assertThat(invoice.getInvoiceDetails()).extracting(InvoiceDetailDTO::getProductName, InvoiceDetailDTO::getPrice)
+                .containsExactly(tuple("Jasmine Tea", 1500.0));
+        assertThat(invoice.getAmount()).isEqualTo(3000.0);
+        assertThat(invoiceRepository.findById(invoice.getId()).orElseThrow().getAmount()).isEqualTo(3000.0);
+
+        // A product deactivated since it was scanned is not sold
+        productService.updateProductStatus(rice.getId(), Status.Deactive);
+        List<InvoiceDetailDTO> riceLines = List.of(new InvoiceDetailDTO(rice.getId(), "Rice", 1, 1000.0, 1000.0));
+        assertThatThrownBy(() -> invoiceService.createInvoiceFromLines(customerInvoiceDTO, riceLines))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product is not active");
+        assertThat(quantityOf(rice)).isEqualTo(10);
+    }
+
+    private int quantityOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getQuantity();
+    }
+
+    private InvoiceSaveDTO invoiceOf(Product product, int quantity) {
+        return new InvoiceSaveDTO(customer.getId(), List.of(new InvoiceDetailSaveDTO(product.getId(), quantity)));
+    }
+
+    private Product product(String name, int quantity) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(1000.0);
+        product.setStatus(Status.Active);
+        product.setQuantity(quantity);
+        product.setCreatedAt(new Date());
+        product.setUpdatedAt(new Date());
+        return product;
+    }
+}
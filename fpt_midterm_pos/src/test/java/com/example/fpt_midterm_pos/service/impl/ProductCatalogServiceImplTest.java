@@ -0,0 +1,158 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductCatalogVersion;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.ProductSearchCriteriaDTO;
+
+class ProductCatalogServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ProductCatalogServiceImpl productCatalogService;
+    private Product apple;
+    private Product banana;
+    private Product cherry;
+    private Product durian;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productCatalogService = new ProductCatalogServiceImpl(productRepository, true);
+
+        apple = product("Apple", 3000.0, Status.Active);
+        banana = product("Banana", 1000.0, Status.Active);
+        cherry = product("Cherry", 2000.0, Status.Active);
+        durian = product("Durian", 2000.0, Status.Active);
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(List.of(row(durian), row(cherry), row(banana), row(apple)));
+    }
+
+    @Test
+    void testFindIds_filtersAndSortsLikeTheDatabase() {
+        assertThat(productCatalogService.findIds(new ProductSearchCriteriaDTO(), PageRequest.of(0, 10))).isNull();
+        productCatalogService.load();
+
+        assertThat(find(null, "desc", null, null, null).getContent()).containsExactly(durian.getId(), cherry.getId(), banana.getId(), apple.getId());
+        assertThat(find("AN", "asc", null, null, null).getContent()).containsExactly(banana.getId(), durian.getId());
+        assertThat(find(null, null, "desc", null, null).getContent()).hasSize(4).startsWith(apple.getId()).endsWith(banana.getId());
+        assertThat(find(null, null, null, 2000.0, 2000.0).getContent()).containsExactlyInAnyOrder(cherry.getId(), durian.getId());
+        assertThat(find(null, null, "asc", 1500.0, null).getContent()).hasSize(3).endsWith(apple.getId());
+        assertThat(find("e", null, null, 3000.0, 1000.0).getContent()).isEmpty();
+
+        Page<UUID> second = productCatalogService.findIds(criteria(null, "asc", null, null, null), PageRequest.of(1, 3));
+        assertThat(second.getContent()).containsExactly(durian.getId());
+        assertThat(second.getTotalElements()).isEqualTo(4);
+        Slice<UUID> first = productCatalogService.findSliceIds(criteria(null, "asc", null, null, null), PageRequest.of(0, 3));
+        assertThat(first.getContent()).containsExactly(apple.getId(), banana.getId(), cherry.getId());
+        assertThat(first.hasNext()).isTrue();
+    }
+
+    @Test
+    void testUpdate_publishesTheSavedProducts() {
+        productCatalogService.load();
+
+        apple.setName("Zucchini");
+        apple.setPrice(500.0);
+        banana.setStatus(Status.Deactive);
+        Product elderberry = product("Elderberry", 4000.0, Status.Active);
+        productCatalogService.update(List.of(apple, banana, elderberry));
+
+        assertThat(find(null, "asc", null, null, null).getContent()).containsExactly(cherry.getId(), durian.getId(), elderberry.getId(), apple.getId());
+        assertThat(find(null, null, "asc", null, null).getContent()).startsWith(apple.getId()).endsWith(elderberry.getId()).doesNotContain(banana.getId());
+    }
+
+    @Test
+    void testLoad_keepsTheProductsSavedWhileLoading() {
+        banana.setStatus(Status.Deactive);
+        productCatalogService.update(List.of(banana));
+        productCatalogService.load();
+
+        assertThat(find(null, "asc", null, null, null).getContent()).containsExactly(apple.getId(), cherry.getId(), durian.getId());
+    }
+
+    @Test
+    void testRefresh_loadsTheWritesOfOtherNodes() {
+        when(productRepository.findCatalogVersion()).thenReturn(new ProductCatalogVersion(4L, new Date(1000)));
+        productCatalogService.load();
+
+        // Nothing changed, the catalog is kept
+        productCatalogService.refresh();
+        verify(productRepository, times(1)).findIdNameAndPriceByStatus(Status.Active);
+
+        // Another node deactivated the banana and added an elderberry
+        Product elderberry = product("Elderberry", 500.0, Status.Active);
+        when(productRepository.findCatalogVersion()).thenReturn(new ProductCatalogVersion(5L, new Date(2000)));
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(List.of(row(durian), row(cherry), row(elderberry), row(apple)));
+        productCatalogService.refresh();
+
+        assertThat(find(null, "asc", null, null, null).getContent()).containsExactly(apple.getId(), cherry.getId(), durian.getId(), elderberry.getId());
+        assertThat(find(null, null, "asc", null, null).getContent()).startsWith(elderberry.getId());
+    }
+
+    // Run with -Dpos.benchmark=true, measures the time of a filtered and sorted listing over 100k products
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkFindIdsOverACatalog() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            rows.add(new Object[] {UUID.randomUUID(), "Product " + Integer.toString(i, 26), (double) (i % 1000) * 100});
+        }
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(rows);
+        productCatalogService.load();
+
+        List<ProductSearchCriteriaDTO> queries = List.of(
+                criteria(null, "asc", null, null, null),
+                criteria(null, null, "desc", 10000.0, 20000.0),
+                criteria("ab", null, "asc", null, 50000.0));
+        for (int i = 0; i < 1000; i++) {
+            productCatalogService.findIds(queries.get(i % queries.size()), PageRequest.of(i % 10, 20));
+        }
+        int listings = 3000;
+        long start = System.nanoTime();
+        for (int i = 0; i < listings; i++) {
+            productCatalogService.findIds(queries.get(i % queries.size()), PageRequest.of(i % 10, 20));
+        }
+        System.out.printf("Catalog listing over 100k products: %.1f us per page%n", (System.nanoTime() - start) / 1e3 / listings);
+    }
+
+    private Page<UUID> find(String name, String sortByName, String sortByPrice, Double minPrice, Double maxPrice) {
+        return productCatalogService.findIds(criteria(name, sortByName, sortByPrice, minPrice, maxPrice), PageRequest.of(0, 10));
+    }
+
+    private ProductSearchCriteriaDTO criteria(String name, String sortByName, String sortByPrice, Double minPrice, Double maxPrice) {
+        return new ProductSearchCriteriaDTO(name, sortByName, sortByPrice, minPrice, maxPrice);
+    }
+
+    private Product product(String name, double price, Status status) {
+        Product product = new Product();
+        product.setId(UUID.randomUUID());
+        product.setName(name);
+        product.setPrice(price);
+        product.setStatus(status);
+        return product;
+    }
+
+    private Object[] row(Product product) {
+        return new Object[] {product.getId(), product.getName(), product.getPrice()};
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.ProductSaveDTO;
+import com.example.fpt_midterm_pos.dto.ProductSearchCriteriaDTO;
+import com.example.fpt_midterm_pos.dto.ProductShowDTO;
+import com.example.fpt_midterm_pos.mapper.ProductMapper;
+import com.example.fpt_midterm_pos.mapper.ProductMapperImpl;
+import com.example.fpt_midterm_pos.service.CountCacheService;
+import com.example.fpt_midterm_pos.service.ProductCatalogService;
+import com.example.fpt_midterm_pos.service.ProductSuggestService;
+import com.example.fpt_midterm_pos.service.StockService;
+
+class ProductServiceImplTest {
+
+    @InjectMocks
+    private ProductServiceImpl productService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Spy
+    private ProductMapper productMapper = new ProductMapperImpl();
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private CountCacheService countCacheService;
+
+    @Mock
+    private ProductSuggestService productSuggestService;
+
+    @Mock
+    private ProductCatalogService productCatalogService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testFindByCriteria_leavesOutTheCatalogRowsChangedByAnotherNode() {
+        Product kept = product("Green Tea", 2000.0, Status.Active);
+        Product deactivated = product("Green Apple", 2000.0, Status.Deactive);
+        Product renamed = product("Red Apple", 2000.0, Status.Active);
+        Product repriced = product("Green Bean", 9000.0, Status.Active);
+        ProductSearchCriteriaDTO criteria = new ProductSearchCriteriaDTO("GREEN", "asc", null, null, 5000.0);
+        // The catalog of this node still lists all four as active green products within the price
+        List<UUID> ids = List.of(deactivated.getId(), repriced.getId(), renamed.getId(), kept.getId());
+        when(productCatalogService.findIds(any(ProductSearchCriteriaDTO.class), any(Pageable.class))).thenReturn(new PageImpl<>(ids, PageRequest.of(0, 10), 4));
+        when(productRepository.findAllById(ids)).thenReturn(List.of(kept, deactivated, renamed, repriced));
+
+        Page<ProductShowDTO> page = productService.findByCriteria(criteria, PageRequest.of(0, 10), false);
+
+        assertThat(page.getContent()).extracting(ProductShowDTO::getId).containsExactly(kept.getId());
+    }
+
+    @Test
+    void testCreateProduct_updatesTheIndexesOnlyOnceCommitted() {
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            product.setId(UUID.randomUUID());
+            return product;
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productService.createProduct(new ProductSaveDTO("Green Tea", 2000.0, 10));
+            verify(productSuggestService, never()).update(anyList());
+            verify(productCatalogService, never()).update(anyList());
+
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(productSuggestService).update(anyList());
+        verify(productCatalogService).update(anyList());
+    }
+
+    private Product product(String name, double price, Status status) {
+        Product product = new Product();
+        product.setId(UUID.randomUUID());
+        product.setName(name);
+        product.setPrice(price);
+        product.setStatus(status);
+        return product;
+    }
+}
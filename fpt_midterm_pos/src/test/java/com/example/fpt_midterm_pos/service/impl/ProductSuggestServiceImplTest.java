@@ -0,0 +1,153 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductCatalogVersion;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.dto.ProductSuggestionDTO;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+
+class ProductSuggestServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ProductSuggestServiceImpl productSuggestService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productSuggestService = new ProductSuggestServiceImpl(productRepository);
+    }
+
+    @Test
+    void testSuggest_matchesTheStartOfEveryWord() {
+        Product milk = product("Fresh Milk", Status.Active);
+        Product chocolate = product("Milk Chocolate", Status.Active);
+        Product bread = product("Bread", Status.Active);
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(List.of(row(milk), row(chocolate), row(bread)));
+        productSuggestService.load();
+
+        assertThat(productSuggestService.suggest("MIL", 10)).extracting(ProductSuggestionDTO::getName).containsExactly("Fresh Milk", "Milk Chocolate");
+        assertThat(productSuggestService.suggest("milk ch", 10)).extracting(ProductSuggestionDTO::getName).containsExactly("Milk Chocolate");
+        assertThat(productSuggestService.suggest("ilk", 10)).isEmpty();
+        assertThat(productSuggestService.suggest("m", 1)).hasSize(1);
+        assertThat(productSuggestService.suggest(" ", 10)).isEmpty();
+        assertThrows(BadRequestException.class, () -> productSuggestService.suggest("milk", 0));
+    }
+
+    @Test
+    void testUpdate_followsRenamesAndDeactivations() {
+        Product milk = product("Fresh Milk", Status.Active);
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(List.<Object[]>of(row(milk)));
+        productSuggestService.load();
+
+        milk.setName("Oat Milk");
+        milk.setPrice(2000.0);
+        Product juice = product("Orange Juice", Status.Active);
+        productSuggestService.update(List.of(milk, juice));
+        assertThat(productSuggestService.suggest("fresh", 10)).isEmpty();
+        assertThat(productSuggestService.suggest("o", 10)).extracting(ProductSuggestionDTO::getName).containsExactly("Oat Milk", "Orange Juice");
+        assertThat(productSuggestService.suggest("oat", 10).get(0).getPrice()).isEqualTo(2000.0);
+
+        milk.setStatus(Status.Deactive);
+        productSuggestService.update(List.of(milk));
+        assertThat(productSuggestService.suggest("o", 10)).extracting(ProductSuggestionDTO::getName).containsExactly("Orange Juice");
+    }
+
+    @Test
+    void testRefresh_loadsTheWritesOfOtherNodes() {
+        Product milk = product("Fresh Milk", Status.Active);
+        Product juice = product("Orange Juice", Status.Active);
+        when(productRepository.findCatalogVersion()).thenReturn(new ProductCatalogVersion(2L, new Date(1000)));
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(List.of(row(milk), row(juice)));
+        productSuggestService.load();
+
+        // Another node renamed the milk and deactivated the juice
+        milk.setName("Oat Milk");
+        when(productRepository.findCatalogVersion()).thenReturn(new ProductCatalogVersion(2L, new Date(2000)));
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(List.<Object[]>of(row(milk)));
+        assertThat(productSuggestService.suggest("o", 10)).extracting(ProductSuggestionDTO::getName).containsExactly("Orange Juice");
+        productSuggestService.refresh();
+
+        assertThat(productSuggestService.suggest("o", 10)).extracting(ProductSuggestionDTO::getName).containsExactly("Oat Milk");
+        assertThat(productSuggestService.suggest("fresh", 10)).isEmpty();
+    }
+
+    @Test
+    void testSuggest_beforeLoadSearchesTheDatabase() {
+        Product milk = product("Fresh Milk", Status.Active);
+        when(productRepository.findByStatusAndNameContaining(eq(Status.Active), eq("milk"), any(Pageable.class))).thenReturn(new PageImpl<>(List.of(milk)));
+
+        assertThat(productSuggestService.suggest("milk", 10)).extracting(ProductSuggestionDTO::getId).containsExactly(milk.getId());
+        verify(productRepository).findByStatusAndNameContaining(eq(Status.Active), eq("milk"), any(Pageable.class));
+    }
+
+    // Run with -Dpos.benchmark=true and a heap of at least 2g, measures the heap taken by a million products and the
+    // time of a lookup with it
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkSuggestOverAMillionProducts() {
+        String[] words = {"fresh", "milk", "organic", "bread", "sweet", "orange", "juice", "green", "tea", "rice"};
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            String name = words[i % 10] + " " + words[(i / 10) % 10] + " " + words[(i / 100) % 10] + " " + i;
+            rows.add(new Object[] {UUID.randomUUID(), name, 1000.0});
+        }
+        when(productRepository.findIdNameAndPriceByStatus(Status.Active)).thenReturn(rows);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        productSuggestService.load();
+        rows = null;
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        String[] queries = {"fre", "milk o", "tea", "12345", "sweet green"};
+        for (int i = 0; i < 10_000; i++) {
+            productSuggestService.suggest(queries[i % queries.length], 10);
+        }
+        int lookups = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            productSuggestService.suggest(queries[i % queries.length], 10);
+        }
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("Suggestions of 1M products: %.0f MB of heap, %.1f us per lookup%n",
+                (heapAfter - heapBefore) / 1e6, nanos / 1e3 / lookups);
+    }
+
+    private Product product(String name, Status status) {
+        Product product = new Product();
+        product.setId(UUID.randomUUID());
+        product.setName(name);
+        product.setPrice(1000.0);
+        product.setStatus(status);
+        return product;
+    }
+
+    private Object[] row(Product product) {
+        return new Object[] {product.getId(), product.getName(), product.getPrice()};
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.fpt_midterm_pos.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.fpt_midterm_pos.data.model.Product;
+import com.example.fpt_midterm_pos.data.model.Status;
+import com.example.fpt_midterm_pos.data.repository.ProductRepository;
+import com.example.fpt_midterm_pos.data.repository.ProductStockShardRepository;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ShardedStockServiceImplTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedStockServiceImplTest.class);
+    private static final int CHECKOUTS = 64;
+    private static final int STOCK = 48;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        product = new Product();
+        product.setName("Best Seller");
+        product.setPrice(1000.0);
+        product.setStatus(Status.Active);
+        product.setQuantity(STOCK);
+        product.setCreatedAt(new Date());
+        product.setUpdatedAt(new Date());
+        product = productRepository.save(product);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        shardRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 16})
+    void testReserve_withConcurrentCheckoutsOfSameProduct(int shards) throws Exception {
+        ShardedStockServiceImpl stockService = new ShardedStockServiceImpl(productRepository, shardRepository, shards);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> stockService.reset(product.getId(), STOCK));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CHECKOUTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int i = 0; i < CHECKOUTS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                while (true) {
+                    try {
+                        transaction.executeWithoutResult(status -> stockService.reserve(product.getId(), 1));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    } catch (PessimisticLockingFailureException e) {
+                        // Rolled back to break a deadlock near the end of the stock, retried like the client would
+                    }
+                }
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        int sold = 0;
+        for (Future<Boolean> result : results) {
+            sold += result.get(60, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        executor.shutdown();
+
+        logger.info("[Stock] {} checkouts over {} shards took {} ms", CHECKOUTS, shards, elapsedMillis);
+        assertThat(sold).isEqualTo(STOCK);
+        assertThat(stockService.findAvailable(Collections.singletonList(product)).get(product.getId())).isZero();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.fpt_midterm_pos.utils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import com.example.fpt_midterm_pos.dto.CustomerShowDTO;
+import com.example.fpt_midterm_pos.exception.BadRequestException;
+
+class FieldsUtilsTest {
+
+    private static final Map<String, Function<CustomerShowDTO, Object>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("id", CustomerShowDTO::getId);
+        FIELDS.put("name", CustomerShowDTO::getName);
+        FIELDS.put("phoneNumber", CustomerShowDTO::getPhoneNumber);
+    }
+
+    @Test
+    void testParseFields_keepsTheRequestedOrder() {
+        assertThat(FieldsUtils.parseFields("phoneNumber, name,name", FIELDS)).containsExactly("phoneNumber", "name");
+        assertThat(FieldsUtils.parseFields(null, FIELDS)).isNull();
+        assertThat(FieldsUtils.parseFields(" ", FIELDS)).isNull();
+    }
+
+    @Test
+    void testParseFields_rejectsUnknownFields() {
+        BadRequestException e = assertThrows(BadRequestException.class, () -> FieldsUtils.parseFields("name,address", FIELDS));
+
+        assertThat(e.getMessage()).isEqualTo("Unknown field: address, expected some of id, name, phoneNumber");
+        assertThrows(BadRequestException.class, () -> FieldsUtils.parseFields("name,,id", FIELDS));
+    }
+
+    @Test
+    void testSelect_keepsThePageAroundTheSelectedFields() {
+        CustomerShowDTO customer = new CustomerShowDTO(UUID.randomUUID(), "Test Customer", null);
+        Page<CustomerShowDTO> page = new PageImpl<>(List.of(customer), PageRequest.of(0, 20), 41);
+
+        Slice<Map<String, Object>> selected = FieldsUtils.select(page, Set.of("phoneNumber"), FIELDS);
+
+        assertThat(selected).isInstanceOf(Page.class);
+        assertThat(((Page<Map<String, Object>>) selected).getTotalElements()).isEqualTo(41);
+        assertThat(selected.getContent().get(0)).containsOnlyKeys("phoneNumber").containsEntry("phoneNumber", null);
+    }
+}
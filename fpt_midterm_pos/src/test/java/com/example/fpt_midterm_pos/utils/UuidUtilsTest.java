@@ -0,0 +1,92 @@
+package com.example.fpt_midterm_pos.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+class UuidUtilsTest {
+
+    @Test
+    void testTimeOrderedUuid_hasVersionAndVariant() {
+        UUID uuid = UuidUtils.timeOrderedUuid();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void testTimeOrderedUuid_isIncreasingInStoredByteOrder() {
+        byte[] previous = toBytes(UuidUtils.timeOrderedUuid());
+
+        for (int i = 0; i < 100_000; i++) {
+            byte[] current = toBytes(UuidUtils.timeOrderedUuid());
+            assertThat(Arrays.compareUnsigned(previous, current)).isNegative();
+            previous = current;
+        }
+    }
+
+    @Test
+    void testTimestampOf() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidUtils.timeOrderedUuid();
+
+        assertThat(UuidUtils.timestampOf(uuid)).isGreaterThanOrEqualTo(before);
+    }
+
+    @Test
+    void testTimestampOf_withRandomUuid() {
+        assertThrows(IllegalArgumentException.class, () -> UuidUtils.timestampOf(UUID.randomUUID()));
+    }
+
+    // Run with -Dpos.benchmark=true, inserts the same number of rows keyed by random and by time-ordered UUIDs into a
+    // file database and prints the insert time and the size of the file. -Dpos.benchmark.rows sets the number of rows
+    @Test
+    @EnabledIfSystemProperty(named = "pos.benchmark", matches = "true")
+    void benchmarkInsertsByKeyOrder(@TempDir Path directory) throws Exception {
+        int rows = Integer.getInteger("pos.benchmark.rows", 1_000_000);
+        insert(directory.resolve("random"), rows, UUID::randomUUID);
+        insert(directory.resolve("time-ordered"), rows, UuidUtils::timeOrderedUuid);
+    }
+
+    private static void insert(Path path, int rows, Supplier<UUID> ids) throws Exception {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:file:" + path, "sa", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE product (id BINARY(16) PRIMARY KEY, name VARCHAR(64))");
+
+        long start = System.nanoTime();
+        for (int done = 0; done < rows; done += 1000) {
+            List<Object[]> batch = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                batch.add(new Object[] {toBytes(ids.get()), "Product " + (done + i)});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO product (id, name) VALUES (?, ?)", batch);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.destroy();
+
+        System.out.printf("%s keys: %d rows inserted in %d ms, %.1f MB on disk%n", path.getFileName(), rows, elapsedMillis,
+                Files.size(Path.of(path + ".mv.db")) / 1024.0 / 1024.0);
+    }
+
+    // Same layout as the BINARY(16) columns, most significant bits first
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}